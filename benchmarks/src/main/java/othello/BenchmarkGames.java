@@ -0,0 +1,119 @@
+/**
+ * Třída pro přípravu rozehraných her pro výkonnostní testy
+ * Hra se rozehraje stejnými operacemi jako v {@code Controller.makeMove} pseudonáhodnými tahy
+ * s pevným semínkem, pro stejné parametry tak vznikne vždy stejná pozice
+ * Funkce:  1) Rozehrání hry do zadané fáze
+ *          2) Provedení tahu hráče
+ *          3) Rozehrání pozic konce hry se zadaným počtem prázdných polí
+ * @author Lukáš Dibďák
+ * @see othello.Game
+ */
+
+package othello;
+
+import othello.Utility.*;
+
+class BenchmarkGames {
+    /**
+     * Fáze hry: po zahájení (4 půltahy) nebo ve střední hře (polovina desky zaplněna)
+     */
+    static final String OPENING = "opening";
+    static final String MIDGAME = "midgame";
+
+    /**
+     * Počet pozic konce hry, které se řeší v jednom volání testu
+     */
+    static final int ENDGAMES = 8;
+
+    /**
+     * Rozehrání nové hry, hra, ve které by některý hráč nemohl táhnout, se zahodí a rozehraje se další
+     * @param size Velikost hrací desky
+     * @param phase Fáze hry {@code OPENING} nebo {@code MIDGAME}
+     * @param playerType Typ druhého hráče
+     * @param activePlayer Hráč, který má být na tahu ({@code Utility.PLAYERONE} nebo {@code Utility.PLAYERTWO})
+     * @return Rozehraná hra
+     */
+    static Game createGame(int size, String phase, PlayerType playerType, int activePlayer) {
+        int target = MIDGAME.equals(phase) ? size * size / 2 : 8;
+        long random = 0x9E3779B97F4A7C15L * size;
+
+        while (true) {
+            Game game = new Game(size, Player.getPlayersForConstructor(playerType));
+            boolean blocked = false;
+
+            while (!blocked && (size * size - game.getBoard().getEmptyCount() < target || game.getActivePlayerTurn() != activePlayer)) {
+                MoveList moves = game.getAvailableMoves();
+                if (moves.isEmpty()) {
+                    blocked = true;
+                }
+                else {
+                    random ^= random << 13;
+                    random ^= random >>> 7;
+                    random ^= random << 17;
+                    makeMove(game, moves, (int) ((random >>> 33) % moves.size()));
+                }
+            }
+            if (!blocked && !game.getAvailableMoves().isEmpty()) {
+                return game;
+            }
+        }
+    }
+
+    /**
+     * Provedení tahu hráče na tahu stejně jako v {@code Controller.makeMove}
+     * @param game Hra
+     * @param moves Seznam tahů vygenerovaný pro aktuální pozici
+     * @param move Pořadí tahu v seznamu
+     */
+    static void makeMove(Game game, MoveList moves, int move) {
+        int square = moves.getSquare(move);
+        int size = game.getBoard().getSize();
+
+        try {
+            game.controlMoveIfValid(new Coords(square % size, square / size), moves);
+        } catch (MoveNotAvailableException e) {
+            throw new IllegalStateException(e);
+        }
+        game.countStones();
+        game.makeCheckpoint();
+        game.turnHasBeenMade();
+    }
+
+    /**
+     * Rozehrání pozic konce hry pseudonáhodnými tahy s pevným semínkem
+     * Pozice, ve které hráč na tahu nemůže táhnout nebo hra skončí dříve, se zahodí a rozehraje se další
+     * @param size Velikost hrací desky
+     * @param empties Počet prázdných polí pozic
+     * @param count Počet pozic
+     * @return Pozice konce hry
+     */
+    static Position[] createEndgames(int size, int empties, int count) {
+        Position[] positions = new Position[count];
+        MoveList moves = new MoveList(size);
+        long random = 0x9E3779B97F4A7C15L * (size * 64 + empties);
+
+        for (int found = 0; found < count; ) {
+            Position position = new Position(new Board(size), BitBoard.BLACK);
+
+            while (position.emptyCount() > empties) {
+                position.generateMoves(moves);
+                if (moves.isEmpty()) {
+                    position.makePass();
+                    position.generateMoves(moves);
+                    if (moves.isEmpty()) {
+                        break;
+                    }
+                }
+                random ^= random << 13;
+                random ^= random >>> 7;
+                random ^= random << 17;
+                position.makeMove(moves, (int) ((random >>> 33) % moves.size()));
+            }
+            position.generateMoves(moves);
+            if (position.emptyCount() == empties && !moves.isEmpty()) {
+                positions[found++] = new Position(position);
+            }
+        }
+        return positions;
+    }
+}
@@ -0,0 +1,44 @@
+/**
+ * Třída pro spuštění výkonnostních testů JMH
+ * Přijímá stejné parametry jako JMH a ke každému běhu přidává profiler GC, výsledky tak obsahují
+ * vedle času i množství alokované paměti na operaci a počet úklidů paměti
+ * Funkce:  1) Spuštění výkonnostních testů s profilerem GC
+ * @author Lukáš Dibďák
+ * @see othello.GameBenchmark
+ * @see othello.SaveLoadBenchmark
+ * @see othello.ComputerMoveBenchmark
+ * @see othello.EndgameBenchmark
+ */
+
+package othello;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+public class BenchmarkRunner {
+    /**
+     * Spuštění výkonnostních testů
+     * @param args Parametry JMH, například filtr testů nebo -p size=8
+     * @throws CommandLineOptionException Neplatné parametry JMH
+     * @throws RunnerException Chyba při běhu testů
+     * @throws IOException Chyba při výpisu seznamu testů
+     */
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException, IOException {
+        CommandLineOptions options = new CommandLineOptions(args);
+        if (options.shouldHelp() || options.shouldList()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+
+        new Runner(new OptionsBuilder()
+                .parent(options)
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Třída pro výkonnostní test tahu počítače {@code Game.controlIfComputerTurn}
+ * Tah se po každém volání vrátí ze záznamu a transpoziční tabulky se vyčistí, aby každé volání
+ * prohledávalo stejnou pozici od začátku
+ * Funkce:  1) Tah počítače pro obtížnosti bez prohledávání i s prohledáváním
+ * @author Lukáš Dibďák
+ * @see othello.Game
+ * @see othello.ComputerPlayer
+ */
+
+package othello;
+
+import othello.Utility.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ComputerMoveBenchmark {
+    @Param({ "6", "8", "10", "12" })
+    int size;
+
+    @Param({ BenchmarkGames.OPENING, BenchmarkGames.MIDGAME })
+    String phase;
+
+    @Param({ "easy", "hard", "expert" })
+    String difficulty;
+
+    private TypeOfGame typeOfGame;
+    private Game game;
+    private MoveList moves;
+    private TranspositionTable transpositionTable;
+    private TranspositionTable endgameTable;
+
+    /**
+     * Rozehrání hry, ve které je na tahu počítač, a příprava transpozičních tabulek
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        typeOfGame = TypeOfGame.fromDifficulty(difficulty);
+        game = BenchmarkGames.createGame(size, phase, PlayerType.COMPUTER, Utility.PLAYERTWO);
+        if (typeOfGame.isSearch()) {
+            transpositionTable = new TranspositionTable(Utility.TOURNAMENTTABLESIZE);
+            endgameTable = new TranspositionTable(Utility.TOURNAMENTTABLESIZE);
+            game.setTranspositionTables(transpositionTable, endgameTable);
+        }
+        moves = game.getAvailableMoves();
+    }
+
+    /**
+     * Vyčištění transpozičních tabulek před každým tahem
+     */
+    @Setup(Level.Invocation)
+    public void clearTables() {
+        if (transpositionTable != null) {
+            transpositionTable.clear();
+            endgameTable.clear();
+        }
+    }
+
+    /**
+     * Tah počítače a jeho vrácení ze záznamu
+     * @return Souřadnice tahu počítače
+     * @throws NoMoreMovesToUndoException Záznam je prázdný
+     */
+    @Benchmark
+    public String controlIfComputerTurn() throws NoMoreMovesToUndoException {
+        try {
+            game.controlIfComputerTurn(typeOfGame, moves);
+            throw new IllegalStateException("Pocitac netahl");
+        } catch (ComputerHasPlayed e) {
+            game.getJournal().undo(game.getBoard());
+            game.turnHasBeenMade();
+            game.countStones();
+            return e.getX() + e.getY();
+        }
+    }
+}
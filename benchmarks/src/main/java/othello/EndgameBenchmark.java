@@ -0,0 +1,65 @@
+/**
+ * Třída pro výkonnostní test přesného řešení konce hry {@code EndgameSolver.solve}
+ * Měří průměrnou dobu řešení jedné pozice, se kterou se porovnávají cílové časy {@code EndgameSolver.TARGETMILLIS}
+ * Transpoziční tabulka se před každým voláním vyčistí, aby každé volání řešilo pozice od začátku
+ * Funkce:  1) Řešení pozic konce hry pro velikosti desky a počty prázdných polí
+ * @author Lukáš Dibďák
+ * @see othello.EndgameSolver
+ * @see othello.BenchmarkGames
+ */
+
+package othello;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@OperationsPerInvocation(BenchmarkGames.ENDGAMES)
+public class EndgameBenchmark {
+    @Param({ "6", "8", "10", "12" })
+    int size;
+
+    @Param({ "8", "12", "14", "16" })
+    int empties;
+
+    private Position[] positions;
+    private EndgameSolver solver;
+    private TranspositionTable table;
+
+    /**
+     * Rozehrání pozic konce hry a příprava řešení s vlastní transpoziční tabulkou
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        positions = BenchmarkGames.createEndgames(size, empties, BenchmarkGames.ENDGAMES);
+        table = new TranspositionTable(Utility.ENDGAMETABLESIZE);
+        solver = new EndgameSolver(size, table);
+    }
+
+    /**
+     * Vyčištění transpoziční tabulky před každým voláním
+     */
+    @Setup(Level.Invocation)
+    public void clearTable() {
+        table.clear();
+    }
+
+    /**
+     * Přesné vyřešení všech pozic bez omezení počtu uzlů
+     * @return Součet konečných rozdílů kamenů
+     */
+    @Benchmark
+    public int solve() {
+        int sum = 0;
+        for (Position position: positions) {
+            sum += solver.solve(position, Long.MAX_VALUE).score;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Třída pro výkonnostní testy operací hry nad hrací deskou
+ * Každý test běží pro všechny velikosti desky po zahájení i ve střední hře
+ * Funkce:  1) Generování validních tahů {@code Game.getAvailableMoves}
+ *          2) Provedení tahu {@code Game.controlMoveIfValid} včetně vrácení tahu ze záznamu
+ *          3) Kopie hrací desky {@code Board.copy}
+ *          4) Přepočítání skóre {@code Game.countStones}
+ *          5) Vizualizace hrací desky {@code Utility.visualizeBoard}
+ * @author Lukáš Dibďák
+ * @see othello.Game
+ * @see othello.Board
+ */
+
+package othello;
+
+import othello.Utility.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameBenchmark {
+    @Param({ "6", "8", "10", "12" })
+    int size;
+
+    @Param({ BenchmarkGames.OPENING, BenchmarkGames.MIDGAME })
+    String phase;
+
+    private Game game;
+    private MoveList moves;
+    private Coords coords;
+
+    /**
+     * Rozehrání hry a výběr tahu pro test provedení tahu
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        game = BenchmarkGames.createGame(size, phase, PlayerType.HUMAN, Utility.PLAYERONE);
+        moves = game.getAvailableMoves();
+        int square = moves.getSquare(moves.size() / 2);
+        coords = new Coords(square % size, square / size);
+    }
+
+    @Benchmark
+    public MoveList getAvailableMoves() {
+        return game.getAvailableMoves();
+    }
+
+    /**
+     * Provedení tahu a jeho vrácení ze záznamu, aby každé volání začínalo ze stejné pozice
+     * @throws MoveNotAvailableException Tah není validní
+     * @throws NoMoreMovesToUndoException Záznam je prázdný
+     */
+    @Benchmark
+    public Board controlMoveIfValid() throws MoveNotAvailableException, NoMoreMovesToUndoException {
+        game.controlMoveIfValid(coords, moves);
+        game.makeCheckpoint();
+        game.getJournal().undo(game.getBoard());
+        return game.getBoard();
+    }
+
+    @Benchmark
+    public Board copy() {
+        return game.getBoard().copy();
+    }
+
+    @Benchmark
+    public void countStones(Blackhole blackhole) {
+        game.countStones();
+        blackhole.consume(game.getPlayers()[Utility.PLAYERONE].getScore());
+    }
+
+    @Benchmark
+    public String visualizeBoard() {
+        return Utility.visualizeBoard(game.getBoard());
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * Třída pro výkonnostní testy ukládání a načítání her
+ * Hry se ukládají do dočasné složky, která se po testu smaže
+ * Funkce:  1) Uložení hry {@code SaveLoadManager.save}
+ *          2) Zpoždění uložení hry pro hráče bez čekání na zápis
+ *          3) Načtení hry {@code SaveLoadManager.load}
+ * @author Lukáš Dibďák
+ * @see othello.SaveLoadManager
+ */
+
+package othello;
+
+import othello.Utility.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SaveLoadBenchmark {
+    private static final String NAME = "benchmark";
+
+    @Param({ "6", "8", "10", "12" })
+    int size;
+
+    @Param({ BenchmarkGames.OPENING, BenchmarkGames.MIDGAME })
+    String phase;
+
+    private Game game;
+    private SaveLoadManager saveLoadManager;
+
+    /**
+     * Rozehrání hry a její první uložení do dočasné složky
+     * @throws IOException Dočasnou složku nelze vytvořit
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        game = BenchmarkGames.createGame(size, phase, PlayerType.COMPUTER, Utility.PLAYERONE);
+        saveLoadManager = new SaveLoadManager();
+        saveLoadManager.nameOfFolder = Files.createTempDirectory("othello-benchmark").toFile();
+        save();
+    }
+
+    /**
+     * Dokončení rozpracovaných uložení a smazání dočasné složky s uloženými hrami
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        SaveLoadManager.awaitSaves(Utility.SAVESHUTDOWNTIMEOUT);
+        File[] files = saveLoadManager.nameOfFolder.listFiles();
+        if (files != null) {
+            for (File file: files) {
+                file.delete();
+            }
+        }
+        saveLoadManager.nameOfFolder.delete();
+    }
+
+    /**
+     * Uložení hry včetně čekání na zápis souboru na disk
+     * @return Soubor uložené hry
+     */
+    @Benchmark
+    public File save() {
+        return saveLoadManager.save(NAME, game.getPlayers(), game.getBoard(), game.getJournal(), game.getActivePlayerTurn(), TypeOfGame.HARD).join();
+    }
+
+    /**
+     * Zpoždění uložení hry pro hráče, tedy pořízení snímku hry bez čekání na zápis
+     * Opakovaná uložení se slučují, zapisuje se tedy pouze poslední snímek
+     * @return Výsledek uložení
+     */
+    @Benchmark
+    public CompletableFuture<File> saveLatency() {
+        return saveLoadManager.save(NAME, game.getPlayers(), game.getBoard(), game.getJournal(), game.getActivePlayerTurn(), TypeOfGame.HARD);
+    }
+
+    @Benchmark
+    public SavedGame load() throws GameLoadingNameNotFoundException, GameLoadingFailureException {
+        return saveLoadManager.load(NAME);
+    }
+}
@@ -0,0 +1,275 @@
+/**
+ * Třída pro bitovou reprezentaci hrací desky
+ * Funkce:  1) Uchovávání kamenů obou hráčů v bitových maskách
+ *             (jedno slovo typu long pro desky 6x6 a 8x8, více slov pro desky 10x10 a 12x12)
+ *          2) Uchovávání stavu zmrazení kamenů
+ *          3) Dotazy na obsah polí bez vytváření objektů a bez výjimek
+ *          4) Pomocné operace nad víceslovnými bitovými maskami
+ *          5) Průběžné počítání kamenů obou barev
+ *          6) Průběžné udržování Zobristova klíče desky (kameny a zmrazené kameny)
+ *          7) Průběžné udržování indexů vzorů ohodnocení, je-li k desce připojeno
+ * Pole se indexují stejně jako dříve pole {@code Field[]}, tedy {@code y * size + x}
+ * @author Lukáš Dibďák
+ * @see othello.Board
+ */
+
+package othello;
+
+class BitBoard {
+    /**
+     * Identifikace barev kamenů pro indexování masek, odpovídá identifikaci hráčů
+     */
+    static final int BLACK = 0;
+    static final int WHITE = 1;
+    static final int EMPTY = -1;
+
+    final int size;
+    final int words;
+    final BoardTables tables;
+    final Zobrist zobrist;
+
+    /**
+     * Masky kamenů podle barvy, zmrazených kamenů (nelze je otočit), kamenů zobrazených
+     * jako zmrazené a kamenů, které již čekají na zmrazení a nejsou tedy volné
+     */
+    final long[][] stones;
+    final long[] frozen;
+    final long[] frozenColor;
+    final long[] pending;
+
+    /**
+     * Počty kamenů podle barvy, udržované při každé změně desky
+     */
+    final int[] counts;
+
+    /**
+     * Zobristův klíč desky bez hráče na tahu, udržovaný při každé změně desky
+     */
+    long hash;
+
+    /**
+     * Indexy vzorů ohodnocení udržované při každé změně desky nebo {@code null}
+     */
+    PatternAccumulator accumulator;
+
+    /**
+     * Zmrazení naplánovaná podle pořadí tahu nebo {@code null}, vytváří se líně při prvním takovém zmrazení
+     */
+    FreezeClock freezeClock;
+
+    /**
+     * Konstruktor prázdné bitové desky
+     * @param size Velikost hrací desky
+     */
+    BitBoard(int size) {
+        this.size = size;
+        this.words = wordsFor(size);
+        this.tables = BoardTables.forSize(size);
+        this.zobrist = Zobrist.forSize(size);
+        this.stones = new long[][] { new long[words], new long[words] };
+        this.frozen = new long[words];
+        this.frozenColor = new long[words];
+        this.pending = new long[words];
+        this.counts = new int[2];
+    }
+
+    /**
+     * Kopírovací konstruktor, kopíruje primitivní masky a zmrazení naplánovaná podle pořadí tahu
+     * @param bitBoard Bitová deska ke zkopírování
+     */
+    BitBoard(BitBoard bitBoard) {
+        this.size = bitBoard.size;
+        this.words = bitBoard.words;
+        this.tables = bitBoard.tables;
+        this.zobrist = bitBoard.zobrist;
+        this.stones = new long[][] { bitBoard.stones[BLACK].clone(), bitBoard.stones[WHITE].clone() };
+        this.frozen = bitBoard.frozen.clone();
+        this.frozenColor = bitBoard.frozenColor.clone();
+        this.pending = bitBoard.pending.clone();
+        this.counts = bitBoard.counts.clone();
+        this.hash = bitBoard.hash;
+        this.accumulator = (bitBoard.accumulator == null) ? null : new PatternAccumulator(bitBoard.accumulator);
+        this.freezeClock = (bitBoard.freezeClock == null) ? null : new FreezeClock(bitBoard.freezeClock);
+    }
+
+    /**
+     * Připojení průběžně udržovaných indexů vzorů ohodnocení, indexy se vypočtou z aktuálních kamenů
+     * @param evaluator Ohodnocení vzory
+     */
+    void attachAccumulator(PatternEvaluator evaluator) {
+        accumulator = new PatternAccumulator(evaluator, stones[BLACK], stones[WHITE]);
+    }
+
+    /**
+     * Počet slov typu long potřebných pro uložení jedné masky desky
+     * @param size Velikost hrací desky
+     * @return Počet slov
+     */
+    static int wordsFor(int size) {
+        return (size * size + 63) >>> 6;
+    }
+
+    /**
+     * Zjišťuje, zdali je v masce nastaven bit pole
+     * @param mask Maska
+     * @param square Index pole
+     * @return Nastavený/nenastavený bit
+     */
+    static boolean test(long[] mask, int square) {
+        return (mask[square >>> 6] & (1L << square)) != 0;
+    }
+
+    /**
+     * Nastavuje bit pole v masce
+     * @param mask Maska
+     * @param square Index pole
+     */
+    static void set(long[] mask, int square) {
+        mask[square >>> 6] |= 1L << square;
+    }
+
+    /**
+     * Nuluje bit pole v masce
+     * @param mask Maska
+     * @param square Index pole
+     */
+    static void clear(long[] mask, int square) {
+        mask[square >>> 6] &= ~(1L << square);
+    }
+
+    /**
+     * Počet nastavených bitů v masce
+     * @param mask Maska
+     * @return Počet nastavených bitů
+     */
+    static int count(long[] mask) {
+        int count = 0;
+        for (long word: mask) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Zjišťuje, zdali je pole prázdné
+     * @param square Index pole
+     * @return Prázdné/neprázdné pole
+     */
+    boolean isEmpty(int square) {
+        int word = square >>> 6;
+        long bit = 1L << square;
+        return ((stones[BLACK][word] | stones[WHITE][word]) & bit) == 0;
+    }
+
+    /**
+     * Získání barvy kamene na poli
+     * @param square Index pole
+     * @return {@code BLACK}, {@code WHITE} nebo {@code EMPTY}
+     */
+    int colorAt(int square) {
+        if (test(stones[BLACK], square)) {
+            return BLACK;
+        }
+        if (test(stones[WHITE], square)) {
+            return WHITE;
+        }
+        return EMPTY;
+    }
+
+    /**
+     * Položení kamene dané barvy na pole, kámen druhé barvy je z pole odstraněn
+     * @param square Index pole
+     * @param color Barva kamene
+     */
+    void place(int square, int color) {
+        int previous = colorAt(square);
+        if (previous == color) {
+            return;
+        }
+        if (previous != EMPTY) {
+            clear(stones[previous], square);
+            counts[previous]--;
+            hash ^= zobrist.stones[previous][square];
+        }
+        set(stones[color], square);
+        counts[color]++;
+        hash ^= zobrist.stones[color][square];
+        if (accumulator != null) {
+            accumulator.update(square, previous, color);
+        }
+    }
+
+    /**
+     * Odebrání kamene z pole
+     * @param square Index pole
+     */
+    void remove(int square) {
+        int previous = colorAt(square);
+        if (previous != EMPTY) {
+            clear(stones[previous], square);
+            counts[previous]--;
+            hash ^= zobrist.stones[previous][square];
+            if (accumulator != null) {
+                accumulator.update(square, previous, EMPTY);
+            }
+        }
+    }
+
+    /**
+     * Otočení kamene na poli, prázdné pole zůstává prázdné
+     * @param square Index pole
+     */
+    void flip(int square) {
+        int word = square >>> 6;
+        long bit = 1L << square;
+        int previous;
+        if ((stones[BLACK][word] & bit) != 0) {
+            counts[BLACK]--;
+            counts[WHITE]++;
+            previous = BLACK;
+        }
+        else if ((stones[WHITE][word] & bit) != 0) {
+            counts[WHITE]--;
+            counts[BLACK]++;
+            previous = WHITE;
+        }
+        else {
+            return;
+        }
+        if (accumulator != null) {
+            accumulator.update(square, previous, previous ^ 1);
+        }
+        stones[BLACK][word] ^= bit;
+        stones[WHITE][word] ^= bit;
+        hash ^= zobrist.flips[square];
+    }
+
+    /**
+     * Zjišťuje, zdali je kámen na poli zmrazen a nelze jej tedy otočit
+     * @param square Index pole
+     * @return Zmrazený/nezmrazený kámen
+     */
+    boolean isFrozen(int square) {
+        return test(frozen, square);
+    }
+
+    /**
+     * Nastavení zmrazení kamene na poli
+     * @param square Index pole
+     * @param value Zmrazit/rozmrazit
+     */
+    void setFrozen(int square, boolean value) {
+        if (test(frozen, square) != value) {
+            frozen[square >>> 6] ^= 1L << square;
+            hash ^= zobrist.frozen[square];
+        }
+    }
+
+    /**
+     * Počet prázdných polí desky
+     * @return Počet prázdných polí
+     */
+    int emptyCount() {
+        return size * size - counts[BLACK] - counts[WHITE];
+    }
+}
@@ -1,22 +1,33 @@
 /**
  * Třída pro správu hrací desky
+ * Kameny jsou uloženy v bitové reprezentaci {@code BitBoard}, objekty {@code Field} slouží pouze jako pohledy
  * Funkce:  1) Inicializace hrací desky
- *          2) Alokace polí hrací desky
- *          3) Vyplnění středu desky na začátku hry
- *          4) Nastavení barvy jednotlivých polí desky
- *          5) Získání jednotlivých políček desky
+ *          2) Vyplnění středu desky na začátku hry
+ *          3) Nastavení barvy jednotlivých polí desky
+ *          4) Získání jednotlivých políček desky
+ *          5) Zpřístupnění bitové reprezentace desky
+ *          6) Počty kamenů a líně sestavované seznamy kamenů hráčů
  * @author Lukáš Dibďák
  * @see othello.Game
  * @see othello.Field
+ * @see othello.BitBoard
  */
 
 package othello;
 
 import othello.Utility.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 public class Board implements Cloneable {
     static int SIZE;
-    private Field[] map;
+    private final int size;
+    private BitBoard bits;
+    private Field[] views;
+    private List<ArrayList<Field>> stones;
+    private FreezeScheduler freezeScheduler;
 
     /**
      * Konstruktor hrací desky při vytváření nové hry, inicializace hrací desky
@@ -24,9 +35,9 @@ public class Board implements Cloneable {
      */
     Board(int size)  {
         SIZE = size;
-        map = new Field[SIZE * SIZE];
+        this.size = size;
+        bits = new BitBoard(size);
 
-        this.allocateFields();
         this.initBoardStones();
     }
 
@@ -37,51 +48,38 @@ public class Board implements Cloneable {
      */
     Board(int size, String boardStones) {
         SIZE = size;
-        map = new Field[SIZE * SIZE];
+        this.size = size;
+        bits = new BitBoard(size);
         char[] charArray = boardStones.trim().toCharArray();
 
         for (int i = 0; i < charArray.length; i++) {
-            map[i] = new Field();
             if (charArray[i] == Color.BLACK.getKey()) {
-                map[i].setColor(Color.BLACK);
+                bits.place(i, BitBoard.BLACK);
             }
             else if (charArray[i] == Color.WHITE.getKey()) {
-                map[i].setColor(Color.WHITE);
+                bits.place(i, BitBoard.WHITE);
             }
         }
     }
 
     /**
-     * Kopírovací konstruktor pro vytváření hlubokých kopií hrací desky k {@code undoMove} a {@code makeUndo}
+     * Kopírovací konstruktor pro vytváření hlubokých kopií hrací desky, například při ukládání hry
+     * Kopírují se pouze bitové masky, pohledy na pole se vytváří až při jejich použití
      * @param board
      * @see Controller
      * @see Game
      */
     Board (Board board) {
-        this.map = new Field[board.getField().length];
-
-        for (int i = 0; i < board.getField().length; i++) {
-            try {
-                this.map[i] = (Field) board.map[i].clone();
-            } catch (CloneNotSupportedException e) {}
-        }
-    }
-
-    /**
-     * Alokace prázdných polí na hrací desce
-     */
-    void allocateFields() {
-        for (int i = 0; i < SIZE * SIZE; i++) {
-            map[i] = new Field();
-        }
+        this.size = board.size;
+        this.bits = new BitBoard(board.bits);
     }
 
     /**
      * Inicializace 4 prostředních polí na hrací desce
      */
     void initBoardStones() {
-        for (int i = Board.SIZE / 2; i >= (Board.SIZE / 2) - 1; i--) {
-            for (int j = Board.SIZE / 2; j >= (Board.SIZE / 2) - 1; j--) {
+        for (int i = size / 2; i >= (size / 2) - 1; i--) {
+            for (int j = size / 2; j >= (size / 2) - 1; j--) {
                 if (i == j)
                     setField(i, j, Color.WHITE);
                 else
@@ -99,16 +97,29 @@ public class Board implements Cloneable {
         return new Board(this);
     }
 
+    /**
+     * Převod barvy kamene na identifikaci barvy bitové desky
+     * @param color Barva kamene
+     * @return {@code BitBoard.BLACK} nebo {@code BitBoard.WHITE}
+     */
+    static int toBitColor(Color color) {
+        return (color == Color.BLACK || color == Color.FBLACK) ? BitBoard.BLACK : BitBoard.WHITE;
+    }
+
     /**
      * Přetížená metoda pro nastavení pole hrací desky na určitou barvu
+     * Zmrazený kámen nelze přebarvit
      * @param x Vodorovná souřadnice pole na hrací desce
      * @param y Svislá souřadnice pole na hrací desce
      * @param color Barva na kterou má být pole nastaveno
      */
     void setField(int x, int y, Color color) {
-        Field temp = map[y * SIZE + x];
+        int square = y * size + x;
 
-        temp.setColor(color);
+        if (!bits.isFrozen(square)) {
+            bits.place(square, toBitColor(color));
+            stones = null;
+        }
     }
 
     /**
@@ -119,11 +130,10 @@ public class Board implements Cloneable {
      * @see Utility
      */
     void setField(Coords coords, Color color) throws FieldIsNotEmptyException {
-        if (!map[coords.getY() * SIZE + coords.getX()].isEmpty()) {
+        if (!bits.isEmpty(coords.getY() * size + coords.getX())) {
             throw new FieldIsNotEmptyException();
         }
-        Field temp = map[coords.getY() * SIZE + coords.getX()];
-        temp.setColor(color);
+        setField(coords.getX(), coords.getY(), color);
     }
 
     /**
@@ -131,14 +141,178 @@ public class Board implements Cloneable {
      * @param coords Souřadnice pole
      */
     void changeField(Coords coords) {
-        Field temp = getField(coords.getX(), coords.getY());
-
-        if (!temp.isFrozen()) {
-            try {
-                if (temp.getColor() == Color.BLACK) {
-                    temp.setColor(Color.WHITE);
-                } else temp.setColor(Color.BLACK);
-            } catch (FieldIsEmptyException e) {
+        changeField(coords.getY() * size + coords.getX());
+    }
+
+    /**
+     * Přetížená metoda pro otočení kamene na poli daném indexem, zmrazený kámen se neotočí
+     * @param square Index pole
+     * @return Kámen byl/nebyl otočen
+     */
+    boolean changeField(int square) {
+        if (bits.isFrozen(square) || bits.isEmpty(square)) {
+            return false;
+        }
+        bits.flip(square);
+        stones = null;
+        return true;
+    }
+
+    /**
+     * Otočení kamene zpět při operaci undo, provádí se i u kamene, který byl mezitím zmrazen
+     * @param square Index pole
+     */
+    void restoreField(int square) {
+        bits.flip(square);
+        stones = null;
+    }
+
+    /**
+     * Odebrání kamene z pole při operaci undo
+     * @param square Index pole
+     */
+    void removeField(int square) {
+        bits.remove(square);
+        bits.setFrozen(square, false);
+        BitBoard.clear(bits.frozenColor, square);
+        stones = null;
+    }
+
+    /**
+     * Zrušení naplánovaného zmrazení kamene při operaci undo
+     * @param square Index pole
+     */
+    void cancelFreeze(int square) {
+        if (freezeScheduler != null) {
+            freezeScheduler.cancel(square);
+        }
+        if (bits.freezeClock != null) {
+            bits.freezeClock.cancel(square);
+        }
+        BitBoard.clear(bits.pending, square);
+        bits.setFrozen(square, false);
+        BitBoard.clear(bits.frozenColor, square);
+    }
+
+    /**
+     * Získání plánovače zmrazení kamenů, vytváří se líně při prvním zmrazení
+     * Kopie hrací desky plánovač nepřebírá
+     * @return Plánovač zmrazení
+     * @see FreezeScheduler
+     */
+    FreezeScheduler getFreezeScheduler() {
+        if (freezeScheduler == null) {
+            freezeScheduler = new FreezeScheduler(size);
+        }
+        return freezeScheduler;
+    }
+
+    /**
+     * Provedení zmrazení a rozmrazení kamenů, jejichž čas uplynul
+     * @return Některý kámen změnil stav/žádný kámen nezměnil stav
+     */
+    boolean applyFreezes() {
+        return freezeScheduler != null && freezeScheduler.apply(bits);
+    }
+
+    /**
+     * Převzetí barvy zmrazených kamenů z masky zmrazených kamenů
+     * @return Některý kámen změnil barvu/žádný kámen nezměnil barvu
+     */
+    boolean showFrozen() {
+        boolean changed = false;
+        for (int w = 0; w < bits.words; w++) {
+            long shown = bits.frozen[w] & (bits.stones[BitBoard.BLACK][w] | bits.stones[BitBoard.WHITE][w]);
+            if (shown != bits.frozenColor[w]) {
+                bits.frozenColor[w] = shown;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Získání kamenů dané barvy, které nejsou zmraženy ani nečekají na zmrazení
+     * @param color {@code BitBoard.BLACK} nebo {@code BitBoard.WHITE}
+     * @return Maska volných kamenů
+     */
+    long[] getAvailable(int color) {
+        long[] available = new long[bits.words];
+        for (int w = 0; w < bits.words; w++) {
+            available[w] = bits.stones[color][w] & ~bits.pending[w];
+        }
+        return available;
+    }
+
+    /**
+     * Naplánování zmrazení kamene podle pořadí tahu, hodiny zmrazení se vytváří líně při prvním zmrazení
+     * a jsou součástí bitové desky, kopie hrací desky je tedy přebírá
+     * @param square Index pole
+     * @param ply Pořadí aktuálního tahu hry
+     * @param initPlies Za kolik tahů se kámen zmrazí
+     * @param persistPlies Kolik tahů bude zmrazení trvat
+     * @see FreezeClock
+     */
+    void scheduleFreeze(int square, int ply, int initPlies, int persistPlies) {
+        if (bits.freezeClock == null) {
+            bits.freezeClock = new FreezeClock(size, ply);
+        }
+        resolveFreezes(ply);
+        bits.freezeClock.schedule(square, initPlies, persistPlies);
+    }
+
+    /**
+     * Provedení zmrazení a rozmrazení naplánovaných podle pořadí tahu až do daného tahu, při posunu
+     * vzad (operace undo) se změny provedou inverzně
+     * Cena odpovídá počtu změněných polí, nikoli počtu zmrazených kamenů
+     * @param ply Pořadí aktuálního tahu hry
+     * @return Některý kámen změnil stav/žádný kámen nezměnil stav
+     */
+    boolean resolveFreezes(int ply) {
+        FreezeClock freezeClock = bits.freezeClock;
+        if (freezeClock == null || freezeClock.getClock() == ply) {
+            return false;
+        }
+
+        long[] freeze = new long[bits.words];
+        long[] thaw = new long[bits.words];
+        boolean changed = false;
+
+        while (freezeClock.getClock() < ply) {
+            if (freezeClock.advance(freeze, thaw)) {
+                applyPlyEvents(freeze, thaw, true);
+                changed = true;
+            }
+        }
+        while (freezeClock.getClock() > ply) {
+            if (freezeClock.retreat(freeze, thaw)) {
+                applyPlyEvents(freeze, thaw, false);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Provedení zmrazení a rozmrazení jednoho tahu na bitové desce
+     * @param freeze Maska polí se zmrazením
+     * @param thaw Maska polí s rozmrazením
+     * @param forward Posun vpřed/inverzní změny při posunu vzad
+     */
+    private void applyPlyEvents(long[] freeze, long[] thaw, boolean forward) {
+        for (int w = 0; w < bits.words; w++) {
+            for (long mask = freeze[w]; mask != 0; mask &= mask - 1) {
+                bits.setFrozen((w << 6) + Long.numberOfTrailingZeros(mask), forward);
+            }
+            for (long mask = thaw[w]; mask != 0; mask &= mask - 1) {
+                int square = (w << 6) + Long.numberOfTrailingZeros(mask);
+                bits.setFrozen(square, !forward);
+                if (forward) {
+                    BitBoard.clear(bits.pending, square);
+                }
+                else {
+                    BitBoard.set(bits.pending, square);
+                }
             }
         }
     }
@@ -151,15 +325,86 @@ public class Board implements Cloneable {
      * @see Field
      */
     Field getField(int x, int y) {
-        return map[y * SIZE + x];
+        return getField()[y * size + x];
     }
 
     /**
      * Získává všechny pole hrací desky
+     * Pohledy se vytváří líně při prvním použití, pro stejné pole se vrací stále stejný objekt
      * @return Všechna pole hrací desky typu {@code Field}
      * @see Field
      */
     Field[] getField() {
-        return map;
+        if (views == null) {
+            views = new Field[size * size];
+            for (int i = 0; i < views.length; i++) {
+                views[i] = new Field(this, i);
+            }
+        }
+        return views;
+    }
+
+    /**
+     * Získání počtu kamenů dané barvy v konstantním čase
+     * @param color {@code BitBoard.BLACK} nebo {@code BitBoard.WHITE}
+     * @return Počet kamenů
+     */
+    int getStoneCount(int color) {
+        return bits.counts[color];
+    }
+
+    /**
+     * Získání počtu prázdných polí v konstantním čase
+     * @return Počet prázdných polí
+     */
+    int getEmptyCount() {
+        return bits.emptyCount();
+    }
+
+    /**
+     * Získání kamenů dané barvy jako pohledů na pole
+     * Seznamy se sestavují až při prvním dotazu po změně desky
+     * @param color {@code BitBoard.BLACK} nebo {@code BitBoard.WHITE}
+     * @return Kameny dané barvy
+     */
+    ArrayList<Field> getStones(int color) {
+        if (stones == null) {
+            Field[] fields = getField();
+            stones = Arrays.asList(
+                    new ArrayList<>(bits.counts[BitBoard.BLACK]),
+                    new ArrayList<>(bits.counts[BitBoard.WHITE]));
+            for (int square = 0; square < fields.length; square++) {
+                int stoneColor = bits.colorAt(square);
+                if (stoneColor != BitBoard.EMPTY) {
+                    stones.get(stoneColor).add(fields[square]);
+                }
+            }
+        }
+        return stones.get(color);
+    }
+
+    /**
+     * Získání Zobristova klíče hrací desky (kameny a zmrazené kameny, bez hráče na tahu)
+     * @return Klíč hrací desky
+     * @see Zobrist
+     */
+    long getHash() {
+        return bits.hash;
+    }
+
+    /**
+     * Získání velikosti hrací desky
+     * @return Velikost hrací desky
+     */
+    int getSize() {
+        return size;
+    }
+
+    /**
+     * Získání bitové reprezentace hrací desky
+     * @return Bitová deska
+     */
+    BitBoard getBits() {
+        return bits;
     }
 }
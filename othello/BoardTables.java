@@ -0,0 +1,171 @@
+/**
+ * Třída pro předpočítané tabulky hrací desky dané velikosti
+ * Tabulky se vytváří líně při prvním použití dané velikosti a jsou sdíleny všemi hrami
+ * Funkce:  1) Seznamy sousedních polí a jejich masky
+ *          2) Posloupnosti polí paprsků v jednotlivých směrech
+ *          3) Masky okrajů, rohů a polí, ze kterých lze postoupit daným směrem
+ *          4) Pořadí procházení polí podle souřadnic
+ * Všechny tabulky jsou po vytvoření neměnné, proto je lze bez synchronizace číst z více vláken
+ * @author Lukáš Dibďák
+ * @see othello.MoveGenerator
+ * @see othello.BitBoard
+ */
+
+package othello;
+
+final class BoardTables {
+    /**
+     * Směry paprsků z pole
+     */
+    static final int[] DX = {-1, -1, -1, 0, 0, 1, 1, 1};
+    static final int[] DY = {-1, 0, 1, -1, 1, -1, 0, 1};
+    static final int DIRECTIONS = 8;
+
+    /**
+     * Největší velikost desky, jejíž tabulky se uchovávají
+     */
+    static final int MAXSIZE = 12;
+
+    private static final BoardTables[] CACHE = new BoardTables[MAXSIZE + 1];
+
+    final int size;
+    final int words;
+
+    /**
+     * Sousední pole každého pole a maska těchto polí, maska pole {@code square} leží na indexech
+     * {@code square * words} až {@code square * words + words - 1}
+     */
+    final int[][] neighbors;
+    final long[] neighborMasks;
+
+    /**
+     * Paprsky z každého pole indexované směrem, paprsek je posloupnost polí v jednom směru směrem od pole
+     * Paprsek mimo desku je prázdné pole
+     */
+    final int[][][] raysByDirection;
+
+    /**
+     * Masky všech polí desky, okrajových polí, rohů a polí, ze kterých lze postoupit daným směrem
+     * Posun masky omezené na {@code stepMasks[d]} o krok ve směru {@code d} tak nikdy nepřeteče přes okraj desky
+     */
+    final long[] full;
+    final long[] edges;
+    final long[] corners;
+    final long[][] stepMasks;
+
+    /**
+     * Pole seřazená podle vodorovné a poté svislé souřadnice, tedy v pořadí třídy {@code Coords}
+     */
+    final int[] coordsOrder;
+
+    /**
+     * Získání tabulek pro danou velikost desky
+     * @param size Velikost hrací desky
+     * @return Sdílené tabulky
+     */
+    static BoardTables forSize(int size) {
+        if (size > MAXSIZE) {
+            return new BoardTables(size);
+        }
+
+        BoardTables tables = CACHE[size];
+        if (tables == null) {
+            synchronized (CACHE) {
+                tables = CACHE[size];
+                if (tables == null) {
+                    tables = new BoardTables(size);
+                    CACHE[size] = tables;
+                }
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * Konstruktor, vypočítá všechny tabulky pro danou velikost desky
+     * @param size Velikost hrací desky
+     */
+    private BoardTables(int size) {
+        this.size = size;
+        this.words = BitBoard.wordsFor(size);
+
+        int squares = size * size;
+        neighbors = new int[squares][];
+        neighborMasks = new long[squares * words];
+        raysByDirection = new int[squares][DIRECTIONS][];
+        full = new long[words];
+        edges = new long[words];
+        corners = new long[words];
+        stepMasks = new long[DIRECTIONS][words];
+        coordsOrder = new int[squares];
+
+        int order = 0;
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                coordsOrder[order++] = y * size + x;
+            }
+        }
+
+        for (int square = 0; square < squares; square++) {
+            int x = square % size, y = square / size;
+            int neighborCount = 0;
+            int[] tempNeighbors = new int[DIRECTIONS];
+
+            BitBoard.set(full, square);
+            if (x == 0 || y == 0 || x == size - 1 || y == size - 1) {
+                BitBoard.set(edges, square);
+            }
+            if ((x == 0 || x == size - 1) && (y == 0 || y == size - 1)) {
+                BitBoard.set(corners, square);
+            }
+
+            for (int d = 0; d < DIRECTIONS; d++) {
+                int length = 0;
+                for (int i = x + DX[d], j = y + DY[d]; isInBoard(i, j); i += DX[d], j += DY[d]) {
+                    length++;
+                }
+
+                int[] ray = new int[length];
+                for (int k = 0; k < length; k++) {
+                    ray[k] = (y + DY[d] * (k + 1)) * size + (x + DX[d] * (k + 1));
+                }
+                raysByDirection[square][d] = ray;
+
+                if (length > 0) {
+                    tempNeighbors[neighborCount++] = ray[0];
+                    neighborMasks[square * words + (ray[0] >>> 6)] |= 1L << ray[0];
+                    BitBoard.set(stepMasks[d], square);
+                }
+            }
+
+            neighbors[square] = new int[neighborCount];
+            System.arraycopy(tempNeighbors, 0, neighbors[square], 0, neighborCount);
+        }
+    }
+
+    /**
+     * Zjišťuje, zdali souřadnice leží na desce, používá se pouze při výpočtu tabulek
+     * @param x Vodorovná souřadnice
+     * @param y Svislá souřadnice
+     * @return Pole leží na desce/pole neleží na desce
+     */
+    private boolean isInBoard(int x, int y) {
+        return x >= 0 && y >= 0 && x < size && y < size;
+    }
+
+    /**
+     * Zjišťuje, zdali má pole alespoň jednoho souseda v dané masce
+     * @param square Index pole
+     * @param mask Maska
+     * @return Pole má/nemá souseda v masce
+     */
+    boolean hasNeighborIn(int square, long[] mask) {
+        int offset = square * words;
+        for (int w = 0; w < words; w++) {
+            if ((neighborMasks[offset + w] & mask[w]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
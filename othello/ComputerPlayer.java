@@ -0,0 +1,142 @@
+/**
+ * Třída pro výběr tahu počítače podle obtížnosti
+ * Drží stav, který si počítač přenáší mezi tahy jedné hry: prohledávání, řešení konce hry, knihu zahájení
+ * a hledání metodou Monte Carlo, vše se vytváří až při prvním použití
+ * Třídu používá hra s lidským hráčem i turnaj počítačů, každá instance smí být používána pouze jedním vláknem
+ * Funkce:  1) Výběr tahu jednokrokovým algoritmem, knihou zahájení, řešením konce hry, prohledáváním
+ *             nebo metodou Monte Carlo
+ *          2) Příprava ohodnocení pozic pro velikost desky
+ *          3) Výsledek posledního prohledávání
+ * @author Lukáš Dibďák
+ * @see othello.Game
+ * @see othello.Tournament
+ */
+
+package othello;
+
+import othello.Utility.*;
+
+class ComputerPlayer {
+    private final int size;
+    private final TypeOfGame typeOfGame;
+    private final int threads;
+    private final TranspositionTable transpositionTable;
+    private final TranspositionTable endgameTable;
+    private Evaluator evaluator;
+    private ParallelSearch searchEngine = null;
+    private EndgameSolver endgameSolver = null;
+    private OpeningBook openingBook = null;
+    private MonteCarloSearch monteCarloSearch = null;
+    private SearchEngine.Result lastSearch = null;
+
+    /**
+     * Konstruktor
+     * @param size Velikost hrací desky
+     * @param typeOfGame Obtížnost počítače
+     * @param threads Počet vláken prohledávání a hledání metodou Monte Carlo
+     * @param transpositionTable Transpoziční tabulka prohledávání nebo {@code null}
+     * @param endgameTable Transpoziční tabulka řešení konce hry nebo {@code null}
+     * @param evaluator Ohodnocení pozic pro prohledávání nebo {@code null} pro ohodnocení podle {@code createEvaluator}
+     */
+    ComputerPlayer(int size, TypeOfGame typeOfGame, int threads, TranspositionTable transpositionTable,
+                   TranspositionTable endgameTable, Evaluator evaluator) {
+        this.size = size;
+        this.typeOfGame = typeOfGame;
+        this.threads = Math.max(1, threads);
+        this.transpositionTable = transpositionTable;
+        this.endgameTable = endgameTable;
+        this.evaluator = evaluator;
+    }
+
+    /**
+     * Vytvoření ohodnocení pozic vzory, s váhami ze souboru, pokud pro velikost desky existuje,
+     * jinak s váhami odvozenými z vah polí
+     * K desce se připojí indexy vzorů, které se pak udržují při tazích i jejich vracení
+     * a přebírají je pozice vytvořené z desky
+     * @param board Hrací deska nebo {@code null}
+     * @param size Velikost hrací desky
+     * @return Ohodnocení pozic
+     */
+    static Evaluator createEvaluator(Board board, int size) {
+        PatternEvaluator patterns = PatternEvaluator.forSize(size);
+        if (board != null) {
+            board.getBits().attachAccumulator(patterns);
+        }
+        return patterns;
+    }
+
+    /**
+     * Výběr tahu počítače
+     * @param position Pozice, ve které je na tahu počítač, po výběru tahu je ve stejném stavu
+     * @param allAvailableMoves Seznam všech dostupných tahů vygenerovaný pro tuto pozici
+     * @return Pořadí zvoleného tahu v seznamu
+     */
+    int chooseMove(Position position, MoveList allAvailableMoves) {
+        int move;
+        lastSearch = null;
+
+        switch (typeOfGame) {
+            case EASY:
+                return Algorithm.getEasyAlgorithm(allAvailableMoves);
+            case HARD:
+                return Algorithm.getHardAlgorithm(allAvailableMoves);
+            case MONTECARLO:
+                if (monteCarloSearch == null) {
+                    monteCarloSearch = new MonteCarloSearch(size, threads);
+                }
+                lastSearch = monteCarloSearch.search(position, typeOfGame.getMillis());
+                return indexOfResult(allAvailableMoves);
+            default:
+                if (openingBook == null) {
+                    openingBook = OpeningBook.forSize(size);
+                }
+                move = allAvailableMoves.indexOf(openingBook.probe(position.getHash()));
+                if (move >= 0) {
+                    lastSearch = new SearchEngine.Result();
+                    lastSearch.square = allAvailableMoves.getSquare(move);
+                    lastSearch.fromBook = true;
+                    lastSearch.book = openingBook;
+                    return move;
+                }
+                if (size * size - position.counts[BitBoard.BLACK] - position.counts[BitBoard.WHITE] <= typeOfGame.getEndgameEmpties()) {
+                    if (endgameSolver == null) {
+                        endgameSolver = new EndgameSolver(size, endgameTable);
+                    }
+                    lastSearch = endgameSolver.solve(position, Utility.ENDGAMENODES);
+                }
+                if (lastSearch == null || !lastSearch.solved) {
+                    if (searchEngine == null) {
+                        if (evaluator == null) {
+                            evaluator = createEvaluator(null, size);
+                        }
+                        searchEngine = new ParallelSearch(size, transpositionTable, threads, evaluator);
+                    }
+                    lastSearch = searchEngine.search(position, typeOfGame.getDepth(), typeOfGame.getNodes());
+                }
+                lastSearch.book = openingBook;
+                return indexOfResult(allAvailableMoves);
+        }
+    }
+
+    /**
+     * Pořadí tahu zvoleného prohledáváním v seznamu dostupných tahů
+     * @param allAvailableMoves Seznam všech dostupných tahů
+     * @return Pořadí zvoleného tahu v seznamu
+     * @throws IllegalStateException Prohledávání vrátilo pole, které není dostupným tahem
+     */
+    private int indexOfResult(MoveList allAvailableMoves) {
+        int move = allAvailableMoves.indexOf(lastSearch.square);
+        if (move < 0) {
+            throw new IllegalStateException("Prohledavani obtiznosti " + typeOfGame.getDifficulty() + " vratilo neplatny tah " + lastSearch.square);
+        }
+        return move;
+    }
+
+    /**
+     * Získání výsledku posledního výběru tahu
+     * @return Výsledek prohledávání nebo {@code null}, pokud počítač naposledy táhl bez prohledávání
+     */
+    SearchEngine.Result getLastSearch() {
+        return lastSearch;
+    }
+}
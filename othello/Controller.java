@@ -15,16 +15,18 @@ package othello;
 
 import othello.Utility.*;
 
+import java.io.File;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 public class Controller {
     private Game game;
     private SaveLoadManager saveLoadManager;
     private TypeOfGame typeOfGame;
     private boolean gameStarted;
-    ArrayList<TreeMap<Coords, ArrayList<Coords>>> allAvailableMoves;
-    ArrayList<Field> frozenStones = new ArrayList<>();
-    ArrayList<Field> toFreezeStones = new ArrayList<>();
+    private TranspositionTable transpositionTable;
+    private TranspositionTable endgameTable;
+    MoveList allAvailableMoves;
 
     /**
      * Konstruktor objektu
@@ -80,6 +82,7 @@ public class Controller {
         game = new Game(boardSize, players);
         this.gameStarted = true;
         this.typeOfGame = typeOfGame;
+        prepareTranspositionTable();
 
         return new String[] {
                 Integer.toString(game.getScore()[Utility.PLAYERONE]),
@@ -89,6 +92,26 @@ public class Controller {
         };
     }
 
+    /**
+     * Příprava transpozičních tabulek prohledávání a řešení konce hry pro novou hru s počítačem,
+     * který prohledává tahy
+     * Tabulky se alokují pouze jednou a pro každou novou hru se vyčistí
+     */
+    void prepareTranspositionTable() {
+        if (typeOfGame == null || !typeOfGame.isSearch()) {
+            return;
+        }
+        if (transpositionTable == null) {
+            transpositionTable = new TranspositionTable(Utility.TRANSPOSITIONTABLESIZE);
+            endgameTable = new TranspositionTable(Utility.ENDGAMETABLESIZE);
+        }
+        else {
+            transpositionTable.clear();
+            endgameTable.clear();
+        }
+        game.setTranspositionTables(transpositionTable, endgameTable);
+    }
+
     /**
      * Načtení hry ze souboru
      * Po provedení metody se provádí přepočítání skóre
@@ -99,26 +122,20 @@ public class Controller {
      * [3] vizualizovaná hrací deska
      * [4] hlášku o úspěšném načtení hry
      * @throws GameLoadingNameNotFoundException Pokud {@code nameOfGame} odkazuje na neexistující hru
-     * @throws GameLoadingFailureException Při všech ostatních chybách, například chyba čtení souboru
+     * @throws GameLoadingFailureException Při všech ostatních chybách s popisem chyby, například poškozený soubor
      */
     String[] loadGame(String nameOfGame) throws GameLoadingNameNotFoundException, GameLoadingFailureException {
-        ArrayList<String> gameInfo;
-        ArrayDeque<Board> gameBoards;
-
         try {
-            gameInfo = saveLoadManager.load(nameOfGame);
-            PlayerType playerType = Utility.loadParsePlayerType(gameInfo.remove(0).charAt(0));
-            int boardSize = Utility.loadParseBoardSize(gameInfo.remove(0).trim());
-
-            this.typeOfGame = Utility.loadParseTypeOfGame(gameInfo.remove(0).trim());
+            SavedGame savedGame = saveLoadManager.load(nameOfGame);
+            PlayerType playerType = savedGame.getPlayerType();
 
-            int activePlayer = Utility.loadParseActivePlayer(gameInfo.remove(0).trim());
-            gameBoards = Utility.loadParseBoards(gameInfo, boardSize);
+            this.typeOfGame = savedGame.getTypeOfGame();
 
             Player[] players = Player.getPlayersForConstructor(playerType);
-            game = new Game(boardSize, players, gameBoards, activePlayer);
+            game = new Game(players, savedGame);
 
             this.gameStarted = true;
+            prepareTranspositionTable();
 
             Utility.setPlayerString(playerType == PlayerType.COMPUTER);
 
@@ -130,11 +147,11 @@ public class Controller {
                     Utility.getSuccessfulLoadGameString()
             };
         }
-        catch (GameLoadingNameNotFoundException e) {
+        catch (GameLoadingNameNotFoundException | GameLoadingFailureException e) {
             throw e;
         }
         catch (Exception e) {
-            throw new GameLoadingFailureException();
+            throw new GameLoadingFailureException(e.toString());
         }
     }
 
@@ -188,23 +205,34 @@ public class Controller {
      * @throws GameIsNotStartedException Není aktivní žádná hra na které by mohla být provedena operace
      */
     String[] freezeStones(ArrayList<Coords> coordsOfFrozenStones) throws GameIsNotStartedException {
+        return freezeStones(coordsOfFrozenStones, FreezeMode.TIME);
+    }
+
+    /**
+     * Přetížená metoda zajištující zamrznutí kamenů v daném režimu
+     * V režimu {@code FreezeMode.PLIES} se doba zmrazení měří v odehraných tazích
+     * @param coordsOfFrozenStones Seznam, do kterého se uloží souřadnice zmrazovaných kamenů
+     * @param freezeMode Režim zmrazení
+     * @return Pole typu {@code String} stejné jako u {@code freezeStones}
+     * @throws GameIsNotStartedException Není aktivní žádná hra na které by mohla být provedena operace
+     */
+    String[] freezeStones(ArrayList<Coords> coordsOfFrozenStones, FreezeMode freezeMode) throws GameIsNotStartedException {
         if (!gameStarted) {
             throw new GameIsNotStartedException();
         }
 
-        ArrayList<Coords>[] notFrozen = game.getAvailable();
-        ArrayList<Integer> numberOfFrozenStones = new ArrayList<>();
-
+        int size = game.getBoard().getSize();
+        long[] selected = new long[BitBoard.wordsFor(size)];
         int[] randomNumbers = new int [2];
 
-        Utility.generateRandomNumbers(randomNumbers, notFrozen[game.getActivePlayerTurn()].size(), numberOfFrozenStones);
+        int numberOfFrozenStones = Utility.generateRandomNumbers(randomNumbers, game.getAvailable(game.getActivePlayerTurn()), selected);
 
-        for (int i: numberOfFrozenStones) {
-            Coords tmpCoords = notFrozen[game.getActivePlayerTurn()].get(i);
-            game.getBoard().getField(tmpCoords.getX(), tmpCoords.getY()).freeze(randomNumbers[0], randomNumbers[1]);
-            game.getBoard().getField(tmpCoords.getX(), tmpCoords.getY()).setAvailable(false);
-            frozenStones.add(game.getBoard().getField(tmpCoords.getX(), tmpCoords.getY()));
-            coordsOfFrozenStones.add(tmpCoords);
+        for (int w = 0; w < selected.length; w++) {
+            for (long mask = selected[w]; mask != 0; mask &= mask - 1) {
+                int square = (w << 6) + Long.numberOfTrailingZeros(mask);
+                game.freezeStone(square, randomNumbers[0], randomNumbers[1], freezeMode);
+                coordsOfFrozenStones.add(new Coords(square % size, square / size));
+            }
         }
 
         game.turnHasBeenMade();
@@ -215,30 +243,24 @@ public class Controller {
                 Integer.toString(game.getScore()[Utility.PLAYERTWO]),
                 Utility.getPlayerTurnString(game.getActivePlayerTurn()),
                 Utility.visualizeBoard(game.getBoard()),
-                Utility.getSuccessfulFreezeStoneString(randomNumbers, numberOfFrozenStones.size())
+                Utility.getSuccessfulFreezeStoneString(randomNumbers, numberOfFrozenStones, freezeMode)
         };
     }
 
     /**
      * Metoda zajišťující uložení hry
+     * Hra se ukládá na pozadí, metoda pořídí pouze snímek hry a ihned se vrací
      * @param nameOfGame Jméno hry pod kterým bude uloženo
-     * @return Pole typu {@code String} které vrací
-     * [0] hláška o úspěšném uložení hry
+     * @return Výsledek uložení, dokončí se souborem uložené hry nebo výjimkou {@code GameSavingFailureException},
+     * například při chybě zápisu
      * @throws GameIsNotStartedException Není aktivní žádná hra na které by mohla být provedena operace
-     * @throws GameSavingFailureException Při všech ostatních chybách, například chyba zápisu
      */
-    String saveGame(String nameOfGame) throws GameIsNotStartedException, GameSavingFailureException {
+    CompletableFuture<File> saveGame(String nameOfGame) throws GameIsNotStartedException {
         if (!gameStarted) {
             throw new GameIsNotStartedException();
         }
 
-        try {
-            saveLoadManager.save(nameOfGame, game.getPlayers(), game.getLogger(), game.getActivePlayerTurn(), typeOfGame);
-            return Utility.getSuccessfulSaveGameString();
-        }
-        catch (Exception e) {
-            throw new GameSavingFailureException();
-        }
+        return saveLoadManager.save(nameOfGame, game.getPlayers(), game.getBoard(), game.getJournal(), game.getActivePlayerTurn(), typeOfGame);
     }
 
     /**
@@ -258,10 +280,7 @@ public class Controller {
         }
 
         try {
-            Board temp = game.makeUndo();
-            game.setBoard(temp);
-
-            game.makeCheckpoint();
+            game.makeUndo();
             game.countStones();
 
             return new String[] {
@@ -281,6 +300,8 @@ public class Controller {
      * - hra skončila, protože žádný z hráčů nemůže táhnout nebo na hrací desce není žádné prázdné místo
      * - na tahu je počítač, vykoná tedy podle algoritmu tah
      * - ukládá všechny dostupné tahy, ve kterých se následně vyhledává tah hráčů/počítače
+     * @param retFields Seznam, do kterého se přidají pole zmrazených kamenů a kamenů čekajících na zmrazení,
+     * nebo {@code null}, pokud je volající nepotřebuje
      * @throws GameEndedException Hra byla ukončena, v rámci výjimky vrací pole typu {@code String}:
      * [0,1] aktuální skóre hráčů pro výpis
      * [2] řetězec s informací o vítězi a konci hry
@@ -290,6 +311,7 @@ public class Controller {
      * [2] řetězec s informací kdo je na řadě
      * [3] vizualizovaná hrací deska
      * [4,5] souřadnice tahu počítače
+     * [6] statistiky prohledávání tahu počítače nebo {@code null}
      */
     String[] analyzeNextTurn(ArrayList<Field> retFields) throws GameEndedException, ComputerHasPlayed, GameIsNotStartedException {
         if (!gameStarted) {
@@ -298,13 +320,10 @@ public class Controller {
 
         allAvailableMoves = game.getAvailableMoves();
 
-        game.checkIfFrozen(frozenStones, toFreezeStones);
+        game.checkIfFrozen();
 
-        for (Field field: toFreezeStones) {
-            retFields.add(field);
-        }
-        for (Field field: frozenStones) {
-            retFields.add(field);
+        if (retFields != null) {
+            game.getPending(retFields);
         }
 
         if (allAvailableMoves.isEmpty()) {
@@ -330,7 +349,8 @@ public class Controller {
                             Utility.getPlayerTurnString(game.getActivePlayerTurn()),
                             Utility.visualizeBoard(game.getBoard()),
                             coords.getX(),
-                            coords.getY()
+                            coords.getY(),
+                            (game.getLastSearch() == null) ? null : Utility.getSearchInfoString(game.getLastSearch())
                     }
             );
         }
@@ -1,55 +1,25 @@
 package othello;
 
-import java.util.*;
-
 /**
  * Created by Lukas on 04.04.16.
+ * Odpočet zmrazení se počítá z časů zmrazení a rozmrazení, nepotřebuje tedy žádné vlákno
  */
 public class Delay {
     int initSec;
     int persistSec;
-    Timer timer;
-    Countdown countdown;
-
-    class Countdown extends TimerTask {
-        int initSec;
-        int persistSec;
-
-        Countdown(int initSec, int persistSec) {
-            this.initSec = initSec;
-            this.persistSec = persistSec;
-        }
-
-        int left() {
-            return (initSec == 0) ? persistSec : initSec;
-        }
-
-        @Override
-        public void run() {
-            if (initSec == 0) {
-                if (persistSec == 0) {
-                    timer.cancel();
-                }
-                else {
-                    persistSec--;
-                }
-            }
-            else {
-                initSec--;
-            }
-        }
-    }
+    private final long freezeAt;
+    private final long thawAt;
 
     Delay(int initSec, int persistSec) {
         this.initSec = initSec;
         this.persistSec = persistSec;
-        this.timer = new Timer();
-        this.countdown = new Countdown(initSec, persistSec);
-
-        timer.schedule(countdown, 0, 1000);
+        this.freezeAt = System.nanoTime() + initSec * 1000000000L;
+        this.thawAt = freezeAt + persistSec * 1000000000L;
     }
 
     int left() {
-        return countdown.left();
+        long now = System.nanoTime();
+        long deadline = (now - freezeAt < 0) ? freezeAt : thawAt;
+        return (int) Math.max(0, (deadline - now) / 1000000000L);
     }
 }
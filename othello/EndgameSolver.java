@@ -0,0 +1,464 @@
+/**
+ * Třída pro přesné dořešení konce hry
+ * Pokud na desce zbývá málo prázdných polí, prohledává se strom hry až do jejího konce a výsledkem
+ * je přesný rozdíl kamenů při nejlepší hře obou hráčů
+ * Konečný rozdíl kamenů odpovídá skóre z {@code Game.setFinalScore}: prázdná pole se přičítají vítězi,
+ * při remíze je rozdíl nulový
+ * Funkce:  1) Prohledávání alfa-beta s nulovým oknem až do konce hry
+ *          2) Řazení tahů podle parity oblastí desky a podle mobility soupeře
+ *          3) Specializované dořešení posledních jednoho, dvou a tří prázdných polí
+ *          4) Vlastní transpoziční tabulka oddělená od tabulky prohledávání
+ *          5) Cílové časy řešení podle počtu prázdných polí pro měření výkonu
+ *          6) Omezení počtu uzlů, po jehož překročení se řešení vzdá a počítač použije prohledávání
+ * @author Lukáš Dibďák
+ * @see othello.Position
+ * @see othello.SearchEngine
+ * @see othello.Game
+ */
+
+package othello;
+
+class EndgameSolver {
+    /**
+     * Cílové časy řešení v milisekundách podle počtu prázdných polí
+     * Odpovídají průměrnému času řešení pozice v testu {@code EndgameBenchmark} na desce 12x12 s rezervou
+     * asi třetiny, menší desky se řeší rychleji, hodnoty nad 17 prázdných polí jsou extrapolované
+     */
+    static final long[] TARGETMILLIS = { 1, 1, 1, 1, 1, 1, 2, 3, 3, 5, 10, 20, 25, 80, 250, 300, 1600, 4500, 11000, 27000, 65000 };
+
+    /**
+     * Nejmenší počet prázdných polí, pro který se používá transpoziční tabulka a řazení podle mobility
+     */
+    private static final int HASHEMPTIES = 6;
+    private static final int MOBILITYEMPTIES = 7;
+
+    private final int size;
+    private final int squares;
+    private final int words;
+    private final BoardTables tables;
+    private final TranspositionTable table;
+    private final MoveList[] moveLists;
+    private final int[][] orderKeys;
+    private final long[][] regions;
+    private final long[] lastFlips;
+    private final int[] lastEmpties;
+
+    private Position position;
+    private long nodes;
+    private long nodeLimit;
+    private boolean aborted;
+
+    /**
+     * Konstruktor, alokuje seznamy tahů pro všechny úrovně prohledávání
+     * @param size Velikost hrací desky
+     * @param table Transpoziční tabulka určená pouze pro řešení konce hry nebo {@code null}
+     */
+    EndgameSolver(int size, TranspositionTable table) {
+        this.size = size;
+        this.squares = size * size;
+        this.tables = BoardTables.forSize(size);
+        this.words = tables.words;
+        this.table = table;
+        this.moveLists = new MoveList[squares + 2];
+        this.orderKeys = new int[squares + 2][squares];
+        for (int i = 0; i < moveLists.length; i++) {
+            moveLists[i] = new MoveList(size);
+        }
+        this.regions = createRegions(size, words);
+        this.lastFlips = new long[3 * words];
+        this.lastEmpties = new int[3];
+    }
+
+    /**
+     * Rozdělení desky na čtyři kvadranty pro určování parity
+     * @param size Velikost hrací desky
+     * @param words Počet slov masky
+     * @return Masky kvadrantů
+     */
+    private static long[][] createRegions(int size, int words) {
+        long[][] regions = new long[4][words];
+        int half = size / 2;
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                BitBoard.set(regions[(y < half ? 0 : 2) + (x < half ? 0 : 1)], y * size + x);
+            }
+        }
+        return regions;
+    }
+
+    /**
+     * Cílový čas řešení pro daný počet prázdných polí
+     * @param empties Počet prázdných polí
+     * @return Čas v milisekundách
+     */
+    static long targetMillis(int empties) {
+        return TARGETMILLIS[Math.min(empties, TARGETMILLIS.length - 1)];
+    }
+
+    /**
+     * Přesné vyřešení pozice
+     * @param position Pozice, ve které je na tahu počítač, po řešení je ve stejném stavu
+     * @param nodeLimit Největší počet uzlů, po jeho překročení se řešení přeruší
+     * @return Výsledek, hodnota je konečný rozdíl kamenů z pohledu hráče na tahu a hloubka je počet prázdných polí,
+     *         přerušené řešení není označeno jako vyřešené a jeho tah ani hodnota neplatí
+     */
+    SearchEngine.Result solve(Position position, long nodeLimit) {
+        long start = System.nanoTime();
+        SearchEngine.Result result = new SearchEngine.Result();
+        MoveList rootMoves = moveLists[0];
+
+        this.position = position;
+        this.nodes = 0;
+        this.nodeLimit = nodeLimit;
+        this.aborted = false;
+        if (table != null) {
+            table.newSearch();
+        }
+
+        int empties = position.emptyCount();
+        position.generateMoves(rootMoves);
+        result.depth = empties;
+        result.solved = true;
+
+        if (rootMoves.isEmpty()) {
+            result.square = -1;
+            result.score = finalDifference();
+        }
+        else {
+            orderMoves(rootMoves, 0, empties, TranspositionTable.NOTFOUND);
+
+            int alpha = -squares - 1;
+            for (int i = 0; i < rootMoves.size(); i++) {
+                position.makeMove(rootMoves, i);
+                int score;
+                if (i == 0) {
+                    score = -solve(-squares - 1, -alpha, empties - 1, 1);
+                }
+                else {
+                    score = -solve(-alpha - 1, -alpha, empties - 1, 1);
+                    if (score > alpha) {
+                        score = -solve(-squares - 1, -alpha, empties - 1, 1);
+                    }
+                }
+                position.unmakeMove();
+                if (aborted) {
+                    break;
+                }
+
+                if (score > alpha) {
+                    alpha = score;
+                    result.square = rootMoves.getSquare(i);
+                }
+            }
+            result.score = alpha;
+            result.solved = !aborted;
+        }
+
+        result.nodes = nodes;
+        result.nanos = System.nanoTime() - start;
+        return result;
+    }
+
+    /**
+     * Rekurzivní řešení pozice s alfa-beta ořezáváním
+     * @param alpha Dolní mez
+     * @param beta Horní mez
+     * @param empties Počet prázdných polí
+     * @param ply Vzdálenost od kořene
+     * @return Konečný rozdíl kamenů z pohledu hráče na tahu
+     */
+    private int solve(int alpha, int beta, int empties, int ply) {
+        if (empties <= 3) {
+            return solveLast(alpha, beta, empties);
+        }
+        if (++nodes > nodeLimit) {
+            aborted = true;
+            return 0;
+        }
+
+        long key = position.getHash();
+        long data = TranspositionTable.NOTFOUND;
+        if (table != null && empties >= HASHEMPTIES) {
+            data = table.probe(key);
+            if (data != TranspositionTable.NOTFOUND) {
+                int score = TranspositionTable.scoreOf(data);
+                switch (TranspositionTable.boundOf(data)) {
+                    case TranspositionTable.EXACT:
+                        return score;
+                    case TranspositionTable.LOWER:
+                        if (score >= beta) {
+                            return score;
+                        }
+                        break;
+                    case TranspositionTable.UPPER:
+                        if (score <= alpha) {
+                            return score;
+                        }
+                }
+            }
+        }
+
+        MoveList moves = moveLists[ply];
+        position.generateMoves(moves);
+        if (moves.isEmpty()) {
+            return finalDifference();
+        }
+        orderMoves(moves, ply, empties, data);
+
+        int originalAlpha = alpha;
+        int best = -squares - 1;
+        int bestSquare = -1;
+
+        for (int i = 0; i < moves.size(); i++) {
+            position.makeMove(moves, i);
+            int score;
+            if (i == 0) {
+                score = -solve(-beta, -alpha, empties - 1, ply + 1);
+            }
+            else {
+                score = -solve(-alpha - 1, -alpha, empties - 1, ply + 1);
+                if (score > alpha && score < beta) {
+                    score = -solve(-beta, -alpha, empties - 1, ply + 1);
+                }
+            }
+            position.unmakeMove();
+            if (aborted) {
+                return 0;
+            }
+
+            if (score > best) {
+                best = score;
+                bestSquare = moves.getSquare(i);
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        if (table != null && empties >= HASHEMPTIES) {
+            int bound = (best <= originalAlpha) ? TranspositionTable.UPPER
+                    : (best >= beta) ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+            table.store(key, empties, bound, best, bestSquare);
+        }
+        return best;
+    }
+
+    /**
+     * Seřazení tahů: nejprve tah z transpoziční tabulky, dále tahy do oblastí s lichým počtem
+     * prázdných polí a tahy, po kterých má soupeř nejméně odpovědí
+     * @param moves Seznam tahů
+     * @param ply Vzdálenost od kořene
+     * @param empties Počet prázdných polí
+     * @param data Data záznamu transpoziční tabulky nebo {@code NOTFOUND}
+     */
+    private void orderMoves(MoveList moves, int ply, int empties, long data) {
+        int[] keys = orderKeys[ply];
+        int hashSquare = (data == TranspositionTable.NOTFOUND) ? -1 : TranspositionTable.moveOf(data);
+        int oddRegions = oddRegions();
+
+        for (int i = 0; i < moves.size(); i++) {
+            int square = moves.getSquare(i);
+            int key = 0;
+            if (square == hashSquare) {
+                key = Integer.MIN_VALUE;
+            }
+            else {
+                if (empties >= MOBILITYEMPTIES) {
+                    position.makeMove(moves, i);
+                    position.generateMoves(moveLists[ply + 1]);
+                    position.unmakeMove();
+                    key += moveLists[ply + 1].size() << 4;
+                }
+                if ((oddRegions & (1 << regionOf(square))) != 0) {
+                    key -= 8;
+                }
+                if (BitBoard.test(tables.corners, square)) {
+                    key -= 4;
+                }
+            }
+            keys[i] = key;
+        }
+
+        for (int i = 1; i < moves.size(); i++) {
+            for (int j = i; j > 0 && keys[j] < keys[j - 1]; j--) {
+                int key = keys[j];
+                keys[j] = keys[j - 1];
+                keys[j - 1] = key;
+                moves.swap(j, j - 1);
+            }
+        }
+    }
+
+    /**
+     * Maska kvadrantů s lichým počtem prázdných polí
+     * @return Bit {@code r} je nastaven, pokud má kvadrant {@code r} lichý počet prázdných polí
+     */
+    private int oddRegions() {
+        int odd = 0;
+        for (int r = 0; r < regions.length; r++) {
+            int count = 0;
+            for (int w = 0; w < words; w++) {
+                count += Long.bitCount(regions[r][w] & ~(position.stones[BitBoard.BLACK][w] | position.stones[BitBoard.WHITE][w]));
+            }
+            odd |= (count & 1) << r;
+        }
+        return odd;
+    }
+
+    /**
+     * Kvadrant, do kterého patří pole
+     * @param square Index pole
+     * @return Číslo kvadrantu
+     */
+    private int regionOf(int square) {
+        int half = size / 2;
+        return ((square / size) < half ? 0 : 2) + ((square % size) < half ? 0 : 1);
+    }
+
+    /**
+     * Dořešení posledních nejvýše tří prázdných polí bez generování seznamů tahů
+     * @param alpha Dolní mez
+     * @param beta Horní mez
+     * @param empties Počet prázdných polí
+     * @return Konečný rozdíl kamenů z pohledu hráče na tahu
+     */
+    private int solveLast(int alpha, int beta, int empties) {
+        int count = 0;
+        for (int w = 0; w < words && count < empties; w++) {
+            long mask = tables.full[w] & ~(position.stones[BitBoard.BLACK][w] | position.stones[BitBoard.WHITE][w]);
+            for (; mask != 0 && count < empties; mask &= mask - 1) {
+                lastEmpties[count++] = (w << 6) + Long.numberOfTrailingZeros(mask);
+            }
+        }
+
+        switch (count) {
+            case 0:
+                nodes++;
+                return finalDifference();
+            case 1:
+                return solveLastOne(lastEmpties[0]);
+            case 2:
+                return solveLastTwo(alpha, beta, lastEmpties[0], lastEmpties[1]);
+            default:
+                return solveLastThree(alpha, beta, lastEmpties[0], lastEmpties[1], lastEmpties[2]);
+        }
+    }
+
+    /**
+     * Dořešení posledního prázdného pole, tah se pouze spočítá a neprovádí se
+     * @param square Poslední prázdné pole
+     * @return Konečný rozdíl kamenů z pohledu hráče na tahu
+     */
+    private int solveLastOne(int square) {
+        nodes++;
+        int side = position.getSideToMove();
+        if (!MoveGenerator.flips(tables, position.stones[side], position.stones[side ^ 1], square, lastFlips, 0)) {
+            return finalDifference();
+        }
+
+        int flipped = 0;
+        for (int w = 0; w < words; w++) {
+            flipped += Long.bitCount(lastFlips[w] & ~position.frozen[w]);
+        }
+        return position.discDifference() + 2 * flipped + 1;
+    }
+
+    /**
+     * Dořešení posledních dvou prázdných polí
+     * @param alpha Dolní mez
+     * @param beta Horní mez
+     * @param first První prázdné pole
+     * @param second Druhé prázdné pole
+     * @return Konečný rozdíl kamenů z pohledu hráče na tahu
+     */
+    private int solveLastTwo(int alpha, int beta, int first, int second) {
+        nodes++;
+        int side = position.getSideToMove();
+        int best = Integer.MIN_VALUE;
+
+        if (MoveGenerator.flips(tables, position.stones[side], position.stones[side ^ 1], first, lastFlips, words)) {
+            position.makeMove(first, lastFlips, words);
+            best = -solveLastOne(second);
+            position.unmakeMove();
+            if (best >= beta) {
+                return best;
+            }
+        }
+        if (MoveGenerator.flips(tables, position.stones[side], position.stones[side ^ 1], second, lastFlips, words)) {
+            position.makeMove(second, lastFlips, words);
+            best = Math.max(best, -solveLastOne(first));
+            position.unmakeMove();
+        }
+        return (best == Integer.MIN_VALUE) ? finalDifference() : best;
+    }
+
+    /**
+     * Dořešení posledních tří prázdných polí, nejprve se zkouší pole v kvadrantu bez dalšího prázdného pole
+     * @param alpha Dolní mez
+     * @param beta Horní mez
+     * @param first První prázdné pole
+     * @param second Druhé prázdné pole
+     * @param third Třetí prázdné pole
+     * @return Konečný rozdíl kamenů z pohledu hráče na tahu
+     */
+    private int solveLastThree(int alpha, int beta, int first, int second, int third) {
+        nodes++;
+        int regionFirst = regionOf(first);
+        int regionSecond = regionOf(second);
+        int regionThird = regionOf(third);
+
+        if (regionFirst == regionSecond && regionFirst != regionThird) {
+            int square = first;
+            first = third;
+            third = square;
+        }
+        else if (regionFirst == regionThird && regionFirst != regionSecond) {
+            int square = first;
+            first = second;
+            second = square;
+        }
+
+        int side = position.getSideToMove();
+        int best = Integer.MIN_VALUE;
+        int[] order = { first, second, third, first, second };
+
+        for (int i = 0; i < 3; i++) {
+            int square = order[i];
+            if (!MoveGenerator.flips(tables, position.stones[side], position.stones[side ^ 1], square, lastFlips, 2 * words)) {
+                continue;
+            }
+            position.makeMove(square, lastFlips, 2 * words);
+            int score = -solveLastTwo(-beta, -Math.max(alpha, best), order[i + 1], order[i + 2]);
+            position.unmakeMove();
+
+            if (score > best) {
+                best = score;
+                if (best >= beta) {
+                    return best;
+                }
+            }
+        }
+        return (best == Integer.MIN_VALUE) ? finalDifference() : best;
+    }
+
+    /**
+     * Konečný rozdíl kamenů z pohledu hráče na tahu, který nemá žádný tah
+     * Prázdná pole se přičítají vítězi stejně jako v {@code Game.setFinalScore}
+     * @return Rozdíl kamenů
+     */
+    private int finalDifference() {
+        int own = position.counts[position.getSideToMove()];
+        int opponent = position.counts[position.getSideToMove() ^ 1];
+
+        if (own > opponent) {
+            return squares - 2 * opponent;
+        }
+        if (own < opponent) {
+            return -(squares - 2 * own);
+        }
+        return 0;
+    }
+}
@@ -68,16 +68,30 @@ class NoMoreMovesToUndoException extends Exception {
 }
 
 class GameSavingFailureException extends Exception {
+    GameSavingFailureException() {
+    }
+
+    GameSavingFailureException(String reason) {
+        super(reason);
+    }
+
     @Override
     public String toString() {
-        return "Pri ukladani hry se vyskytla chyba. Hra nebyla ulozena.";
+        return (getMessage() == null) ? "Pri ukladani hry se vyskytla chyba. Hra nebyla ulozena." : "Pri ukladani hry se vyskytla chyba: " + getMessage() + ". Hra nebyla ulozena.";
     }
 }
 
 class GameLoadingFailureException extends Exception {
+    GameLoadingFailureException() {
+    }
+
+    GameLoadingFailureException(String reason) {
+        super(reason);
+    }
+
     @Override
     public String toString() {
-        return "Pri nahravani hry se vyskytla chyba.";
+        return (getMessage() == null) ? "Pri nahravani hry se vyskytla chyba." : "Pri nahravani hry se vyskytla chyba: " + getMessage() + ".";
     }
 }
 
@@ -1,108 +1,34 @@
 /**
  * Třída pro správu pole hrací desky
+ * Pole je pouze pohledem na bitovou reprezentaci hrací desky {@code BitBoard}, samo žádný stav kamene neuchovává
  * Funkce:  1) Získávání informace zdali je pole prázdné
  *          2) Práce s barvou na daném poli
  *          3) Zmrazení kamenů
  * @author Lukáš Dibďák
+ * @see othello.BitBoard
  */
 
 package othello;
 
 import othello.Utility.*;
 
-import java.util.Timer;
-import java.util.TimerTask;
+public class Field {
+    private final Board board;
+    private final int index;
 
-public class Field implements Cloneable {
     /**
-     * Vnitřní třída pro plánování události
+     * Konstruktor pohledu na pole hrací desky
+     * @param board Hrací deska, na které pole leží
+     * @param index Index pole na hrací desce
      */
-    class Defrost extends TimerTask {
-        int initSec;
-        int persistSec;
-        int originPersist;
-
-        /**
-         *
-         * @param initSec
-         * @param persistSec
-         */
-        Defrost(int initSec, int persistSec, int originPersist) {
-            this.initSec = initSec;
-            this.persistSec = persistSec;
-            this.originPersist = originPersist;
-        }
-
-        int left() {
-            return  (initSec == 0) ? persistSec : initSec;
-        }
-
-        boolean write() {
-            return !((initSec == 0 && persistSec == originPersist) || persistSec == 0);
-        }
-
-        /**
-         * Specifikace události, která se má provést při naplánování
-         */
-        @Override
-        public void run() {
-            if (initSec != 0)
-                initSec--;
-            else {
-                    frozen = true;
-                    if (persistSec != 0)
-                        persistSec--;
-                    else {
-                        frozen = false;
-                        available = true;
-                        timer.cancel();
-                    }
-            }
-        }
-
-    }
-
-    private Color color;
-    private boolean empty;
-    private boolean frozen;
-    private boolean available;
-    Defrost defrost;
-    Timer timer;
-
-    /**
-     * Konstruktor pole, implicitně nastavené na prázdné
-     */
-    Field() {
-        empty = true;
-        frozen = false;
-        available = true;
+    Field(Board board, int index) {
+        this.board = board;
+        this.index = index;
     }
 
     Field(Field field) {
-        this.empty = field.empty;
-        this.color = field.color;
-        this.frozen = field.frozen;
-        this.available = field.available;
-    }
-
-    /**
-     * Mění barvu mezi zmrazením a odmrazení
-     */
-    void changeColorFreeze() {
-        switch (this.color) {
-            case WHITE:
-                this.color = Color.FWHITE;
-                break;
-            case BLACK:
-                this.color = Color.FBLACK;
-                break;
-            case FWHITE:
-                this.color = Color.WHITE;
-                break;
-            case FBLACK:
-                this.color = Color.BLACK;
-                break;
-        }
+        this.board = field.board;
+        this.index = field.index;
     }
 
     /**
@@ -112,11 +38,17 @@ public class Field implements Cloneable {
      * @see Color
      */
     Color getColor() throws FieldIsEmptyException {
-        if (empty) {
-            throw new FieldIsEmptyException();
+        BitBoard bits = board.getBits();
+        boolean shownFrozen = BitBoard.test(bits.frozenColor, index);
+
+        switch (bits.colorAt(index)) {
+            case BitBoard.BLACK:
+                return shownFrozen ? Color.FBLACK : Color.BLACK;
+            case BitBoard.WHITE:
+                return shownFrozen ? Color.FWHITE : Color.WHITE;
+            default:
+                throw new FieldIsEmptyException();
         }
-
-        return this.color;
     }
 
     /**
@@ -124,17 +56,23 @@ public class Field implements Cloneable {
      * @param color Barva kamene
      */
     void setColor(Color color) {
-        empty = false;
-        if (!frozen)
-            this.color = color;
+        board.setField(index % board.getSize(), index / board.getSize(), color);
     }
 
+    /**
+     * Zbývající čas do zmrazení, u zmrazeného kamene do rozmrazení
+     * @return Počet sekund
+     */
     int left() {
-        return defrost.left();
+        return board.getFreezeScheduler().secondsLeft(index);
     }
 
+    /**
+     * Zjišťuje, zdali se má u kamene zobrazovat zbývající čas
+     * @return Kámen čeká na zmrazení nebo rozmrazení/nemá naplánovanou změnu
+     */
     boolean write() {
-        return defrost.write();
+        return board.getFreezeScheduler().isScheduled(index);
     }
 
     /**
@@ -142,29 +80,18 @@ public class Field implements Cloneable {
      * @return Prázdné/neprázdné pole
      */
     boolean isEmpty() {
-        return empty;
-    }
-
-    /**
-     * Klonování pole pro získání hluboké kopie
-     * @return Klon pole typu {@code Object}
-     * @throws CloneNotSupportedException Nekompatibilní typy na klonování
-     */
-    @Override
-    protected Object clone() throws CloneNotSupportedException {
-        return super.clone();
+        return board.getBits().isEmpty(index);
     }
 
     /**
      * Událost zmrazení políčka na určitou dobu
+     * Zmrazení se naplánuje ve sdíleném plánovači hrací desky, změna se projeví v {@code Game.checkIfFrozen}
      * @param initSec Za jak dlouho se událost provede
      * @param persistSec Jak dlouho bude zmrazení trvat
+     * @see FreezeScheduler
      */
     void freeze(int initSec, int persistSec) {
-        timer = new Timer();
-        defrost = new Defrost(initSec, persistSec, persistSec);
-
-        timer.schedule(defrost, 0, 1000);
+        board.getFreezeScheduler().schedule(index, initSec, persistSec);
     }
 
     /**
@@ -172,7 +99,7 @@ public class Field implements Cloneable {
      * @return zamrznuté/nezamrznuté
      */
     public boolean isFrozen() {
-        return frozen;
+        return board.getBits().isFrozen(index);
     }
 
     /**
@@ -180,7 +107,7 @@ public class Field implements Cloneable {
      * @return
      */
     public boolean isAvailable() {
-        return available;
+        return !BitBoard.test(board.getBits().pending, index);
     }
 
     /**
@@ -188,6 +115,9 @@ public class Field implements Cloneable {
      * @param available kámen volný ke zmrazení
      */
     public void setAvailable(boolean available) {
-        this.available = available;
+        if (available)
+            BitBoard.clear(board.getBits().pending, index);
+        else
+            BitBoard.set(board.getBits().pending, index);
     }
 }
@@ -0,0 +1,259 @@
+/**
+ * Třída pro zmrazování kamenů podle počtu odehraných tahů (deterministický režim zmrazení)
+ * Zmrazení a rozmrazení se neplánuje na čas, ale na pořadí tahu (ply) hry, stav zmrazení je tak
+ * funkcí pozice a počtu odehraných tahů a lze jej hashovat, přehrát a prohledávat počítačem
+ * Tahy zmrazení a rozmrazení jednotlivých polí jsou uloženy v polích primitivních hodnot, pole
+ * s událostí v daném tahu jsou navíc zapsána v kruhovém poli masek indexovaném pořadím tahu,
+ * posun hodin o jeden tah tedy prochází pouze jednu masku a cena odpovídá počtu změněných polí
+ * Funkce:  1) Naplánování zmrazení a rozmrazení kamene na pořadí tahu
+ *          2) Posun hodin vpřed a vzad s výpočtem polí, která se zmrazí nebo rozmrazí
+ *          3) Zrušení naplánovaného zmrazení při operaci undo včetně obnovení předchozího plánu pole
+ *          4) Zbývající počet tahů do další změny pole
+ *          5) Klíč pořadí tahu pro Zobristův klíč pozice
+ * @author Lukáš Dibďák
+ * @see othello.BitBoard
+ * @see othello.Position
+ * @see othello.Game
+ */
+
+package othello;
+
+import java.util.Arrays;
+
+class FreezeClock {
+    /**
+     * Velikost kruhového pole masek, mocnina dvou
+     */
+    private static final int WHEEL = 32;
+
+    /**
+     * Identifikace pole bez naplánované změny
+     */
+    static final int NONE = -1;
+
+    private final int words;
+
+    /**
+     * Tahy zmrazení a rozmrazení polí a tah, ve kterém bylo zmrazení naplánováno, {@code NONE} bez plánu
+     */
+    private final int[] freezePly;
+    private final int[] thawPly;
+    private final int[] scheduledAt;
+
+    /**
+     * Masky polí s událostí podle pořadí tahu modulo {@code WHEEL}, přesný tah se ověřuje podle pole
+     */
+    private final long[] wheel;
+
+    /**
+     * Předchozí plány přeplánovaných polí (pole, tah zmrazení, tah rozmrazení, tah naplánování)
+     */
+    private int[] history;
+    private int historySize;
+
+    /**
+     * Pořadí tahu, ke kterému jsou změny provedeny, a nejpozdější naplánovaný tah rozmrazení
+     */
+    private int clock;
+    private int lastThaw;
+
+    /**
+     * Konstruktor
+     * @param size Velikost hrací desky
+     * @param clock Pořadí aktuálního tahu hry
+     */
+    FreezeClock(int size, int clock) {
+        this.words = BitBoard.wordsFor(size);
+        this.freezePly = new int[size * size];
+        this.thawPly = new int[size * size];
+        this.scheduledAt = new int[size * size];
+        this.wheel = new long[WHEEL * words];
+        this.history = new int[64];
+        this.historySize = 0;
+        this.clock = clock;
+        this.lastThaw = clock;
+
+        Arrays.fill(freezePly, NONE);
+        Arrays.fill(thawPly, NONE);
+        Arrays.fill(scheduledAt, NONE);
+    }
+
+    /**
+     * Kopírovací konstruktor, kopie má vlastní plán i historii
+     * @param freezeClock Hodiny ke zkopírování
+     */
+    FreezeClock(FreezeClock freezeClock) {
+        this.words = freezeClock.words;
+        this.freezePly = freezeClock.freezePly.clone();
+        this.thawPly = freezeClock.thawPly.clone();
+        this.scheduledAt = freezeClock.scheduledAt.clone();
+        this.wheel = freezeClock.wheel.clone();
+        this.history = Arrays.copyOf(freezeClock.history, freezeClock.history.length);
+        this.historySize = freezeClock.historySize;
+        this.clock = freezeClock.clock;
+        this.lastThaw = freezeClock.lastThaw;
+    }
+
+    /**
+     * Naplánování zmrazení kamene, předchozí plán pole se uloží pro operaci undo
+     * @param square Index pole
+     * @param initPlies Za kolik tahů se kámen zmrazí, nejméně 1
+     * @param persistPlies Kolik tahů bude zmrazení trvat, nejméně 1
+     */
+    void schedule(int square, int initPlies, int persistPlies) {
+        if (historySize + 4 > history.length) {
+            history = Arrays.copyOf(history, history.length * 2);
+        }
+        history[historySize++] = square;
+        history[historySize++] = freezePly[square];
+        history[historySize++] = thawPly[square];
+        history[historySize++] = scheduledAt[square];
+
+        unmark(square);
+        freezePly[square] = clock + initPlies;
+        thawPly[square] = freezePly[square] + persistPlies;
+        scheduledAt[square] = clock;
+        mark(square);
+
+        lastThaw = Math.max(lastThaw, thawPly[square]);
+    }
+
+    /**
+     * Zrušení zmrazení naplánovaného v aktuálním tahu a obnovení předchozího plánu pole
+     * Zmrazení naplánovaná v jiném tahu (například zmrazení podle času) se nemění
+     * @param square Index pole
+     */
+    void cancel(int square) {
+        if (scheduledAt[square] != clock) {
+            return;
+        }
+        for (int i = historySize - 4; i >= 0; i -= 4) {
+            if (history[i] == square) {
+                unmark(square);
+                freezePly[square] = history[i + 1];
+                thawPly[square] = history[i + 2];
+                scheduledAt[square] = history[i + 3];
+                mark(square);
+
+                historySize -= 4;
+                System.arraycopy(history, historySize, history, i, 4);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Zápis událostí pole do kruhového pole masek
+     * @param square Index pole
+     */
+    private void mark(int square) {
+        if (freezePly[square] != NONE) {
+            BitBoard.set(wheel, ((freezePly[square] & (WHEEL - 1)) * words << 6) + square);
+            BitBoard.set(wheel, ((thawPly[square] & (WHEEL - 1)) * words << 6) + square);
+        }
+    }
+
+    /**
+     * Odebrání událostí pole z kruhového pole masek
+     * @param square Index pole
+     */
+    private void unmark(int square) {
+        if (freezePly[square] != NONE) {
+            BitBoard.clear(wheel, ((freezePly[square] & (WHEEL - 1)) * words << 6) + square);
+            BitBoard.clear(wheel, ((thawPly[square] & (WHEEL - 1)) * words << 6) + square);
+        }
+    }
+
+    /**
+     * Posun hodin o jeden tah vpřed
+     * @param freeze Maska, do které se uloží pole zmrazená v novém tahu
+     * @param thaw Maska, do které se uloží pole rozmrazená v novém tahu
+     * @return Některé pole změnilo stav/žádné pole nezměnilo stav
+     */
+    boolean advance(long[] freeze, long[] thaw) {
+        clock++;
+        return events(freeze, thaw);
+    }
+
+    /**
+     * Posun hodin o jeden tah vzad, události aktuálního tahu se mají provést inverzně
+     * @param freeze Maska, do které se uloží pole zmrazená v aktuálním tahu (mají se rozmrazit)
+     * @param thaw Maska, do které se uloží pole rozmrazená v aktuálním tahu (mají se zmrazit)
+     * @return Některé pole změnilo stav/žádné pole nezměnilo stav
+     */
+    boolean retreat(long[] freeze, long[] thaw) {
+        boolean changed = events(freeze, thaw);
+        clock--;
+        return changed;
+    }
+
+    /**
+     * Výpočet polí se zmrazením a rozmrazením přesně v aktuálním tahu
+     * @param freeze Maska polí se zmrazením
+     * @param thaw Maska polí s rozmrazením
+     * @return Některé pole má událost/žádné pole nemá událost
+     */
+    private boolean events(long[] freeze, long[] thaw) {
+        int base = (clock & (WHEEL - 1)) * words;
+        boolean changed = false;
+
+        for (int w = 0; w < words; w++) {
+            freeze[w] = 0;
+            thaw[w] = 0;
+            for (long mask = wheel[base + w]; mask != 0; mask &= mask - 1) {
+                long bit = mask & -mask;
+                int square = (w << 6) + Long.numberOfTrailingZeros(mask);
+                if (freezePly[square] == clock) {
+                    freeze[w] |= bit;
+                    changed = true;
+                }
+                else if (thawPly[square] == clock) {
+                    thaw[w] |= bit;
+                    changed = true;
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Zbývající počet tahů do další změny pole
+     * @param square Index pole
+     * @return Počet tahů do zmrazení, u zmrazeného kamene do rozmrazení, 0 bez naplánované změny
+     */
+    int pliesLeft(int square) {
+        if (thawPly[square] == NONE || thawPly[square] <= clock) {
+            return 0;
+        }
+        return (freezePly[square] > clock ? freezePly[square] : thawPly[square]) - clock;
+    }
+
+    /**
+     * Zjišťuje, zdali má některé pole naplánovanou změnu v budoucích tazích
+     * @return Budoucí změna existuje/neexistuje
+     */
+    boolean hasFuture() {
+        return lastThaw > clock;
+    }
+
+    /**
+     * Pořadí tahu, ke kterému jsou změny provedeny
+     * @return Pořadí tahu
+     */
+    int getClock() {
+        return clock;
+    }
+
+    /**
+     * Klíč pořadí tahu, který se přidává do Zobristova klíče pozice s naplánovaným zmrazením,
+     * stejná rozmístění kamenů v různých tazích tak nesdílí záznam transpoziční tabulky
+     * @param clock Pořadí tahu
+     * @return Pseudonáhodný 64bitový klíč
+     */
+    static long key(int clock) {
+        long z = (clock + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,187 @@
+/**
+ * Třída pro časování zmrazení kamenů jedné hrací desky
+ * Časy zmrazení a rozmrazení jednotlivých polí jsou uloženy v polích primitivních hodnot,
+ * všechny hrací desky sdílí jediné plánovací vlákno, počet vláken tedy nezávisí na počtu
+ * zmrazených kamenů ani na počtu rozehraných her
+ * Plánovací vlákno hrací desku nemění, pouze po uplynutí času atomicky označí pole, jejichž stav se má změnit,
+ * změny provede až vlákno hry v {@code Game.checkIfFrozen}, hrací deska se tak mění pouze vláknem hry
+ * Funkce:  1) Naplánování zmrazení a rozmrazení kamene
+ *          2) Zrušení naplánovaného zmrazení při operaci undo
+ *          3) Provedení změn označených polí na bitové desce
+ *          4) Zbývající čas do další změny pole
+ *          5) Obnovení plánu pole se zbývajícími časy při načítání hry
+ * @author Lukáš Dibďák
+ * @see othello.Board
+ * @see othello.Game
+ */
+
+package othello;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+class FreezeScheduler {
+    private static final long SECOND = 1000000000L;
+
+    /**
+     * Plánovací vlákno sdílené všemi hracími deskami, vlákno je démonické a nebrání ukončení programu
+     */
+    private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "othello-freeze");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Časy zmrazení a rozmrazení polí podle {@code System.nanoTime}, 0 znamená bez naplánované změny
+     * Zapisuje a čte je pouze vlákno hry
+     */
+    private final long[] freezeAt;
+    private final long[] thawAt;
+
+    /**
+     * Maska polí, jejichž čas uplynul, nastavuje ji plánovací vlákno a vybírá vlákno hry
+     */
+    private final AtomicLongArray due;
+
+    /**
+     * Konstruktor
+     * @param size Velikost hrací desky
+     */
+    FreezeScheduler(int size) {
+        this.freezeAt = new long[size * size];
+        this.thawAt = new long[size * size];
+        this.due = new AtomicLongArray(BitBoard.wordsFor(size));
+    }
+
+    /**
+     * Naplánování zmrazení kamene
+     * @param square Index pole
+     * @param initSec Za jak dlouho se kámen zmrazí
+     * @param persistSec Jak dlouho bude zmrazení trvat
+     */
+    void schedule(int square, int initSec, int persistSec) {
+        schedule(square, System.nanoTime(), initSec * SECOND, (initSec + persistSec) * SECOND);
+    }
+
+    /**
+     * Obnovení plánu pole podle zbývajících časů uložených s hrou
+     * @param square Index pole
+     * @param freezeMillis Za kolik milisekund se kámen zmrazí, 0 u již zmrazeného kamene
+     * @param thawMillis Za kolik milisekund se kámen rozmrazí
+     */
+    void resume(int square, long freezeMillis, long thawMillis) {
+        schedule(square, System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(freezeMillis), TimeUnit.MILLISECONDS.toNanos(thawMillis));
+    }
+
+    /**
+     * Naplánování zmrazení a rozmrazení pole na dané časy
+     * @param square Index pole
+     * @param now Aktuální čas podle {@code System.nanoTime}
+     * @param freezeDelay Za kolik nanosekund se kámen zmrazí
+     * @param thawDelay Za kolik nanosekund se kámen rozmrazí
+     */
+    private void schedule(int square, long now, long freezeDelay, long thawDelay) {
+        freezeAt[square] = now + freezeDelay;
+        thawAt[square] = now + thawDelay;
+
+        EXECUTOR.schedule(() -> markDue(square), freezeDelay, TimeUnit.NANOSECONDS);
+        EXECUTOR.schedule(() -> markDue(square), thawDelay, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Zrušení naplánovaného zmrazení, později doběhnuté označení pole se ignoruje
+     * @param square Index pole
+     */
+    void cancel(int square) {
+        freezeAt[square] = 0;
+        thawAt[square] = 0;
+    }
+
+    /**
+     * Označení pole k provedení změny, volá plánovací vlákno
+     * @param square Index pole
+     */
+    private void markDue(int square) {
+        long bit = 1L << square;
+        int word = square >>> 6;
+        long value;
+        do {
+            value = due.get(word);
+        } while ((value & bit) == 0 && !due.compareAndSet(word, value, value | bit));
+    }
+
+    /**
+     * Provedení změn všech označených polí na bitové desce, kámen se zmrazí nebo rozmrazí podle aktuálního času
+     * Cena odpovídá počtu označených polí, nikoli počtu zmrazených kamenů
+     * @param bits Bitová deska
+     * @return Některé pole změnilo stav/žádné pole nezměnilo stav
+     */
+    boolean apply(BitBoard bits) {
+        long now = System.nanoTime();
+        boolean changed = false;
+
+        for (int w = 0; w < due.length(); w++) {
+            if (due.get(w) == 0) {
+                continue;
+            }
+            for (long mask = due.getAndSet(w, 0); mask != 0; mask &= mask - 1) {
+                int square = (w << 6) + Long.numberOfTrailingZeros(mask);
+                if (thawAt[square] != 0 && now - thawAt[square] >= 0) {
+                    bits.setFrozen(square, false);
+                    BitBoard.clear(bits.pending, square);
+                    cancel(square);
+                    changed = true;
+                }
+                else if (freezeAt[square] != 0 && now - freezeAt[square] >= 0 && !bits.isFrozen(square)) {
+                    bits.setFrozen(square, true);
+                    changed = true;
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Zbývající čas do další změny pole
+     * @param square Index pole
+     * @return Počet celých sekund do zmrazení, u zmrazeného kamene do rozmrazení, 0 bez naplánované změny
+     */
+    int secondsLeft(int square) {
+        if (thawAt[square] == 0) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        long deadline = (now - freezeAt[square] < 0) ? freezeAt[square] : thawAt[square];
+        return (int) Math.max(0, (deadline - now + SECOND - 1) / SECOND);
+    }
+
+    /**
+     * Zbývající čas do zmrazení pole pro uložení hry
+     * @param square Index pole
+     * @return Počet milisekund, 0 u již zmrazeného kamene
+     */
+    long millisToFreeze(int square) {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(freezeAt[square] - System.nanoTime()));
+    }
+
+    /**
+     * Zbývající čas do rozmrazení pole pro uložení hry
+     * @param square Index pole
+     * @return Počet milisekund
+     */
+    long millisToThaw(int square) {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(thawAt[square] - System.nanoTime()));
+    }
+
+    /**
+     * Zjišťuje, zdali má pole naplánovanou změnu
+     * @param square Index pole
+     * @return Pole čeká na zmrazení nebo rozmrazení/nemá naplánovanou změnu
+     */
+    boolean isScheduled(int square) {
+        return thawAt[square] != 0;
+    }
+}
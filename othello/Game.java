@@ -18,33 +18,36 @@ package othello;
 
 import java.util.*;
 
-import javafx.scene.web.WebHistory;
 import othello.Utility.*;
 
 public class Game {
     private int activePlayerTurn = 0;
     private Board board = null;
     private Player players[] = new Player[2];
-    private ArrayDeque<Board> logger = null;
+    private UndoJournal journal = null;
+    private MoveList moves = null;
+    private ComputerPlayer computerPlayer = null;
+    private TranspositionTable transpositionTable = null;
+    private TranspositionTable endgameTable = null;
 
     /**
      * Přetížený konstuktor pro vytváření nové hry, vytváří se:
      * - hrací deska
      * - hráči
-     * - prázdný zásobník tahů
+     * - prázdný záznam tahů
      * - první tah pro prvního hráče
      * @param boardSize Velikost hrací desky
      * @param players Pole hráčů
      */
     Game(int boardSize, Player players[]) {
         this.board = new Board(boardSize);
+        this.moves = new MoveList(boardSize);
 
         for (int i = 0; i < 2; i++) {
             this.players[i] = players[i];
         }
 
-        logger = new ArrayDeque<>();
-        logger.push(board.copy());
+        journal = new UndoJournal();
 
         countStones();
         Utility.setPlayerString(players[Utility.PLAYERTWO].getPlayerType() == PlayerType.COMPUTER);
@@ -52,40 +55,29 @@ public class Game {
 
     /**
      * Přetížený konstuktor pro nahrávání již rozehrané hry, vytváří se:
-     * - hrací deska
-     * - hráči
-     * - zásobník tahů, když byla hra uložena
+     * - nová hra ve výchozí pozici
+     * - hrací deska, záznam tahů a stav zmrazení přehráním uložených tahů
      * - tah pro hráče, když byla hra uložena
-     * @param boardSize Velikost hrací desky
      * @param players Pole hráčů
-     * @param logger Zásobník tahů
-     * @param activePlayerTurn Tah hráče
+     * @param savedGame Uložená hra
+     * @throws GameLoadingFailureException Uložená hra obsahuje neplatný tah
+     * @see SavedGame
      */
-    Game(int boardSize, Player players[], ArrayDeque<Board> logger, int activePlayerTurn) {
-        board = new Board(boardSize);
-
-        for (int i = 0; i < 2; i++) {
-            this.players[i] = players[i];
-        }
+    Game(Player players[], SavedGame savedGame) throws GameLoadingFailureException {
+        this(savedGame.getSize(), players);
 
-        this.logger = new ArrayDeque<>();
-        while (!logger.isEmpty()) {
-            this.logger.push(logger.removeFirst());
-        }
-        setBoard(this.logger.peek());
-
-        this.activePlayerTurn = activePlayerTurn;
+        savedGame.replay(this);
+        this.activePlayerTurn = savedGame.getActivePlayer();
 
         countStones();
-        Utility.setPlayerString(players[Utility.PLAYERTWO].getPlayerType() == PlayerType.COMPUTER);
     }
 
     /**
-     * Metoda pro uložení aktuální hrací desky na zásobník pro případ použití operace {@code undoMove}
+     * Metoda pro uzavření aktuálního tahu v záznamu pro případ použití operace {@code undoMove}
+     * Změny tahu se do záznamu zapisují již při jeho provádění, deska se nekopíruje
      */
     void makeCheckpoint() {
-        Board temp = board.copy();
-        logger.push(temp);
+        journal.commit();
     }
 
     /**
@@ -99,20 +91,20 @@ public class Game {
     }
 
     /**
-     * Metoda, která vrací ze zásobníku předchozí hrací desku, která byla přidána jako checkpoint
+     * Metoda, která vrací na aktuální hrací desce poslední dva tahy (tah hráče a tah soupeře)
+     * aplikací inverzních změn uložených v záznamu, před vrácením každého tahu se inverzně provedou
+     * i zmrazení a rozmrazení naplánovaná podle pořadí tahu
      * Jedná se o podpůrnou třídu pro metodu {@code undoMove} ve tříde {@code Controller}
-     * @return Předchozí hrací deska uložená na zásobníku
-     * @throws NoMoreMovesToUndoException Na zásobníku již nejsou uloženy žádné hrací desky, jedná se o začátek hry
+     * @throws NoMoreMovesToUndoException V záznamu již nejsou dva tahy k vrácení, jedná se o začátek hry
      */
-    Board makeUndo() throws NoMoreMovesToUndoException {
-        if (logger.size() < 3) {
+    void makeUndo() throws NoMoreMovesToUndoException {
+        if (journal.size() < 2) {
             throw new NoMoreMovesToUndoException();
         }
-        Board temp = null;
-        for (int i = 0; i < 3; i++) {
-            temp = logger.pop();
+        for (int i = 0; i < 2; i++) {
+            board.resolveFreezes(journal.size() - 1);
+            journal.undo(board);
         }
-        return temp;
     }
 
     /**
@@ -161,11 +153,62 @@ public class Game {
     }
 
     /**
-     * Získání zásobníku tahů
-     * @return Zásobník tahů typu {@code Board}
+     * Získání Zobristova klíče aktuální pozice hry včetně hráče na tahu
+     * @return Klíč pozice
+     * @see Zobrist
+     */
+    long getHash() {
+        long hash = board.getHash();
+        if (Board.toBitColor(getActivePlayer().getColor()) == BitBoard.WHITE) {
+            hash ^= board.getBits().zobrist.side;
+        }
+        return hash;
+    }
+
+    /**
+     * Vytvoření pozice pro prohledávání tahů z aktuální hrací desky
+     * Pozice je nezávislá na hře, tahy v ní provedené hru neovlivní
+     * @return Pozice s hráčem, který je aktuálně na tahu
+     * @see Position
+     */
+    Position createPosition() {
+        return new Position(board, Board.toBitColor(getActivePlayer().getColor()));
+    }
+
+    /**
+     * Příprava ohodnocení pozic pro počítač, při ohodnocení vzory se k desce připojí indexy vzorů
+     * @return Ohodnocení pozic
+     * @see ComputerPlayer
      */
-    ArrayDeque<Board> getLogger() {
-        return logger;
+    Evaluator prepareEvaluator() {
+        return ComputerPlayer.createEvaluator(board, board.getSize());
+    }
+
+    /**
+     * Nastavení transpozičních tabulek sdílených prohledáváním všech tahů počítače v této hře
+     * @param transpositionTable Transpoziční tabulka prohledávání
+     * @param endgameTable Transpoziční tabulka řešení konce hry
+     */
+    void setTranspositionTables(TranspositionTable transpositionTable, TranspositionTable endgameTable) {
+        this.transpositionTable = transpositionTable;
+        this.endgameTable = endgameTable;
+        this.computerPlayer = null;
+    }
+
+    /**
+     * Získání výsledku posledního prohledávání tahu počítače
+     * @return Výsledek prohledávání nebo {@code null}, pokud počítač naposledy táhl bez prohledávání
+     */
+    SearchEngine.Result getLastSearch() {
+        return (computerPlayer == null) ? null : computerPlayer.getLastSearch();
+    }
+
+    /**
+     * Získání záznamu tahů
+     * @return Záznam tahů typu {@code UndoJournal}
+     */
+    UndoJournal getJournal() {
+        return journal;
     }
 
     /**
@@ -178,99 +221,102 @@ public class Game {
 
     /**
      * Metoda pro otočení určitých kamenů na hrací desce
-     * @param listOfCoords Zásobník zásobníků souřadnic kamenů, které je třeba otočit
+     * @param moves Seznam tahů obsahující masky otáčených kamenů
+     * @param move Pořadí tahu v seznamu, jehož kameny se mají otočit
      */
-    void changeFields(ArrayList<ArrayList<Coords>> listOfCoords) {
-        for (ArrayList<Coords> tempCoords: listOfCoords) {
-            for (Coords temp: tempCoords) {
-                board.changeField(temp);
+    void changeFields(MoveList moves, int move) {
+        int offset = moves.flipOffset(move);
+
+        for (int w = 0; w < moves.words; w++) {
+            for (long mask = moves.flips[offset + w]; mask != 0; mask &= mask - 1) {
+                int square = (w << 6) + Long.numberOfTrailingZeros(mask);
+                if (board.changeField(square)) {
+                    journal.change(square);
+                }
             }
         }
     }
 
     /**
-     * Metoda pro kontrolu zamrznutí kamenů po tahu a změna jejich barvy
-     * @param frozenStones Pole zamrznutých kamenenů
+     * Metoda pro naplánování zmrazení kamene, zmrazení se zaznamená do rozpracovaného tahu
+     * V režimu {@code FreezeMode.PLIES} se zmrazení naplánuje na pořadí tahu, které odpovídá počtu tahů v záznamu
+     * @param square Index pole kamene
+     * @param init Za kolik sekund (tahů) se kámen zmrazí
+     * @param persist Kolik sekund (tahů) bude zmrazení trvat
+     * @param freezeMode Režim zmrazení
      */
-    void checkIfFrozen(ArrayList<Field> frozenStones, ArrayList<Field> notFrozen) {
-        if (frozenStones.size() > 0) {
-            ArrayList<Field> tmp = new ArrayList<>();
-            for (Field fieldConstructor: frozenStones) {
-                tmp.add(new Field(fieldConstructor));
-            }
-            for (Field field : frozenStones) {
-                Color color = null;
-
-                try {
-                    color = field.getColor();
-                } catch (FieldIsEmptyException e) {
-                }
-
-                if (field.isFrozen() && color != Color.FBLACK && color != Color.FWHITE) {
-                    field.changeColorFreeze();
-                    notFrozen.remove(field);
-                }
-                else if (!field.isFrozen() && color != Color.BLACK && color != Color.WHITE) {
-                    field.changeColorFreeze();
-                    tmp.remove(field);
-                }
-            }
-            frozenStones = tmp;
+    void freezeStone(int square, int init, int persist, FreezeMode freezeMode) {
+        if (freezeMode == FreezeMode.PLIES) {
+            init = Math.max(1, init);
+            persist = Math.max(1, persist);
+            board.scheduleFreeze(square, journal.size(), init, persist);
+            journal.freeze(init, persist);
+        }
+        else {
+            board.getField()[square].freeze(init, persist);
         }
+        BitBoard.set(board.getBits().pending, square);
+        journal.change(square);
     }
 
     /**
-     * Metoda pro získání polí, které nejsou zmraženy a tudíž mohou být zmraženy
-     * @return Pole kamenů černého i bílého hráče
-     * @see Controller
+     * Metoda pro kontrolu zamrznutí kamenů po tahu a změna jejich barvy
+     * Nejprve se na desce provedou zmrazení a rozmrazení, jejichž čas uplynul, desku tak mění pouze vlákno hry,
+     * a zmrazení a rozmrazení naplánovaná podle pořadí tahu až do počtu tahů v záznamu
+     * Barva kamenů se poté převezme z masky zmrazených kamenů, cena tedy nezávisí na počtu dosavadních zmrazení
+     * @see FreezeScheduler
+     * @see FreezeClock
      */
-    ArrayList<Coords>[] getAvailable() {
-        ArrayList<Coords> blackStones = new ArrayList<>();
-        ArrayList<Coords> whiteStones = new ArrayList<>();
-
-        for (int i = 0; i < Board.SIZE; i++) {
-            for (int j = 0; j < Board.SIZE; j++) {
-                try {
-                    if (getBoard().getField(i, j).isAvailable()) {
-                        switch (getBoard().getField(i, j).getColor()) {
-                            case BLACK:
-                            case FBLACK:
-                                blackStones.add(new Coords(i, j));
-                                break;
-                            case WHITE:
-                            case FWHITE:
-                                whiteStones.add(new Coords(i, j));
-                        }
-                    }
-                } catch (FieldIsEmptyException e) {}
-            }
-        }
-        return new ArrayList[] {blackStones, whiteStones};
+    void checkIfFrozen() {
+        board.applyFreezes();
+        board.resolveFreezes(journal.size());
+        board.showFrozen();
     }
 
     /**
-     * Metoda pro získání aktuálních kamenů obou hráčů pro {@code freezeStones}
-     * Pomocí počtu těchto kamenů lze také získat skóre obou hráčů
-     * @return Pole kamenů černého i bílého hráče
+     * Metoda pro získání kamenů hráče, které nejsou zmraženy ani nečekají na zmrazení a tudíž mohou být zmraženy
+     * @param player Identifikace hráče
+     * @return Maska volných kamenů hráče
      * @see Controller
      */
-    ArrayList<Field>[] countStones() {
-        ArrayList<Field> blackStones = new ArrayList<>();
-        ArrayList<Field> whiteStones = new ArrayList<>();
+    long[] getAvailable(int player) {
+        return board.getAvailable(Board.toBitColor(players[player].getColor()));
+    }
 
-        for (Field field: getBoard().getField()) {
-            try {
-                if (field.getColor() == Color.BLACK || field.getColor() == Color.FBLACK)
-                    blackStones.add(field);
-                else
-                    whiteStones.add(field);
-            } catch (FieldIsEmptyException e) {}
+    /**
+     * Metoda pro získání polí kamenů, které jsou zmraženy nebo čekají na zmrazení
+     * @param fields Seznam, do kterého se pole přidají
+     */
+    void getPending(ArrayList<Field> fields) {
+        long[] pending = board.getBits().pending;
+        Field[] views = board.getField();
+
+        for (int w = 0; w < pending.length; w++) {
+            for (long mask = pending[w]; mask != 0; mask &= mask - 1) {
+                fields.add(views[(w << 6) + Long.numberOfTrailingZeros(mask)]);
+            }
         }
+    }
 
-        getPlayers()[Utility.PLAYERONE].setScore(blackStones.size());
-        getPlayers()[Utility.PLAYERTWO].setScore(whiteStones.size());
+    /**
+     * Metoda pro přepočítání skóre obou hráčů
+     * Počty kamenů udržuje hrací deska průběžně, metoda tedy desku neprochází a nic nealokuje
+     * @see Board
+     */
+    void countStones() {
+        getPlayers()[Utility.PLAYERONE].setScore(getBoard().getStoneCount(BitBoard.BLACK));
+        getPlayers()[Utility.PLAYERTWO].setScore(getBoard().getStoneCount(BitBoard.WHITE));
+    }
 
-        return new ArrayList[] {blackStones, whiteStones};
+    /**
+     * Metoda pro získání aktuálních kamenů hráče pro {@code freezeStones}
+     * Seznam se sestavuje líně a je platný do další změny hrací desky
+     * @param player Identifikace hráče
+     * @return Kameny hráče
+     * @see Controller
+     */
+    ArrayList<Field> getStones(int player) {
+        return getBoard().getStones(player == Utility.PLAYERONE ? BitBoard.BLACK : BitBoard.WHITE);
     }
 
     /**
@@ -304,145 +350,71 @@ public class Game {
     /**
      * Metoda kontrolující zda hráč na tahu je počítač, v tom případě provede podle obtížnosti hry tah
      * @param typeOfGame Obtížnost hry zadaná při vytváření nové hry
-     * @param allAvailableMoves Zásobník všech dostupných tahů
+     * @param allAvailableMoves Seznam všech dostupných tahů
      * @throws ComputerHasPlayed Počítač provedl tah o souřadnicích coords typu {@code Coords}
      */
-    void controlIfComputerTurn(TypeOfGame typeOfGame, ArrayList<TreeMap<Coords, ArrayList<Coords>>> allAvailableMoves) throws ComputerHasPlayed {
+    void controlIfComputerTurn(TypeOfGame typeOfGame, MoveList allAvailableMoves) throws ComputerHasPlayed {
         if (getActivePlayer().getPlayerType() == PlayerType.COMPUTER) {
-            TreeMap<Coords, ArrayList<Coords>> toChangeTemp = new TreeMap<>();
-
-            switch (typeOfGame) {
-                case EASY:
-                    toChangeTemp = Algorithm.getEasyAlgorithm(allAvailableMoves);
-                    break;
-                case HARD:
-                    toChangeTemp = Algorithm.getHardAlgorithm(allAvailableMoves);
-                    break;
+            if (computerPlayer == null) {
+                computerPlayer = new ComputerPlayer(board.getSize(), typeOfGame, typeOfGame.getThreads(), transpositionTable,
+                        endgameTable, typeOfGame.isSearch() ? prepareEvaluator() : null);
             }
+            int move = computerPlayer.chooseMove(createPosition(), allAvailableMoves);
+
+            int square = allAvailableMoves.getSquare(move);
+            Coords coords = new Coords(square % board.getSize(), square / board.getSize());
 
             try {
-                getBoard().setField(toChangeTemp.firstKey(), getActivePlayer().getColor());
+                getBoard().setField(coords, getActivePlayer().getColor());
+                journal.place(square);
             } catch (FieldIsNotEmptyException e) {}
 
-            for (Map.Entry<Coords, ArrayList<Coords>> temp: toChangeTemp.entrySet()) {
-                for (Coords change: temp.getValue())
-                    board.changeField(change);
-            }
+            changeFields(allAvailableMoves, move);
 
             countStones();
             makeCheckpoint();
             turnHasBeenMade();
 
-            throw new ComputerHasPlayed(toChangeTemp.firstKey().getX(), toChangeTemp.firstKey().getY());
+            throw new ComputerHasPlayed(coords.getX(), coords.getY());
         }
     }
 
     /**
-     * Metoda pro zjištění potencionálních možností tahu na daných souřadnicích
-     * Algoritmus zkoumá okolní pozice daného pole na hrací desce, pokud je v okolních pozicích
-     * barva druhého hráče, pak potencionálně může být dané políčko validní k tahu hráče
-     * @param coords Souřadnice pole na hrací desce
-     * @return Potencionální okolí políčka dané souřadnicemi
-     * @throws NoMovesAvailableException Pole není validní k tahu
+     * Vygeneruje všechny validní tahy hráče na tahu do opakovaně používaného seznamu tahů
+     * Pro každý tah seznam obsahuje pole tahu a masku všech kamenů, které tah otočí
+     * Seznam je platný do dalšího volání této metody
+     * @return Seznam validních tahů
+     * @see MoveGenerator
      */
-    ArrayList<Coords> checkPositionForMoves(Coords coords) throws NoMovesAvailableException {
-        ArrayList<Coords> availableMoves = new ArrayList<>();
-
-        for (int i = coords.getX() - 1; i <= coords.getX() + 1; i++) {
-            for (int j = coords.getY() - 1; j <= coords.getY() + 1; j++) {
-                if ((coords.getX() == i && coords.getY() == j) || (!board.getField(coords.getX(), coords.getY()).isEmpty())) {
-                    continue;
-                }
-
-                Coords tempCoords = new Coords(i, j);
-                if (Utility.isInBoard(tempCoords)) {
-                    try {
-                        Color color = board.getField(tempCoords.getX(), tempCoords.getY()).getColor();
-                        if (color != getActivePlayer().getColor() && color != getActivePlayer().getFrozenColor()) {
-                            availableMoves.add(tempCoords);
-                        }
-                    } catch (FieldIsEmptyException e) {}
-                }
-            }
-        }
-
-        if (availableMoves.isEmpty()) {
-            throw new NoMovesAvailableException();
-        }
-
-        return availableMoves;
+    MoveList getAvailableMoves() {
+        MoveGenerator.generate(board.getBits(), Board.toBitColor(getActivePlayer().getColor()), moves);
+        return moves;
     }
 
     /**
-     * Pro každou souřadnici na mapě dopočítává validní tahy na základě metody {@code checkPositionForMoves}, která
-     * vrací potencionálně validní tahy. Metoda prohledává všechny potencionální diagonály a pokud narazí na hráčův
-     * kámen, pak je tah validní a pro danou souřadnici pro každý tah se ukládá množina potencionálně validních a
-     * změnitelných tahů, vytáří tedy namapovanou dvojici souřadnice : okolí změnitelných kamenů
-     * @return Pro každý tah vrací namapovanou množinu změnitelných kamenů
-     */
-    ArrayList<TreeMap<Coords, ArrayList<Coords>>> getAvailableMoves() {
-        ArrayList<TreeMap<Coords, ArrayList<Coords>>> tempMoves = new ArrayList<>();
-
-        for (int x = 0; x < Board.SIZE; x++) {
-            for (int y = 0; y < Board.SIZE; y++) {
-                try {
-                    ArrayList<Coords> temp = checkPositionForMoves(new Coords(x, y));
-
-                    NextTry:
-                    for (Coords direction : temp) {
-                        int i, j; ArrayList<Coords> tempCoords = new ArrayList<>();
-                        for (i = direction.getX(), j = direction.getY(); Utility.isInBoard(new Coords(i, j)); i += (direction.getX() - x), j += (direction.getY() - y)) {
-                            try {
-                                Color boardColor = getBoard().getField(i, j).getColor();
-                                if (boardColor != getActivePlayer().getColor() && boardColor != getActivePlayer().getFrozenColor()) {
-                                    tempCoords.add(new Coords(i, j));
-                                } else {
-                                    TreeMap<Coords, ArrayList<Coords>> map = new TreeMap<>();
-                                    map.put(new Coords(x, y), tempCoords);
-                                    tempMoves.add(map);
-                                    continue NextTry;
-                                }
-                            } catch (FieldIsEmptyException fieldException) {
-                                continue NextTry;
-                            }
-                        }
-                    }
-                } catch (NoMovesAvailableException movesException) {}
-            }
-        }
-        return tempMoves;
-    }
-
-    /**
-     * Metoda v namapovaných dvojících vyhledává zadanou souřadnici (pole dané souřadnicemi)
+     * Metoda v seznamu tahů vyhledává zadanou souřadnici (pole dané souřadnicemi)
      * Pokud není nalezena, pak pro ní neexistuje žádná potencionální změna a tah není validní
-     * Změny mohou být ve více směrech okolí pole hrací desky
      * @param coords Souřadnice pole hrací desky, na které chce hrát táhnout
      * @param allAvailableMoves Všechny validní tahy na celé desce a změny při těchto tazích
      * @throws MoveNotAvailableException Pro toto pole o těchto souřadnicích nebyl nalezen
-     * namapovaný žádný tah a proto tento tah není validní, nebo políčko není prázdné
+     * žádný tah a proto tento tah není validní, nebo políčko není prázdné
      */
-    void controlMoveIfValid(Coords coords, ArrayList<TreeMap<Coords, ArrayList<Coords>>> allAvailableMoves) throws MoveNotAvailableException {
-        boolean moveFound = false;
-        ArrayList<ArrayList<Coords>> tempArrayOfCoords = new ArrayList<>();
-
-        for (TreeMap<Coords, ArrayList<Coords>> map: allAvailableMoves) {
-            for (Map.Entry<Coords, ArrayList<Coords>> mapSet: map.entrySet()) {
-                if (coords.equals(mapSet.getKey())) {
-                    moveFound = true;
-                    tempArrayOfCoords.add(mapSet.getValue());
-                }
-            }
+    void controlMoveIfValid(Coords coords, MoveList allAvailableMoves) throws MoveNotAvailableException {
+        int move = -1;
+
+        if (Utility.isInBoard(coords)) {
+            move = allAvailableMoves.indexOf(coords.getY() * board.getSize() + coords.getX());
         }
 
-        if (!moveFound) {
+        if (move < 0) {
             throw new MoveNotAvailableException();
         }
 
         try {
             getBoard().setField(coords, getActivePlayer().getColor());
+            journal.place(allAvailableMoves.getSquare(move));
         } catch (FieldIsNotEmptyException e) {}
 
-        changeFields(tempArrayOfCoords);
+        changeFields(allAvailableMoves, move);
     }
-}
\ No newline at end of file
+}
@@ -12,10 +12,13 @@ package othello;
 
 import othello.Utility.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 public class GameCommandLine {
     static ArrayList<Character> characters = new ArrayList<>();
     static ArrayList<String> numbers = new ArrayList<>();
+    /** Výsledky dokončených uložení čekající na výpis */
+    static Queue<String> saveMessages = new ConcurrentLinkedQueue<>();
 
     static {
         for (int i = Utility.transformCharToInt('a'); i <= Utility.transformCharToInt('l'); i++)
@@ -98,6 +101,15 @@ public class GameCommandLine {
         System.out.println(temp[2]);
     }
 
+    /**
+     * Výpis výsledků dokončených uložení her, ukládá se na pozadí a výsledek se vypíše před dalším příkazem
+     */
+    static void showSaveMessages() {
+        for (String message = saveMessages.poll(); message != null; message = saveMessages.poll()) {
+            System.out.println(message);
+        }
+    }
+
     /**
      * Metoda pro výpis dalších informací o hře
      * @param temp Informace k vypsání na obrazovku
@@ -142,10 +154,14 @@ public class GameCommandLine {
                 }
                 catch (ComputerHasPlayed computerTurn) {
                     showMoveInfo(computerTurn.getInfoStrings()[4], computerTurn.getInfoStrings()[5],computerTurn.getInfoStrings());
+                    if (computerTurn.getInfoStrings()[6] != null) {
+                        showAdditionalInfo(computerTurn.getInfoStrings()[6]);
+                    }
                     continue;
                 }
                 catch (GameIsNotStartedException e) {}
 
+                showSaveMessages();
                 TypeOfInstruction typeOfInstruction = fileManager.getDecision(tokenArgumentsArray);
                 switch (typeOfInstruction) {
                     case NEW:
@@ -170,8 +186,9 @@ public class GameCommandLine {
 
                     case SAVE:
                         try {
-                            System.out.println(controller.saveGame(tokenArgumentsArray.get(0)));
-                        } catch (GameSavingFailureException | GameIsNotStartedException e) {
+                            controller.saveGame(tokenArgumentsArray.get(0)).whenComplete((file, failure) ->
+                                    saveMessages.add(failure == null ? Utility.getSuccessfulSaveGameString() : failure.toString()));
+                        } catch (GameIsNotStartedException e) {
                             System.out.println(e);
                         }
                         break;
@@ -179,7 +196,8 @@ public class GameCommandLine {
                     case FREEZE:
                         try {
                             ArrayList<Coords> stonesCoords = new ArrayList<>();
-                            nextPlayer = controller.freezeStones(stonesCoords);
+                            FreezeMode freezeMode = tokenArgumentsArray.isEmpty() ? FreezeMode.TIME : FreezeMode.fromMode(tokenArgumentsArray.get(0));
+                            nextPlayer = controller.freezeStones(stonesCoords, freezeMode);
                             showAdditionalInfo(nextPlayer[4]);
                             showMoveInfo(nextPlayer);
                         } catch (GameIsNotStartedException e) {
@@ -0,0 +1,328 @@
+/**
+ * Třída pro hledání tahu počítače metodou Monte Carlo (prohledávání stromu UCT)
+ * Strom hry se rozvíjí podle nejvyšší horní meze důvěry (UCT) a každá iterace končí simulací hry
+ * náhodnými tahy až do konce, výsledek simulace se přičte všem uzlům na cestě od kořene
+ * Simulace nepotřebuje statické ohodnocení, hodí se tedy i pro pozice se zmrazenými kameny
+ * Strom je sdílený více vlákny (tree parallelism), každé vlákno při průchodu stromem započítá návštěvu
+ * předem jako prohru (virtual loss), aby ostatní vlákna volila jiné větve
+ * Funkce:  1) Výběr uzlů podle UCT a rozvíjení stromu
+ *          2) Rychlé simulace nad bitovou pozicí bez generování seznamů tahů s upřednostněním rohů
+ *          3) Paralelní iterace nad sdíleným stromem s časovým limitem
+ *          4) Statistika počtu simulací za sekundu
+ * @author Lukáš Dibďák
+ * @see othello.Position
+ * @see othello.ParallelSearch
+ */
+
+package othello;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class MonteCarloSearch {
+    /**
+     * Konstanta průzkumu UCT pro podíl výher v rozsahu 0 až 1
+     */
+    static final double EXPLORATION = 1.4;
+
+    /**
+     * Počet návštěv listu, po kterém se list rozvine
+     */
+    private static final int EXPANDVISITS = 2;
+
+    /**
+     * Uzel stromu, výhry se počítají v polovinách bodu (výhra 2, remíza 1) z pohledu hráče,
+     * který do uzlu táhl
+     */
+    private static final class Node {
+        final int square;
+        final int mover;
+        final AtomicInteger visits = new AtomicInteger();
+        final AtomicInteger wins = new AtomicInteger();
+        volatile Node[] children;
+
+        /**
+         * Konstruktor uzlu
+         * @param square Pole tahu, kterým se do uzlu přešlo
+         * @param mover Barva hráče, který táhl
+         */
+        Node(int square, int mover) {
+            this.square = square;
+            this.mover = mover;
+        }
+    }
+
+    private final int size;
+    private final int threads;
+    private final BoardTables tables;
+
+    /**
+     * Konstruktor
+     * @param size Velikost hrací desky
+     * @param threads Počet vláken včetně hlavního
+     */
+    MonteCarloSearch(int size, int threads) {
+        this.size = size;
+        this.threads = Math.max(1, threads);
+        this.tables = BoardTables.forSize(size);
+    }
+
+    /**
+     * Vyhledání tahu, po vypršení času se zvolí nejčastěji navštívený tah kořene
+     * @param position Pozice, ve které je na tahu počítač, po hledání je ve stejném stavu
+     * @param millis Časový limit v milisekundách
+     * @return Výsledek, hodnota je podíl výher zvoleného tahu v procentech, uzly jsou počet simulací
+     * a hloubka je nejhlubší dosažená úroveň stromu
+     */
+    SearchEngine.Result search(Position position, long millis) {
+        long start = System.nanoTime();
+        long deadline = start + millis * 1000000L;
+        SearchEngine.Result result = new SearchEngine.Result();
+        Node root = new Node(-1, position.getSideToMove() ^ 1);
+
+        result.monteCarlo = true;
+        result.threads = threads;
+        expand(root, position, new MoveList(size));
+
+        Node[] children = root.children;
+        if (children.length == 0) {
+            result.square = -1;
+        }
+        else if (children.length == 1) {
+            result.square = children[0].square;
+        }
+        else {
+            List<Future<int[]>> helpers = new ArrayList<>(threads - 1);
+            for (int i = 0; i < threads - 1; i++) {
+                Position copy = new Position(position);
+                long seed = start + i + 1;
+                helpers.add(ParallelSearch.getExecutor().submit(() -> iterate(root, copy, deadline, seed)));
+            }
+
+            int[] statistics = iterate(root, new Position(position), deadline, start);
+            result.nodes = statistics[0];
+            result.depth = statistics[1];
+            for (Future<int[]> helper: helpers) {
+                try {
+                    int[] helperStatistics = helper.get();
+                    result.nodes += helperStatistics[0];
+                    result.depth = Math.max(result.depth, helperStatistics[1]);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    }
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+
+            Node best = children[0];
+            for (Node child: children) {
+                if (child.visits.get() > best.visits.get()) {
+                    best = child;
+                }
+            }
+            result.square = best.square;
+            result.score = (best.visits.get() == 0) ? 0 : best.wins.get() * 50 / best.visits.get();
+        }
+
+        result.nanos = System.nanoTime() - start;
+        return result;
+    }
+
+    /**
+     * Opakované iterace jednoho vlákna nad sdíleným stromem do vypršení času
+     * @param root Kořen stromu
+     * @param position Vlastní kopie pozice kořene
+     * @param deadline Čas ukončení podle {@code System.nanoTime}
+     * @param seed Semínko generátoru náhodných čísel
+     * @return Počet simulací a nejhlubší dosažená úroveň stromu
+     */
+    private int[] iterate(Node root, Position position, long deadline, long seed) {
+        MoveList moves = new MoveList(size);
+        long[] flips = new long[tables.words];
+        int[] candidates = new int[size * size];
+        Node[] path = new Node[size * size + 1];
+        long[] random = { seed ^ 0x9E3779B97F4A7C15L };
+        int playouts = 0;
+        int maxDepth = 0;
+
+        while (System.nanoTime() < deadline) {
+            Node node = root;
+            int length = 0;
+            root.visits.incrementAndGet();
+            path[length++] = root;
+
+            while (true) {
+                Node[] children = node.children;
+                if (children == null && node.visits.get() > EXPANDVISITS) {
+                    children = expand(node, position, moves);
+                }
+                if (children == null || children.length == 0) {
+                    break;
+                }
+                node = select(children, node.visits.get());
+                node.visits.incrementAndGet();
+                makeMove(position, node.square, flips);
+                path[length++] = node;
+            }
+            maxDepth = Math.max(maxDepth, length - 1);
+
+            int winner = playout(position, flips, candidates, random);
+
+            for (int i = 0; i < length; i++) {
+                if (winner == path[i].mover) {
+                    path[i].wins.addAndGet(2);
+                }
+                else if (winner == BitBoard.EMPTY) {
+                    path[i].wins.incrementAndGet();
+                }
+            }
+            for (int i = 1; i < length; i++) {
+                position.unmakeMove();
+            }
+            playouts++;
+        }
+        return new int[] { playouts, maxDepth };
+    }
+
+    /**
+     * Rozvinutí uzlu, pouze jedno vlákno vytvoří potomky
+     * @param node Uzel
+     * @param position Pozice uzlu
+     * @param moves Seznam pro generování tahů
+     * @return Potomci uzlu, prázdné pole pro konec hry
+     */
+    private static Node[] expand(Node node, Position position, MoveList moves) {
+        synchronized (node) {
+            if (node.children == null) {
+                position.generateMoves(moves);
+                Node[] children = new Node[moves.size()];
+                for (int i = 0; i < children.length; i++) {
+                    children[i] = new Node(moves.getSquare(i), position.getSideToMove());
+                }
+                node.children = children;
+            }
+            return node.children;
+        }
+    }
+
+    /**
+     * Výběr potomka s nejvyšší horní mezí důvěry, nenavštívení potomci mají přednost
+     * Probíhající návštěvy ostatních vláken se počítají jako prohry
+     * @param children Potomci uzlu
+     * @param parentVisits Počet návštěv rodiče
+     * @return Vybraný potomek
+     */
+    private static Node select(Node[] children, int parentVisits) {
+        double logVisits = Math.log(Math.max(1, parentVisits));
+        Node best = children[0];
+        double bestValue = Double.NEGATIVE_INFINITY;
+
+        for (Node child: children) {
+            int visits = child.visits.get();
+            if (visits == 0) {
+                return child;
+            }
+            double value = child.wins.get() / (2.0 * visits) + EXPLORATION * Math.sqrt(logVisits / visits);
+            if (value > bestValue) {
+                bestValue = value;
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Provedení tahu na pole, masku otáčených kamenů je třeba vypočítat
+     * @param position Pozice
+     * @param square Pole tahu
+     * @param flips Pole pro masku otáčených kamenů
+     */
+    private void makeMove(Position position, int square, long[] flips) {
+        int side = position.getSideToMove();
+        MoveGenerator.flips(tables, position.stones[side], position.stones[side ^ 1], square, flips, 0);
+        position.makeMove(square, flips, 0);
+    }
+
+    /**
+     * Simulace hry do konce, hraje se roh, je-li k dispozici, jinak náhodný tah
+     * Seznam všech tahů se negeneruje: prázdná pole sousedící se soupeřem se procházejí od náhodného
+     * místa a hraje se první z nich, které je validním tahem
+     * Pozice se po simulaci vrátí do původního stavu
+     * @param position Pozice
+     * @param flips Pole pro masku otáčených kamenů
+     * @param candidates Pole pro prázdná pole sousedící se soupeřem
+     * @param random Stav generátoru náhodných čísel vlákna, simulace jej posouvá, další simulace tak
+     *               pokračuje ve stejné posloupnosti a neopakuje posloupnost předchozí simulace
+     * @return Barva vítěze nebo {@code BitBoard.EMPTY} pro remízu
+     */
+    private int playout(Position position, long[] flips, int[] candidates, long[] random) {
+        int plies = 0;
+
+        while (true) {
+            int side = position.getSideToMove();
+            long[] own = position.stones[side];
+            long[] opponent = position.stones[side ^ 1];
+            int move = -1;
+            int count = 0;
+
+            for (int w = 0; w < tables.words && move < 0; w++) {
+                long empty = tables.full[w] & ~(own[w] | opponent[w]);
+                for (long mask = empty & tables.corners[w]; mask != 0 && move < 0; mask &= mask - 1) {
+                    int square = (w << 6) + Long.numberOfTrailingZeros(mask);
+                    if (MoveGenerator.flips(tables, own, opponent, square, flips, 0)) {
+                        move = square;
+                    }
+                }
+                for (long mask = empty & ~tables.corners[w]; mask != 0; mask &= mask - 1) {
+                    int square = (w << 6) + Long.numberOfTrailingZeros(mask);
+                    if (tables.hasNeighborIn(square, opponent)) {
+                        candidates[count++] = square;
+                    }
+                }
+            }
+
+            if (move < 0 && count > 0) {
+                random[0] = next(random[0]);
+                int first = (int) ((random[0] >>> 33) % count);
+                for (int k = 0; k < count; k++) {
+                    int square = candidates[(first + k) % count];
+                    if (MoveGenerator.flips(tables, own, opponent, square, flips, 0)) {
+                        move = square;
+                        break;
+                    }
+                }
+            }
+            if (move < 0) {
+                break;
+            }
+
+            position.makeMove(move, flips, 0);
+            plies++;
+        }
+
+        int black = position.counts[BitBoard.BLACK];
+        int white = position.counts[BitBoard.WHITE];
+        for (int i = 0; i < plies; i++) {
+            position.unmakeMove();
+        }
+        return (black > white) ? BitBoard.BLACK : (black < white) ? BitBoard.WHITE : BitBoard.EMPTY;
+    }
+
+    /**
+     * Generátor xorshift64
+     * @param state Předchozí stav
+     * @return Další stav
+     */
+    private static long next(long state) {
+        state ^= state << 13;
+        state ^= state >>> 7;
+        state ^= state << 17;
+        return state;
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * Třída pro generování validních tahů nad bitovou reprezentací hrací desky
+ * Funkce:  1) Generování všech validních tahů hráče bez alokace objektů posunem masek ve všech směrech
+ *          2) Výpočet masek otáčených kamenů pro každý tah
+ *          3) Výpočet masky otáčených kamenů tahu na jedno pole
+ * Tahy se generují v pořadí vodorovné a poté svislé souřadnice, stejně jako je řadí {@code Coords}
+ * @author Lukáš Dibďák
+ * @see othello.MoveList
+ * @see othello.BitBoard
+ * @see othello.BoardTables
+ */
+
+package othello;
+
+class MoveGenerator {
+    /**
+     * Vygeneruje všechny validní tahy hráče dané barvy do seznamu tahů
+     * Tah je validní, pokud v některém směru uzavře souvislou řadu soupeřových kamenů (i zmrazených)
+     * Využívá předpočítané masky kroků a paprsků, neprovádí tedy žádné kontroly hranic desky
+     * @param bits Bitová deska
+     * @param color Barva hráče na tahu ({@code BitBoard.BLACK} nebo {@code BitBoard.WHITE})
+     * @param moves Seznam, do kterého se tahy uloží, původní obsah se zahazuje
+     * @see BoardTables
+     */
+    static void generate(BitBoard bits, int color, MoveList moves) {
+        generate(bits.tables, bits.stones[color], bits.stones[color ^ 1], moves);
+    }
+
+    /**
+     * Vygeneruje všechny validní tahy nad maskami kamenů hráče na tahu a jeho soupeře
+     * @param tables Tabulky pro danou velikost desky
+     * @param own Maska kamenů hráče na tahu
+     * @param opponent Maska kamenů soupeře
+     * @param moves Seznam, do kterého se tahy uloží, původní obsah se zahazuje
+     */
+    static void generate(BoardTables tables, long[] own, long[] opponent, MoveList moves) {
+        long[] legal = moves.legal, run = moves.run, shifted = moves.shifted;
+        int words = tables.words;
+
+        moves.clear();
+
+        for (int w = 0; w < words; w++) {
+            legal[w] = 0;
+        }
+
+        for (int d = 0; d < BoardTables.DIRECTIONS; d++) {
+            long[] step = tables.stepMasks[d];
+            int delta = BoardTables.DY[d] * tables.size + BoardTables.DX[d];
+
+            shift(own, step, delta, run, words);
+            long any = 0;
+            for (int w = 0; w < words; w++) {
+                run[w] &= opponent[w];
+                any |= run[w];
+            }
+
+            // Prodlužování souvislé řady soupeřových kamenů, dokud roste
+            boolean grown = any != 0;
+            while (grown) {
+                shift(run, step, delta, shifted, words);
+                grown = false;
+                for (int w = 0; w < words; w++) {
+                    long added = shifted[w] & opponent[w] & ~run[w];
+                    run[w] |= added;
+                    grown |= added != 0;
+                }
+            }
+
+            if (any != 0) {
+                shift(run, step, delta, shifted, words);
+                for (int w = 0; w < words; w++) {
+                    legal[w] |= shifted[w] & tables.full[w] & ~(own[w] | opponent[w]);
+                }
+            }
+        }
+
+        for (int square: tables.coordsOrder) {
+            if (BitBoard.test(legal, square)) {
+                flips(tables, own, opponent, square, moves.flips, moves.count * words);
+                moves.squares[moves.count++] = square;
+            }
+        }
+    }
+
+    /**
+     * Posun masky omezené na pole, ze kterých lze postoupit, o jeden krok daným směrem
+     * Díky omezení na masku kroků posun nepřeteče přes okraj desky do sousedního řádku
+     * @param mask Posouvaná maska
+     * @param step Maska polí, ze kterých lze postoupit daným směrem
+     * @param delta Změna indexu pole při kroku
+     * @param result Pole, do kterého se posunutá maska uloží
+     * @param words Počet slov masky
+     */
+    private static void shift(long[] mask, long[] step, int delta, long[] result, int words) {
+        if (delta > 0) {
+            for (int w = words - 1; w >= 0; w--) {
+                long carry = w > 0 ? (mask[w - 1] & step[w - 1]) >>> (64 - delta) : 0;
+                result[w] = ((mask[w] & step[w]) << delta) | carry;
+            }
+        } else {
+            for (int w = 0; w < words; w++) {
+                long carry = w < words - 1 ? (mask[w + 1] & step[w + 1]) << (64 + delta) : 0;
+                result[w] = ((mask[w] & step[w]) >>> -delta) | carry;
+            }
+        }
+    }
+
+    /**
+     * Vypočte masku kamenů, které otočí tah na dané prázdné pole
+     * @param tables Tabulky pro danou velikost desky
+     * @param own Maska kamenů hráče na tahu
+     * @param opponent Maska kamenů soupeře
+     * @param square Prázdné pole, na které se táhne
+     * @param flips Pole, do kterého se maska uloží
+     * @param offset Index prvního slova masky v poli {@code flips}
+     * @return Tah je validní/nevalidní
+     */
+    static boolean flips(BoardTables tables, long[] own, long[] opponent, int square, long[] flips, int offset) {
+        for (int w = 0; w < tables.words; w++) {
+            flips[offset + w] = 0;
+        }
+
+        boolean found = false;
+        for (int[] ray: tables.raysByDirection[square]) {
+            int run = 0;
+            while (run < ray.length && BitBoard.test(opponent, ray[run])) {
+                run++;
+            }
+            if (run == 0 || run == ray.length || !BitBoard.test(own, ray[run])) {
+                continue;
+            }
+            for (int k = 0; k < run; k++) {
+                flips[offset + (ray[k] >>> 6)] |= 1L << ray[k];
+            }
+            found = true;
+        }
+        return found;
+    }
+}
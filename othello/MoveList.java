@@ -0,0 +1,125 @@
+/**
+ * Třída pro uchovávání vygenerovaných tahů v opakovaně použitelných primitivních polích
+ * Funkce:  1) Uchovávání indexů polí jednotlivých tahů
+ *          2) Uchovávání masek otáčených kamenů pro každý tah
+ *          3) Vyhledávání tahu podle pole hrací desky
+ * Maska tahu {@code i} leží v poli {@code flips} na indexech {@code i * words} až {@code i * words + words - 1}
+ * @author Lukáš Dibďák
+ * @see othello.MoveGenerator
+ */
+
+package othello;
+
+class MoveList {
+    final int words;
+    final int[] squares;
+    final long[] flips;
+    int count;
+
+    /**
+     * Pomocné masky generátoru tahů, aby generování nealokovalo
+     */
+    final long[] legal;
+    final long[] run;
+    final long[] shifted;
+
+    /**
+     * Konstruktor seznamu tahů pro danou velikost hrací desky
+     * Kapacita odpovídá počtu polí, více tahů na desce být nemůže
+     * @param size Velikost hrací desky
+     */
+    MoveList(int size) {
+        this.words = BitBoard.wordsFor(size);
+        this.squares = new int[size * size];
+        this.flips = new long[size * size * words];
+        this.legal = new long[words];
+        this.run = new long[words];
+        this.shifted = new long[words];
+        this.count = 0;
+    }
+
+    /**
+     * Vyprázdnění seznamu, pole se nealokují znovu
+     */
+    void clear() {
+        count = 0;
+    }
+
+    /**
+     * Počet tahů v seznamu
+     * @return Počet tahů
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * Zjišťuje, zdali seznam neobsahuje žádný tah
+     * @return Prázdný/neprázdný seznam
+     */
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * Získání pole hrací desky, na které se táhne
+     * @param move Pořadí tahu v seznamu
+     * @return Index pole
+     */
+    int getSquare(int move) {
+        return squares[move];
+    }
+
+    /**
+     * Získání začátku masky otáčených kamenů tahu v poli {@code flips}
+     * @param move Pořadí tahu v seznamu
+     * @return Index prvního slova masky
+     */
+    int flipOffset(int move) {
+        return move * words;
+    }
+
+    /**
+     * Počet kamenů, které tah otočí (včetně zmrazených kamenů, které se ve skutečnosti neotočí)
+     * @param move Pořadí tahu v seznamu
+     * @return Počet kamenů
+     */
+    int flipCount(int move) {
+        int count = 0;
+        for (int i = move * words; i < move * words + words; i++) {
+            count += Long.bitCount(flips[i]);
+        }
+        return count;
+    }
+
+    /**
+     * Prohození dvou tahů v seznamu včetně jejich masek
+     * @param first Pořadí prvního tahu
+     * @param second Pořadí druhého tahu
+     */
+    void swap(int first, int second) {
+        int square = squares[first];
+        squares[first] = squares[second];
+        squares[second] = square;
+
+        for (int w = 0; w < words; w++) {
+            long flip = flips[first * words + w];
+            flips[first * words + w] = flips[second * words + w];
+            flips[second * words + w] = flip;
+        }
+    }
+
+    /**
+     * Vyhledání tahu na dané pole
+     * @param square Index pole
+     * @return Pořadí tahu v seznamu nebo -1, pokud tah na pole neexistuje
+     */
+    int indexOf(int square) {
+        for (int i = 0; i < count; i++) {
+            if (squares[i] == square) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
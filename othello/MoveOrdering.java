@@ -0,0 +1,175 @@
+/**
+ * Třída pro řazení tahů při prohledávání alfa-beta
+ * Čím dříve se prohledá nejlepší tah, tím více větví lze oříznout, tahy se proto řadí podle:
+ *          - tahu uloženého v transpoziční tabulce
+ *          - zabijáckých tahů, které v téže vzdálenosti od kořene způsobily ořezání
+ *          - historie ořezání podle barvy a pole (butterfly history) pro danou velikost desky
+ *          - statické priority polí (rohy první, pole diagonálně sousedící s rohy poslední)
+ * Funkce:  1) Seřazení seznamu tahů
+ *          2) Zaznamenání tahu, který způsobil ořezání
+ *          3) Statistika ořezání prvním tahem
+ * Každé vlákno prohledávání má vlastní instanci, třída tedy není synchronizovaná
+ * @author Lukáš Dibďák
+ * @see othello.SearchEngine
+ * @see othello.MoveList
+ */
+
+package othello;
+
+class MoveOrdering {
+    /**
+     * Hodnoty řadicích klíčů, tah z transpoziční tabulky je vždy první a zabijácké tahy před ostatními
+     */
+    private static final int HASHMOVE = Integer.MAX_VALUE;
+    private static final int KILLER = 1 << 28;
+    private static final int STATIC = 1 << 10;
+    private static final int HISTORYLIMIT = 1 << 24;
+
+    private final int[] priorities;
+    private final int[][] killers;
+    private final int[][] history;
+    private final int[][] keys;
+
+    private long cutoffs;
+    private long firstMoveCutoffs;
+
+    /**
+     * Konstruktor, vytvoří statické priority polí a prázdné tabulky pro všechny vzdálenosti od kořene
+     * @param size Velikost hrací desky
+     */
+    MoveOrdering(int size) {
+        int squares = size * size;
+        this.priorities = createPriorities(BoardTables.forSize(size));
+        this.killers = new int[squares + 2][2];
+        this.history = new int[2][squares];
+        this.keys = new int[squares + 2][squares];
+        clear();
+    }
+
+    /**
+     * Vytvoření statických priorit polí: rohy, okraje, vnitřek, pole sousedící s rohy na okraji
+     * a nakonec pole diagonálně sousedící s rohy
+     * @param tables Tabulky desky
+     * @return Priority polí
+     */
+    static int[] createPriorities(BoardTables tables) {
+        int[] priorities = new int[tables.size * tables.size];
+
+        for (int square = 0; square < priorities.length; square++) {
+            priorities[square] = BitBoard.test(tables.edges, square) ? 1 : 0;
+        }
+        for (int square = 0; square < priorities.length; square++) {
+            if (!BitBoard.test(tables.corners, square)) {
+                continue;
+            }
+            priorities[square] = 3;
+            for (int neighbor: tables.neighbors[square]) {
+                priorities[neighbor] = BitBoard.test(tables.edges, neighbor) ? -1 : -3;
+            }
+        }
+        return priorities;
+    }
+
+    /**
+     * Vyčištění zabijáckých tahů, historie a statistik, volá se před prohledáváním nové pozice
+     * Historie se pouze zmenší na polovinu, aby zůstala užitečná i pro další tah
+     */
+    void clear() {
+        for (int[] killer: killers) {
+            killer[0] = -1;
+            killer[1] = -1;
+        }
+        for (int[] colorHistory: history) {
+            for (int square = 0; square < colorHistory.length; square++) {
+                colorHistory[square] >>= 1;
+            }
+        }
+        cutoffs = 0;
+        firstMoveCutoffs = 0;
+    }
+
+    /**
+     * Seřazení tahů sestupně podle řadicího klíče, při shodě zůstává původní pořadí
+     * @param moves Seznam tahů
+     * @param ply Vzdálenost od kořene
+     * @param color Barva hráče na tahu
+     * @param hashSquare Pole tahu z transpoziční tabulky nebo -1
+     */
+    void order(MoveList moves, int ply, int color, int hashSquare) {
+        int[] key = keys[ply];
+        int[] killer = killers[ply];
+        int[] colorHistory = history[color];
+
+        for (int i = 0; i < moves.size(); i++) {
+            int square = moves.getSquare(i);
+            if (square == hashSquare) {
+                key[i] = HASHMOVE;
+            }
+            else if (square == killer[0]) {
+                key[i] = KILLER + 1;
+            }
+            else if (square == killer[1]) {
+                key[i] = KILLER;
+            }
+            else {
+                key[i] = colorHistory[square] + priorities[square] * STATIC;
+            }
+        }
+
+        for (int i = 1; i < moves.size(); i++) {
+            for (int j = i; j > 0 && key[j] > key[j - 1]; j--) {
+                int temp = key[j];
+                key[j] = key[j - 1];
+                key[j - 1] = temp;
+                moves.swap(j, j - 1);
+            }
+        }
+    }
+
+    /**
+     * Zaznamenání tahu, který způsobil ořezání
+     * @param ply Vzdálenost od kořene
+     * @param color Barva hráče na tahu
+     * @param square Pole tahu
+     * @param depth Zbývající hloubka, hlubší ořezání mají v historii větší váhu
+     * @param move Pořadí tahu v seřazeném seznamu
+     */
+    void cutoff(int ply, int color, int square, int depth, int move) {
+        cutoffs++;
+        if (move == 0) {
+            firstMoveCutoffs++;
+        }
+
+        int[] killer = killers[ply];
+        if (killer[0] != square) {
+            killer[1] = killer[0];
+            killer[0] = square;
+        }
+
+        int[] colorHistory = history[color];
+        colorHistory[square] += depth * depth;
+        if (colorHistory[square] > HISTORYLIMIT) {
+            for (int[] aged: history) {
+                for (int i = 0; i < aged.length; i++) {
+                    aged[i] >>= 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Počet ořezání od posledního vyčištění
+     * @return Počet ořezání
+     */
+    long getCutoffs() {
+        return cutoffs;
+    }
+
+    /**
+     * Počet ořezání prvním prohledaným tahem od posledního vyčištění
+     * @return Počet ořezání prvním tahem
+     */
+    long getFirstMoveCutoffs() {
+        return firstMoveCutoffs;
+    }
+}
@@ -0,0 +1,236 @@
+/**
+ * Třída pro knihu zahájení načítanou z binárního souboru mapovaného do paměti
+ * Pro každou velikost desky existuje samostatný soubor, záznamy jsou seřazeny podle Zobristova klíče
+ * pozice (včetně hráče na tahu) a vyhledávají se binárním půlením přímo v mapovaném souboru,
+ * načtení knihy tedy nevyžaduje žádné parsování
+ * Formát souboru (big-endian):
+ *          - hlavička: int MAGIC, int VERSION, int velikost desky, int počet pozic, int počet tahů
+ *          - pozice: long klíč, int index prvního tahu, int počet tahů
+ *          - tahy: short index pole, short hodnota tahu z pohledu hráče na tahu
+ * Funkce:  1) Sdílené otevření knihy pro každou velikost desky
+ *          2) Vyhledání nejlepšího tahu knihy pro pozici
+ *          3) Statistika úspěšnosti vyhledávání v knize
+ * @author Lukáš Dibďák
+ * @see othello.OpeningBookBuilder
+ * @see othello.Game
+ */
+
+package othello;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+class OpeningBook {
+    static final int MAGIC = 0x4F424F4B;
+    static final int VERSION = 1;
+    static final int HEADERSIZE = 20;
+    static final int POSITIONSIZE = 16;
+    static final int MOVESIZE = 4;
+
+    private static final OpeningBook[] CACHE = new OpeningBook[BoardTables.MAXSIZE + 1];
+
+    private final MappedByteBuffer buffer;
+    private final int size;
+    private final int positions;
+    private final int moves;
+    private final int movesStart;
+    private final AtomicLong probes = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+
+    /**
+     * Získání sdílené knihy pro danou velikost desky
+     * Pokud soubor knihy neexistuje nebo je poškozený, vrací se prázdná kniha
+     * @param size Velikost hrací desky
+     * @return Kniha zahájení
+     */
+    static OpeningBook forSize(int size) {
+        if (size > BoardTables.MAXSIZE) {
+            return new OpeningBook(size, getFile(size));
+        }
+
+        OpeningBook book = CACHE[size];
+        if (book == null) {
+            synchronized (CACHE) {
+                book = CACHE[size];
+                if (book == null) {
+                    book = new OpeningBook(size, getFile(size));
+                    CACHE[size] = book;
+                }
+            }
+        }
+        return book;
+    }
+
+    /**
+     * Umístění souboru knihy pro danou velikost desky
+     * @param size Velikost hrací desky
+     * @return Soubor knihy
+     */
+    static File getFile(int size) {
+        File folder = new File(System.getProperty("user.dir") + System.getProperty("file.separator") + Utility.getBookFolderLocationString());
+        return new File(folder, Utility.getBookFileString(size));
+    }
+
+    /**
+     * Konstruktor, mapuje soubor knihy do paměti a ověří jeho hlavičku a rozsahy oddílů,
+     * kniha s poškozenou hlavičkou se nahradí prázdnou knihou
+     * Jednotlivé záznamy se ověřují až při vyhledání, otevření knihy tak nezávisí na její velikosti
+     * @param size Velikost hrací desky
+     * @param file Soubor knihy
+     */
+    OpeningBook(int size, File file) {
+        MappedByteBuffer mapped = null;
+        int count = 0;
+        int moveCount = 0;
+        int start = HEADERSIZE;
+
+        if (file.isFile()) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (isValid(mapped, size)) {
+                    count = mapped.getInt(12);
+                    moveCount = mapped.getInt(16);
+                    start = HEADERSIZE + count * POSITIONSIZE;
+                }
+                else {
+                    mapped = null;
+                }
+            } catch (IOException e) {
+                mapped = null;
+                count = 0;
+                moveCount = 0;
+                start = HEADERSIZE;
+            }
+        }
+
+        this.size = size;
+        this.buffer = mapped;
+        this.positions = count;
+        this.moves = moveCount;
+        this.movesStart = start;
+    }
+
+    /**
+     * Kontrola hlavičky knihy, oddíly pozic a tahů musí ležet v souboru
+     * @param mapped Obsah souboru knihy
+     * @param size Velikost hrací desky
+     * @return Kniha je platná/kniha je poškozená
+     */
+    private static boolean isValid(MappedByteBuffer mapped, int size) {
+        if (mapped.capacity() < HEADERSIZE || mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION || mapped.getInt(8) != size) {
+            return false;
+        }
+
+        int count = mapped.getInt(12);
+        int moves = mapped.getInt(16);
+        long start = HEADERSIZE + (long) count * POSITIONSIZE;
+        return count >= 0 && moves >= 0 && start + (long) moves * MOVESIZE <= mapped.capacity();
+    }
+
+    /**
+     * Počet pozic v knize
+     * @return Počet pozic
+     */
+    int getPositions() {
+        return positions;
+    }
+
+    /**
+     * Vyhledání nejlepšího tahu knihy pro pozici
+     * Nalezený záznam se před použitím ověří, poškozený záznam se chová jako pozice mimo knihu
+     * @param key Zobristův klíč pozice včetně hráče na tahu
+     * @return Index pole nejlepšího tahu nebo -1, pokud pozice v knize není
+     */
+    int probe(long key) {
+        probes.incrementAndGet();
+
+        int position = find(key);
+        if (position < 0) {
+            return -1;
+        }
+
+        int offset = HEADERSIZE + position * POSITIONSIZE;
+        int first = buffer.getInt(offset + 8);
+        int count = buffer.getInt(offset + 12);
+        if (first < 0 || count < 0 || (long) first + count > moves
+                || (position > 0 && buffer.getLong(offset - POSITIONSIZE) >= key)
+                || (position < positions - 1 && buffer.getLong(offset + POSITIONSIZE) <= key)) {
+            return -1;
+        }
+
+        int bestSquare = -1;
+        int bestScore = Integer.MIN_VALUE;
+
+        for (int i = 0; i < count; i++) {
+            int move = movesStart + (first + i) * MOVESIZE;
+            int square = buffer.getShort(move);
+            if (square < 0 || square >= size * size) {
+                return -1;
+            }
+            int score = buffer.getShort(move + 2);
+            if (score > bestScore) {
+                bestScore = score;
+                bestSquare = square;
+            }
+        }
+
+        if (bestSquare >= 0) {
+            hits.incrementAndGet();
+        }
+        return bestSquare;
+    }
+
+    /**
+     * Binární vyhledání pozice podle klíče
+     * @param key Zobristův klíč pozice
+     * @return Pořadí pozice v souboru nebo -1
+     */
+    private int find(long key) {
+        int low = 0;
+        int high = positions - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long current = buffer.getLong(HEADERSIZE + middle * POSITIONSIZE);
+            if (current < key) {
+                low = middle + 1;
+            }
+            else if (current > key) {
+                high = middle - 1;
+            }
+            else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Počet vyhledávání v knize
+     * @return Počet vyhledávání
+     */
+    long getProbes() {
+        return probes.get();
+    }
+
+    /**
+     * Počet úspěšných vyhledávání v knize
+     * @return Počet nalezených tahů
+     */
+    long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Úspěšnost vyhledávání v knize
+     * @return Podíl nalezených tahů v procentech
+     */
+    int getHitRate() {
+        long count = probes.get();
+        return count == 0 ? 0 : (int) (hits.get() * 100 / count);
+    }
+}
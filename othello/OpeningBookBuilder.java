@@ -0,0 +1,293 @@
+/**
+ * Třída pro offline sestavení knihy zahájení
+ * Kniha se rozšiřuje o pozice ze samohry počítače, který ze základního postavení rozvíjí nejlepší tahy
+ * do zadaného počtu půltahů, a o pozice z uložených her
+ * Každý tah každé pozice je ohodnocen prohledáváním do zadané hloubky
+ * Spuštění: OpeningBookBuilder VELIKOST_DESKY PULTAHY HLOUBKA SIRKA [ULOZENE_HRY...]
+ * Funkce:  1) Načtení existující knihy a její rozšíření
+ *          2) Rozvíjení pozic samohrou počítače
+ *          3) Import pozic z uložených her
+ *          4) Zápis knihy do binárního souboru
+ * @author Lukáš Dibďák
+ * @see othello.OpeningBook
+ * @see othello.SearchEngine
+ */
+
+package othello;
+
+import java.io.*;
+import java.util.*;
+
+class OpeningBookBuilder {
+    /**
+     * Největší rozdíl hodnoty tahu od nejlepšího tahu, aby se tah při samohře ještě rozvíjel
+     */
+    private static final int MARGIN = 16;
+
+    private final int size;
+    private final int depth;
+    private final int width;
+    private final SearchEngine engine;
+    private final HashMap<Long, int[]> positions = new HashMap<>();
+    private final HashSet<Long> expanded = new HashSet<>();
+
+    /**
+     * Konstruktor sestavovače knihy
+     * @param size Velikost hrací desky
+     * @param depth Hloubka prohledávání pro ohodnocení tahů
+     * @param width Největší počet rozvíjených tahů každé pozice při samohře
+     */
+    OpeningBookBuilder(int size, int depth, int width) {
+        this.size = size;
+        this.depth = Math.max(1, depth);
+        this.width = Math.max(1, width);
+        this.engine = new SearchEngine(size, new TranspositionTable(Utility.TRANSPOSITIONTABLESIZE));
+    }
+
+    /**
+     * Počet pozic knihy
+     * @return Počet pozic
+     */
+    int getPositions() {
+        return positions.size();
+    }
+
+    /**
+     * Načtení existující knihy, pozice z ní se zachovají a nebudou znovu ohodnocovány
+     * @param file Soubor knihy
+     * @throws IOException Problém při čtení souboru nebo soubor není knihou pro tuto velikost desky
+     */
+    void load(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != OpeningBook.MAGIC || in.readInt() != OpeningBook.VERSION || in.readInt() != size) {
+                throw new IOException("Soubor " + file + " neni knihou zahajeni pro velikost " + size);
+            }
+            int count = in.readInt();
+            in.readInt();
+
+            long[] keys = new long[count];
+            int[] counts = new int[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = in.readLong();
+                in.readInt();
+                counts[i] = in.readInt();
+            }
+            for (int i = 0; i < count; i++) {
+                int[] moves = new int[2 * counts[i]];
+                for (int k = 0; k < moves.length; k++) {
+                    moves[k] = in.readShort();
+                }
+                positions.put(keys[i], moves);
+            }
+        }
+    }
+
+    /**
+     * Rozvíjení knihy samohrou ze základního postavení
+     * @param plies Počet půltahů od začátku hry
+     */
+    void expand(int plies) {
+        Board board = new Board(size);
+        expand(new Position(board, BitBoard.BLACK), plies);
+    }
+
+    /**
+     * Rekurzivní rozvíjení pozice, rozvíjí se nejvýše {@code width} nejlepších tahů
+     * @param position Pozice
+     * @param plies Zbývající počet půltahů
+     */
+    private void expand(Position position, int plies) {
+        if (plies == 0 || !expanded.add(position.getHash())) {
+            return;
+        }
+
+        int[] moves = evaluate(position);
+        if (moves.length == 0) {
+            return;
+        }
+
+        int best = Integer.MIN_VALUE;
+        for (int i = 1; i < moves.length; i += 2) {
+            best = Math.max(best, moves[i]);
+        }
+
+        MoveList list = new MoveList(size);
+        position.generateMoves(list);
+        int developed = 0;
+        for (int i = 0; i < moves.length && developed < width; i += 2) {
+            if (moves[i + 1] < best - MARGIN) {
+                continue;
+            }
+            position.makeMove(list, list.indexOf(moves[i]));
+            expand(position, plies - 1);
+            position.unmakeMove();
+            developed++;
+        }
+    }
+
+    /**
+     * Import pozic z hry zaznamenané posloupností hracích desek
+     * Hráč na tahu se určí podle barvy kamene, který mezi dvěma deskami přibyl
+     * @param boards Hrací desky od nejstarší po nejnovější
+     * @param plies Počet půltahů od začátku hry, které se importují
+     * @return Počet importovaných pozic
+     */
+    int importGame(Iterable<Board> boards, int plies) {
+        Board previous = null;
+        int imported = 0;
+
+        for (Board board: boards) {
+            if (previous != null && plies > 0) {
+                int mover = placedColor(previous.getBits(), board.getBits());
+                if (mover != BitBoard.EMPTY) {
+                    evaluate(new Position(previous, mover));
+                    imported++;
+                    plies--;
+                }
+            }
+            previous = board;
+        }
+        return imported;
+    }
+
+    /**
+     * Barva kamene, který přibyl mezi dvěma po sobě jdoucími deskami
+     * @param before Deska před tahem
+     * @param after Deska po tahu
+     * @return Barva kamene nebo {@code BitBoard.EMPTY}, pokud žádný kámen nepřibyl
+     */
+    private static int placedColor(BitBoard before, BitBoard after) {
+        for (int square = 0; square < before.size * before.size; square++) {
+            if (before.isEmpty(square) && !after.isEmpty(square)) {
+                return after.colorAt(square);
+            }
+        }
+        return BitBoard.EMPTY;
+    }
+
+    /**
+     * Ohodnocení všech tahů pozice prohledáváním, již ohodnocené pozice se nepřepočítávají
+     * @param position Pozice
+     * @return Dvojice (index pole, hodnota tahu) seřazené od nejlepšího tahu
+     */
+    private int[] evaluate(Position position) {
+        int[] known = positions.get(position.getHash());
+        if (known != null) {
+            return known;
+        }
+
+        MoveList list = new MoveList(size);
+        position.generateMoves(list);
+        Integer[] order = new Integer[list.size()];
+        int[] scores = new int[size * size];
+
+        for (int i = 0; i < list.size(); i++) {
+            position.makeMove(list, i);
+            MoveList replies = new MoveList(size);
+            position.generateMoves(replies);
+            int score = replies.isEmpty() ? SearchEngine.finalScore(position)
+                    : engine.search(new Position(position), depth - 1 > 0 ? depth - 1 : 1, 0).score;
+            position.unmakeMove();
+
+            scores[list.getSquare(i)] = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, -score));
+            order[i] = list.getSquare(i);
+        }
+        Arrays.sort(order, (first, second) -> scores[second] - scores[first]);
+
+        int[] moves = new int[2 * order.length];
+        for (int i = 0; i < order.length; i++) {
+            moves[2 * i] = order[i];
+            moves[2 * i + 1] = scores[order[i]];
+        }
+        if (moves.length > 0) {
+            positions.put(position.getHash(), moves);
+        }
+        return moves;
+    }
+
+    /**
+     * Zápis knihy do binárního souboru, pozice se řadí podle klíče
+     * @param file Soubor knihy
+     * @throws IOException Problém při zápisu souboru
+     */
+    void write(File file) throws IOException {
+        Long[] keys = positions.keySet().toArray(new Long[0]);
+        Arrays.sort(keys);
+
+        int moves = 0;
+        for (Long key: keys) {
+            moves += positions.get(key).length / 2;
+        }
+
+        File folder = file.getParentFile();
+        if (folder != null && !folder.exists()) {
+            folder.mkdirs();
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(OpeningBook.MAGIC);
+            out.writeInt(OpeningBook.VERSION);
+            out.writeInt(size);
+            out.writeInt(keys.length);
+            out.writeInt(moves);
+
+            int first = 0;
+            for (Long key: keys) {
+                int count = positions.get(key).length / 2;
+                out.writeLong(key);
+                out.writeInt(first);
+                out.writeInt(count);
+                first += count;
+            }
+            for (Long key: keys) {
+                for (int value: positions.get(key)) {
+                    out.writeShort(value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Spuštění sestavení knihy, kniha se zapisuje do souboru, ze kterého ji načítá hra
+     * @param args VELIKOST_DESKY PULTAHY HLOUBKA SIRKA [ULOZENE_HRY...]
+     */
+    public static void main(String[] args) {
+        if (args.length < 4) {
+            System.out.println("Pouziti: OpeningBookBuilder VELIKOST_DESKY PULTAHY HLOUBKA SIRKA [ULOZENE_HRY...]");
+            return;
+        }
+
+        try {
+            int size = Utility.loadParseBoardSize(args[0]);
+            int plies = Integer.parseUnsignedInt(args[1]);
+            OpeningBookBuilder builder = new OpeningBookBuilder(size, Integer.parseUnsignedInt(args[2]), Integer.parseUnsignedInt(args[3]));
+            File file = OpeningBook.getFile(size);
+
+            if (file.isFile()) {
+                builder.load(file);
+            }
+            builder.expand(plies);
+
+            SaveLoadManager saveLoadManager = new SaveLoadManager();
+            for (int i = 4; i < args.length; i++) {
+                try {
+                    SavedGame savedGame = saveLoadManager.load(args[i]);
+                    if (savedGame.getSize() != size) {
+                        System.out.println("Hra " + args[i] + " ma jinou velikost desky");
+                        continue;
+                    }
+                    builder.importGame(savedGame.boards(), plies);
+                } catch (GameLoadingNameNotFoundException | GameLoadingFailureException e) {
+                    System.out.println("Hra " + args[i] + ": " + e.toString());
+                }
+            }
+
+            builder.write(file);
+            System.out.println("Kniha " + file + " obsahuje " + builder.getPositions() + " pozic");
+        } catch (NumberFormatException e) {
+            System.out.println("Neplatny ciselny argument: " + e.getMessage());
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+}
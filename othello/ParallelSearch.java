@@ -0,0 +1,124 @@
+/**
+ * Třída pro paralelní prohledávání tahů počítače metodou Lazy SMP
+ * Hlavní vlákno prohledává stejně jako jednovláknové prohledávání a jeho výsledek se použije jako tah,
+ * pomocná vlákna současně prohledávají kopie téže pozice a výsledky ukládají do sdílené transpoziční
+ * tabulky, ze které hlavní vlákno čerpá hodnoty a nejlepší tahy
+ * Po dokončení hlavního vlákna se pomocná vlákna zastaví sdíleným příznakem
+ * Funkce:  1) Prohledávání daným počtem vláken se sdílenou transpoziční tabulkou
+ *          2) Rozložení pomocných vláken do různých počátečních hloubek
+ *          3) Sdílený fond vláken pro všechny hry a pro hledání metodou Monte Carlo
+ *          4) Součet uzlů všech vláken ve výsledku prohledávání
+ * @author Lukáš Dibďák
+ * @see othello.SearchEngine
+ * @see othello.TranspositionTable
+ */
+
+package othello;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+class ParallelSearch {
+    private static ExecutorService executor = null;
+
+    private final TranspositionTable table;
+    private final SearchEngine[] engines;
+    private final AtomicBoolean stop;
+
+    /**
+     * Konstruktor, vytvoří prohledávání pro hlavní a všechna pomocná vlákna
+     * @param size Velikost hrací desky
+     * @param table Sdílená transpoziční tabulka nebo {@code null} pro prohledávání bez ní
+     * @param threads Počet vláken včetně hlavního
+     * @param evaluator Statické ohodnocení pozic, sdílené všemi vlákny
+     */
+    ParallelSearch(int size, TranspositionTable table, int threads, Utility.Evaluator evaluator) {
+        this.table = table;
+        this.stop = new AtomicBoolean(false);
+        this.engines = new SearchEngine[Math.max(1, threads)];
+
+        engines[0] = new SearchEngine(size, table, null, evaluator);
+        for (int i = 1; i < engines.length; i++) {
+            engines[i] = new SearchEngine(size, table, stop, evaluator);
+        }
+    }
+
+    /**
+     * Získání sdíleného fondu vláken, vlákna jsou démonická a nebrání ukončení programu
+     * @return Fond vláken
+     */
+    static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "othello-search");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Počet vláken prohledávání
+     * @return Počet vláken včetně hlavního
+     */
+    int getThreads() {
+        return engines.length;
+    }
+
+    /**
+     * Vyhledání nejlepšího tahu všemi vlákny
+     * Omezení hloubkou a počtem uzlů platí pro hlavní vlákno, pomocná vlákna běží, dokud hlavní neskončí
+     * @param position Pozice, ve které je na tahu počítač, po prohledávání je ve stejném stavu
+     * @param maxDepth Největší hloubka prohledávání
+     * @param nodeLimit Největší počet uzlů hlavního vlákna, 0 znamená bez omezení
+     * @return Výsledek hlavního vlákna s počtem uzlů a ořezání všech vláken
+     */
+    SearchEngine.Result search(Position position, int maxDepth, long nodeLimit) {
+        if (engines.length == 1) {
+            return engines[0].search(position, maxDepth, nodeLimit);
+        }
+
+        long start = System.nanoTime();
+        if (table != null) {
+            table.newSearch();
+        }
+
+        stop.set(false);
+        List<Future<SearchEngine.Result>> helpers = new ArrayList<>(engines.length - 1);
+        for (int i = 1; i < engines.length; i++) {
+            SearchEngine engine = engines[i];
+            Position copy = new Position(position);
+            int firstDepth = 1 + (i & 1);
+            helpers.add(getExecutor().submit(() -> engine.iterate(copy, firstDepth, maxDepth, 0)));
+        }
+
+        SearchEngine.Result result = engines[0].iterate(position, 1, maxDepth, nodeLimit);
+        stop.set(true);
+
+        for (Future<SearchEngine.Result> helper: helpers) {
+            try {
+                SearchEngine.Result helperResult = helper.get();
+                result.nodes += helperResult.nodes;
+                result.cutoffs += helperResult.cutoffs;
+                result.firstMoveCutoffs += helperResult.firstMoveCutoffs;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        result.threads = engines.length;
+        result.nanos = System.nanoTime() - start;
+        return result;
+    }
+}
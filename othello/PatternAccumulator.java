@@ -0,0 +1,68 @@
+/**
+ * Třída pro průběžně udržované indexy vzorů ohodnocení {@code PatternEvaluator}
+ * Indexy všech výskytů vzorů se při položení, odebrání a otočení kamene upraví pouze ve vzorech,
+ * které změněné pole obsahují, ohodnocení pozice je pak jen součtem vah pro uložené indexy
+ * Cena tahu je tedy úměrná počtu otočených kamenů a cena ohodnocení počtu vzorů, nikoli velikosti desky
+ * Funkce:  1) Výpočet indexů z masek kamenů
+ *          2) Úprava indexů při změně jednoho pole
+ *          3) Ohodnocení podle uložených indexů
+ * @author Lukáš Dibďák
+ * @see othello.PatternEvaluator
+ * @see othello.Position
+ * @see othello.BitBoard
+ */
+
+package othello;
+
+class PatternAccumulator {
+    final PatternEvaluator evaluator;
+    final int[] indices;
+
+    /**
+     * Konstruktor, vypočte indexy všech vzorů z masek kamenů
+     * @param evaluator Ohodnocení vzory
+     * @param black Maska černých kamenů
+     * @param white Maska bílých kamenů
+     */
+    PatternAccumulator(PatternEvaluator evaluator, long[] black, long[] white) {
+        this.evaluator = evaluator;
+        this.indices = new int[evaluator.patterns.length];
+        for (int p = 0; p < indices.length; p++) {
+            indices[p] = evaluator.index(p, black, white);
+        }
+    }
+
+    /**
+     * Kopírovací konstruktor
+     * @param accumulator Indexy ke zkopírování
+     */
+    PatternAccumulator(PatternAccumulator accumulator) {
+        this.evaluator = accumulator.evaluator;
+        this.indices = accumulator.indices.clone();
+    }
+
+    /**
+     * Úprava indexů při změně obsahu pole
+     * @param square Index pole
+     * @param from Původní barva ({@code BitBoard.BLACK}, {@code BitBoard.WHITE} nebo {@code BitBoard.EMPTY})
+     * @param to Nová barva
+     */
+    void update(int square, int from, int to) {
+        int[] patterns = evaluator.squarePatterns[square];
+        int[] powers = evaluator.squarePowers[square];
+        int digits = to - from;
+
+        for (int i = 0; i < patterns.length; i++) {
+            indices[patterns[i]] += digits * powers[i];
+        }
+    }
+
+    /**
+     * Ohodnocení podle uložených indexů z pohledu černého hráče
+     * @param stones Počet kamenů na desce, určuje fázi hry
+     * @return Hodnota pozice
+     */
+    int score(int stones) {
+        return evaluator.score(indices, stones);
+    }
+}
@@ -0,0 +1,452 @@
+/**
+ * Třída pro statické ohodnocení pozice podle vzorů na desce
+ * Vzory jsou okraje desky, čtverce 3x3 v rozích a obě hlavní úhlopříčky, každý výskyt vzoru
+ * se převede na ternární index (0 prázdné pole, 1 černý kámen, 2 bílý kámen) a hodnota pozice
+ * je součet vah všech výskytů vzorů z tabulky vah pro danou fázi hry
+ * Index vzoru se počítá z bitových masek kamenů: kameny každé barvy ve vzoru tvoří binární číslo,
+ * které se předpočítanou tabulkou převede na ternární, vzory ležící v jednom řádku se z masky
+ * vyříznou jediným posunem
+ * Váhy se načítají z binárního souboru (big-endian):
+ *          - hlavička: int MAGIC, int VERSION, int velikost desky, int počet fází, int počet typů vzorů
+ *          - pro každou fázi a typ vzoru: int počet vah, váhy typu short z pohledu černého hráče
+ * Pokud soubor neexistuje, váhy se odvodí z vah polí {@code SquareEvaluator}, odvozené váhy lze zapsat
+ * do souboru spuštěním třídy a dále je upravovat
+ * Spuštění: PatternEvaluator VELIKOST_DESKY...
+ * Funkce:  1) Vytvoření vzorů pro každou velikost desky
+ *          2) Výpočet ternárních indexů vzorů
+ *          3) Načtení a uložení vah
+ *          4) Ohodnocení pozice, s průběžně udržovanými indexy {@code PatternAccumulator} bez čtení desky
+ *          5) Zápis odvozených vah do souborů, ze kterých je načítá hra
+ * @author Lukáš Dibďák
+ * @see othello.Utility.Evaluator
+ * @see othello.SquareEvaluator
+ * @see othello.PatternAccumulator
+ */
+
+package othello;
+
+import java.io.*;
+
+class PatternEvaluator implements Utility.Evaluator {
+    static final int MAGIC = 0x4F504556;
+    static final int VERSION = 1;
+
+    /**
+     * Typy vzorů
+     */
+    static final int EDGE = 0;
+    static final int CORNER = 1;
+    static final int DIAGONAL = 2;
+    static final int TYPES = 3;
+
+    /**
+     * Převod binárního čísla na ternární se stejnými číslicemi, pro vzory do délky {@code BoardTables.MAXSIZE}
+     */
+    static final int[] TERNARY = createTernary(BoardTables.MAXSIZE);
+
+    private static final PatternEvaluator[] CACHE = new PatternEvaluator[BoardTables.MAXSIZE + 1];
+
+    final int size;
+
+    /**
+     * Pole jednotlivých výskytů vzorů, jejich typy a případný začátek v jednom řádku masky (jinak -1)
+     */
+    final int[][] patterns;
+    final int[] types;
+    final int[] rowStarts;
+    final int[] lengths = new int[TYPES];
+
+    /**
+     * Pro každé pole výskyty vzorů, které jej obsahují, a hodnota číslice pole v indexu daného výskytu
+     */
+    final int[][] squarePatterns;
+    final int[][] squarePowers;
+
+    private short[][][] weights;
+
+    /**
+     * Získání sdíleného ohodnocení pro danou velikost desky
+     * Váhy se načtou ze souboru, pokud existuje, jinak se odvodí z vah polí
+     * @param size Velikost hrací desky
+     * @return Ohodnocení vzory
+     */
+    static PatternEvaluator forSize(int size) {
+        if (size > BoardTables.MAXSIZE) {
+            return create(size);
+        }
+
+        PatternEvaluator evaluator = CACHE[size];
+        if (evaluator == null) {
+            synchronized (CACHE) {
+                evaluator = CACHE[size];
+                if (evaluator == null) {
+                    evaluator = create(size);
+                    CACHE[size] = evaluator;
+                }
+            }
+        }
+        return evaluator;
+    }
+
+    /**
+     * Vytvoření ohodnocení s váhami ze souboru nebo s odvozenými váhami
+     * @param size Velikost hrací desky
+     * @return Ohodnocení vzory
+     */
+    private static PatternEvaluator create(int size) {
+        PatternEvaluator evaluator = new PatternEvaluator(size);
+        File file = getFile(size);
+        if (file.isFile()) {
+            try {
+                evaluator.load(file);
+            } catch (IOException e) {
+                evaluator.setDefaultWeights();
+            }
+        }
+        return evaluator;
+    }
+
+    /**
+     * Umístění souboru vah pro danou velikost desky
+     * @param size Velikost hrací desky
+     * @return Soubor vah
+     */
+    static File getFile(int size) {
+        File folder = new File(System.getProperty("user.dir") + System.getProperty("file.separator") + Utility.getBookFolderLocationString());
+        return new File(folder, Utility.getWeightsFileString(size));
+    }
+
+    /**
+     * Konstruktor, vytvoří vzory pro danou velikost desky a odvozené váhy
+     * @param size Velikost hrací desky
+     */
+    PatternEvaluator(int size) {
+        int last = size - 1;
+        this.size = size;
+        this.patterns = new int[10][];
+        this.types = new int[10];
+        this.rowStarts = new int[10];
+
+        int count = 0;
+        int[] cornersX = { 0, last, 0, last };
+        int[] cornersY = { 0, 0, last, last };
+        for (int c = 0; c < 4; c++) {
+            int dx = (cornersX[c] == 0) ? 1 : -1;
+            int dy = (cornersY[c] == 0) ? 1 : -1;
+            int[] squares = new int[9];
+            for (int j = 0; j < 3; j++) {
+                for (int i = 0; i < 3; i++) {
+                    squares[j * 3 + i] = (cornersY[c] + dy * j) * size + cornersX[c] + dx * i;
+                }
+            }
+            types[count] = CORNER;
+            patterns[count++] = squares;
+        }
+
+        int[][] edges = new int[4][size];
+        int[][] diagonals = new int[2][size];
+        for (int i = 0; i < size; i++) {
+            edges[0][i] = i;
+            edges[1][i] = last * size + i;
+            edges[2][i] = i * size;
+            edges[3][i] = i * size + last;
+            diagonals[0][i] = i * size + i;
+            diagonals[1][i] = i * size + last - i;
+        }
+        for (int[] edge: edges) {
+            types[count] = EDGE;
+            patterns[count++] = edge;
+        }
+        for (int[] diagonal: diagonals) {
+            types[count] = DIAGONAL;
+            patterns[count++] = diagonal;
+        }
+
+        for (int p = 0; p < patterns.length; p++) {
+            lengths[types[p]] = patterns[p].length;
+            rowStarts[p] = rowStart(patterns[p]);
+        }
+
+        this.squarePatterns = new int[size * size][];
+        this.squarePowers = new int[size * size][];
+        for (int square = 0; square < size * size; square++) {
+            int members = 0;
+            for (int[] pattern: patterns) {
+                for (int k = 0; k < pattern.length; k++) {
+                    members += (pattern[k] == square) ? 1 : 0;
+                }
+            }
+            squarePatterns[square] = new int[members];
+            squarePowers[square] = new int[members];
+            members = 0;
+            for (int p = 0; p < patterns.length; p++) {
+                for (int k = 0; k < patterns[p].length; k++) {
+                    if (patterns[p][k] == square) {
+                        squarePatterns[square][members] = p;
+                        squarePowers[square][members++] = power(k);
+                    }
+                }
+            }
+        }
+        setDefaultWeights();
+    }
+
+    /**
+     * Vytvoření tabulky převodu binárních čísel na ternární
+     * @param digits Největší počet číslic
+     * @return Tabulka převodu
+     */
+    private static int[] createTernary(int digits) {
+        int[] ternary = new int[1 << digits];
+        for (int binary = 1; binary < ternary.length; binary++) {
+            int lowest = Integer.numberOfTrailingZeros(binary);
+            ternary[binary] = ternary[binary & (binary - 1)] + power(lowest);
+        }
+        return ternary;
+    }
+
+    /**
+     * Mocnina trojky
+     * @param exponent Exponent
+     * @return Hodnota 3^exponent
+     */
+    static int power(int exponent) {
+        int value = 1;
+        for (int i = 0; i < exponent; i++) {
+            value *= 3;
+        }
+        return value;
+    }
+
+    /**
+     * Zjištění, zdali vzor tvoří souvislý úsek polí v jednom slově masky
+     * @param squares Pole vzoru
+     * @return Index prvního pole nebo -1
+     */
+    private static int rowStart(int[] squares) {
+        for (int k = 1; k < squares.length; k++) {
+            if (squares[k] != squares[0] + k) {
+                return -1;
+            }
+        }
+        int bit = squares[0] & 63;
+        return (bit + squares.length <= 64) ? squares[0] : -1;
+    }
+
+    /**
+     * Odvození vah z vah polí, každé pole přispívá rovným dílem do všech vzorů, které jej obsahují
+     * Odvozené váhy mají jedinou fázi hry
+     */
+    void setDefaultWeights() {
+        int[] squareWeights = SquareEvaluator.createSquareWeights(BoardTables.forSize(size));
+        int[] coverage = new int[size * size];
+        for (int[] pattern: patterns) {
+            for (int square: pattern) {
+                coverage[square]++;
+            }
+        }
+
+        short[][][] derived = new short[1][TYPES][];
+        for (int type = 0; type < TYPES; type++) {
+            int[] pattern = patterns[firstOfType(type)];
+            short[] table = new short[power(pattern.length)];
+            for (int index = 0; index < table.length; index++) {
+                int value = 0;
+                for (int k = 0, rest = index; k < pattern.length; k++, rest /= 3) {
+                    int digit = rest % 3;
+                    if (digit != 0) {
+                        int weight = squareWeights[pattern[k]] / coverage[pattern[k]];
+                        value += (digit == 1) ? weight : -weight;
+                    }
+                }
+                table[index] = (short) value;
+            }
+            derived[0][type] = table;
+        }
+
+        this.weights = derived;
+    }
+
+    /**
+     * Pořadí prvního výskytu vzoru daného typu
+     * @param type Typ vzoru
+     * @return Pořadí výskytu
+     */
+    private int firstOfType(int type) {
+        for (int p = 0; p < types.length; p++) {
+            if (types[p] == type) {
+                return p;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Načtení vah ze souboru
+     * @param file Soubor vah
+     * @throws IOException Problém při čtení souboru nebo soubor neodpovídá velikosti desky
+     */
+    void load(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readInt() != size) {
+                throw new IOException("Soubor " + file + " neobsahuje vahy pro velikost " + size);
+            }
+            int phases = in.readInt();
+            if (phases < 1 || in.readInt() != TYPES) {
+                throw new IOException("Soubor " + file + " ma neplatnou hlavicku");
+            }
+
+            short[][][] read = new short[phases][TYPES][];
+            for (int phase = 0; phase < phases; phase++) {
+                for (int type = 0; type < TYPES; type++) {
+                    int length = in.readInt();
+                    if (length != power(lengths[type])) {
+                        throw new IOException("Soubor " + file + " ma neplatny pocet vah");
+                    }
+                    read[phase][type] = new short[length];
+                    for (int i = 0; i < length; i++) {
+                        read[phase][type][i] = in.readShort();
+                    }
+                }
+            }
+
+            this.weights = read;
+        }
+    }
+
+    /**
+     * Uložení vah do souboru
+     * @param file Soubor vah
+     * @throws IOException Problém při zápisu souboru
+     */
+    void write(File file) throws IOException {
+        File folder = file.getParentFile();
+        if (folder != null && !folder.exists()) {
+            folder.mkdirs();
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(size);
+            out.writeInt(weights.length);
+            out.writeInt(TYPES);
+            for (short[][] phase: weights) {
+                for (short[] table: phase) {
+                    out.writeInt(table.length);
+                    for (short weight: table) {
+                        out.writeShort(weight);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Fáze hry podle počtu kamenů na desce
+     * @param stones Počet kamenů
+     * @return Fáze hry
+     */
+    int phaseOf(int stones) {
+        return Math.min(weights.length - 1, stones * weights.length / (size * size));
+    }
+
+    /**
+     * Ternární index výskytu vzoru
+     * @param pattern Pořadí výskytu vzoru
+     * @param black Maska černých kamenů
+     * @param white Maska bílých kamenů
+     * @return Index do tabulky vah
+     */
+    int index(int pattern, long[] black, long[] white) {
+        int start = rowStarts[pattern];
+        int blackBits;
+        int whiteBits;
+
+        if (start >= 0) {
+            int length = patterns[pattern].length;
+            int mask = (1 << length) - 1;
+            blackBits = (int) (black[start >>> 6] >>> start) & mask;
+            whiteBits = (int) (white[start >>> 6] >>> start) & mask;
+        }
+        else {
+            int[] squares = patterns[pattern];
+            blackBits = 0;
+            whiteBits = 0;
+            for (int k = 0; k < squares.length; k++) {
+                int square = squares[k];
+                blackBits |= (int) (black[square >>> 6] >>> square & 1) << k;
+                whiteBits |= (int) (white[square >>> 6] >>> square & 1) << k;
+            }
+        }
+        return TERNARY[blackBits] + 2 * TERNARY[whiteBits];
+    }
+
+    /**
+     * Ohodnocení pozice z pohledu hráče na tahu součtem vah všech výskytů vzorů
+     * @param position Pozice
+     * @return Hodnota pozice
+     */
+    @Override
+    public int evaluate(Position position) {
+        int stones = position.counts[BitBoard.BLACK] + position.counts[BitBoard.WHITE];
+        int score;
+
+        if (position.accumulator != null && position.accumulator.evaluator == this) {
+            score = score(position.accumulator.indices, stones);
+        }
+        else {
+            long[] black = position.stones[BitBoard.BLACK];
+            long[] white = position.stones[BitBoard.WHITE];
+            short[][] phase = weights[phaseOf(stones)];
+            score = 0;
+            for (int p = 0; p < patterns.length; p++) {
+                score += phase[types[p]][index(p, black, white)];
+            }
+        }
+        return (position.getSideToMove() == BitBoard.BLACK) ? score : -score;
+    }
+
+    /**
+     * Ohodnocení z pohledu černého hráče podle již vypočtených indexů vzorů
+     * @param indices Indexy všech výskytů vzorů
+     * @param stones Počet kamenů na desce
+     * @return Hodnota pozice
+     */
+    int score(int[] indices, int stones) {
+        short[][] phase = weights[phaseOf(stones)];
+        int score = 0;
+        for (int p = 0; p < indices.length; p++) {
+            score += phase[types[p]][indices[p]];
+        }
+        return score;
+    }
+
+    /**
+     * Zápis odvozených vah pro dané velikosti desky do souborů, ze kterých je načítá hra
+     * @param args VELIKOST_DESKY...
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Pouziti: PatternEvaluator VELIKOST_DESKY...");
+            return;
+        }
+
+        try {
+            for (String arg: args) {
+                int size = Utility.loadParseBoardSize(arg);
+                if (size < 6 || size > BoardTables.MAXSIZE || size % 2 != 0) {
+                    System.out.println("Neplatna velikost desky: " + arg);
+                    continue;
+                }
+                File file = getFile(size);
+                new PatternEvaluator(size).write(file);
+                System.out.println("Vahy pro desku " + size + "x" + size + " zapsany do " + file);
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Neplatny ciselny argument: " + e.getMessage());
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,443 @@
+/**
+ * Třída pro počítání listů stromu hry do dané hloubky (perft)
+ * Slouží jako kontrola správnosti generování tahů a otáčení kamenů a jako měřítko jejich rychlosti
+ * Počítá se od základního postavení {@code Board.initBoardStones}, pass se počítá jako půltah,
+ * pokud hráč nemůže táhnout a soupeř ano, pozice, ve které nemůže táhnout ani jeden hráč, je list
+ * Rychlé počítání probíhá nad pozicí {@code Position}, referenční počítání stejnými operacemi jako hra:
+ * generováním tahů nad hrací deskou a otáčením kamenů metodou {@code Board.changeField}
+ * Spuštění: Perft VELIKOST_DESKY HLOUBKA [-rozpis] [-vlakna POCET]
+ *           Perft -kontrola
+ * Funkce:  1) Počítání listů do dané hloubky včetně passů
+ *          2) Rozpis počtu listů podle tahů v kořeni
+ *          3) Paralelní počítání ve fondu fork-join
+ *          4) Kontrola proti referenčním počtům a proti počítání nad hrací deskou
+ *             a kontrola průběžně udržovaných indexů vzorů a Zobristových klíčů proti jejich úplnému přepočtu
+ *          5) Výpis počtu uzlů za sekundu
+ * @author Lukáš Dibďák
+ * @see othello.Position
+ * @see othello.MoveGenerator
+ */
+
+package othello;
+
+import othello.Utility.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+class Perft {
+    /**
+     * Velikosti desky a referenční počty listů pro hloubky od 1, ke kterým se počty kontrolují
+     */
+    static final int[] SIZES = { 6, 8, 10, 12 };
+    static final long[][] REFERENCE = {
+            { 4, 12, 56, 244, 1364, 7604, 47740, 308716, 2114912 },
+            { 4, 12, 56, 244, 1396, 8200, 55092, 390216, 3005288 },
+            { 4, 12, 56, 244, 1396, 8200, 55180, 392268, 3045812 },
+            { 4, 12, 56, 244, 1396, 8200, 55180, 392268, 3046196 }
+    };
+
+    /**
+     * Hloubka, do které se při kontrole počítá i nad hrací deskou
+     */
+    private static final int BOARDDEPTH = 6;
+
+    /**
+     * Počet půltahů od kořene, do kterých se paralelní počítání dělí na samostatné úlohy
+     */
+    private static final int SPLITPLIES = 2;
+
+    /**
+     * Počet náhodných posloupností tahů a jejich vracení a počet změn pozice v každé z nich při kontrole
+     * průběžně udržovaných hodnot
+     */
+    private static final int SEQUENCES = 200;
+    private static final int SEQUENCESTEPS = 300;
+
+    private final int size;
+
+    /**
+     * Konstruktor
+     * @param size Velikost hrací desky
+     */
+    Perft(int size) {
+        this.size = size;
+    }
+
+    /**
+     * Vytvoření základního postavení s černým hráčem na tahu
+     * @return Pozice základního postavení
+     */
+    Position createStart() {
+        Board board = new Board(size);
+        return new Position(board, BitBoard.BLACK);
+    }
+
+    /**
+     * Počet listů stromu hry do dané hloubky jedním vláknem
+     * @param position Pozice, po počítání je ve stejném stavu
+     * @param depth Hloubka
+     * @return Počet listů
+     */
+    long count(Position position, int depth) {
+        MoveList[] lists = new MoveList[depth + 1];
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = new MoveList(size);
+        }
+        return count(position, depth, lists);
+    }
+
+    /**
+     * Rekurzivní počítání listů, v poslední úrovni se listy pouze sečtou bez provádění tahů
+     * @param position Pozice
+     * @param depth Zbývající hloubka
+     * @param lists Seznamy tahů pro jednotlivé zbývající hloubky
+     * @return Počet listů
+     */
+    private static long count(Position position, int depth, MoveList[] lists) {
+        if (depth == 0) {
+            return 1;
+        }
+
+        MoveList moves = lists[depth];
+        position.generateMoves(moves);
+
+        if (moves.isEmpty()) {
+            position.makePass();
+            position.generateMoves(moves);
+            long nodes = moves.isEmpty() ? 1 : count(position, depth - 1, lists);
+            position.unmakeMove();
+            return nodes;
+        }
+        if (depth == 1) {
+            return moves.size();
+        }
+
+        long nodes = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            position.makeMove(moves, i);
+            nodes += count(position, depth - 1, lists);
+            position.unmakeMove();
+        }
+        return nodes;
+    }
+
+    /**
+     * Rozpis počtu listů podle tahů v kořeni
+     * @param position Pozice kořene
+     * @param depth Hloubka, nejméně 1
+     * @param pool Fond vláken nebo {@code null} pro počítání jedním vláknem
+     * @return Dvojice (index pole tahu, počet listů), pass je označen {@code Position.PASS}
+     */
+    long[] divide(Position position, int depth, ForkJoinPool pool) {
+        MoveList moves = new MoveList(size);
+        position.generateMoves(moves);
+
+        if (moves.isEmpty()) {
+            return new long[] { Position.PASS, count(position, depth, pool) };
+        }
+
+        long[] result = new long[2 * moves.size()];
+        for (int i = 0; i < moves.size(); i++) {
+            position.makeMove(moves, i);
+            result[2 * i] = moves.getSquare(i);
+            result[2 * i + 1] = count(position, depth - 1, pool);
+            position.unmakeMove();
+        }
+        return result;
+    }
+
+    /**
+     * Počet listů jedním vláknem nebo paralelně ve fondu vláken
+     * @param position Pozice, po počítání je ve stejném stavu
+     * @param depth Hloubka
+     * @param pool Fond vláken nebo {@code null} pro počítání jedním vláknem
+     * @return Počet listů
+     */
+    long count(Position position, int depth, ForkJoinPool pool) {
+        if (pool == null || depth <= SPLITPLIES) {
+            return count(position, depth);
+        }
+        return pool.invoke(new Task(new Position(position), depth, SPLITPLIES));
+    }
+
+    /**
+     * Úloha paralelního počítání, do zadaného počtu půltahů se dělí na podúlohy pro jednotlivé tahy,
+     * hlouběji počítá jedním vláknem
+     */
+    private final class Task extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final Position position;
+        private final int depth;
+        private final int split;
+
+        /**
+         * Konstruktor
+         * @param position Vlastní kopie pozice
+         * @param depth Zbývající hloubka
+         * @param split Zbývající počet půltahů dělení na podúlohy
+         */
+        Task(Position position, int depth, int split) {
+            this.position = position;
+            this.depth = depth;
+            this.split = split;
+        }
+
+        @Override
+        protected Long compute() {
+            if (split == 0 || depth <= 1) {
+                return count(position, depth);
+            }
+
+            MoveList moves = new MoveList(size);
+            position.generateMoves(moves);
+            if (moves.isEmpty()) {
+                return count(position, depth);
+            }
+
+            Task[] tasks = new Task[moves.size()];
+            for (int i = 0; i < tasks.length; i++) {
+                position.makeMove(moves, i);
+                tasks[i] = new Task(new Position(position), depth - 1, split - 1);
+                position.unmakeMove();
+            }
+            invokeAll(tasks);
+
+            long nodes = 0;
+            for (Task task: tasks) {
+                nodes += task.join();
+            }
+            return nodes;
+        }
+    }
+
+    /**
+     * Referenční počítání listů stejnými operacemi jako hra: tahy se generují nad hrací deskou
+     * a každý tah se provede na kopii desky položením kamene a otočením kamenů z masky tahu
+     * @param board Hrací deska
+     * @param color Barva hráče na tahu
+     * @param depth Zbývající hloubka
+     * @return Počet listů
+     */
+    long countOnBoard(Board board, int color, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+
+        MoveList moves = new MoveList(size);
+        MoveGenerator.generate(board.getBits(), color, moves);
+
+        if (moves.isEmpty()) {
+            MoveGenerator.generate(board.getBits(), color ^ 1, moves);
+            return moves.isEmpty() ? 1 : countOnBoard(board, color ^ 1, depth - 1);
+        }
+
+        long nodes = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            Board child = board.copy();
+            int square = moves.getSquare(i);
+            child.setField(square % size, square / size, color == BitBoard.BLACK ? Color.BLACK : Color.WHITE);
+
+            int offset = moves.flipOffset(i);
+            for (int w = 0; w < moves.words; w++) {
+                for (long mask = moves.flips[offset + w]; mask != 0; mask &= mask - 1) {
+                    child.changeField((w << 6) + Long.numberOfTrailingZeros(mask));
+                }
+            }
+            nodes += countOnBoard(child, color ^ 1, depth - 1);
+        }
+        return nodes;
+    }
+
+    /**
+     * Kontrola indexů vzorů a Zobristových klíčů udržovaných při tazích proti úplnému přepočtu z masek kamenů
+     * Hrací deska se náhodně rozehraje operacemi hry, naplánují se zmrazení kamenů podle tahů a v pozici
+     * vytvořené z desky se náhodně střídají tahy, passy a jejich vracení, obojí se kontroluje po každé změně
+     * @param sequences Počet náhodných posloupností
+     * @param steps Počet změn pozice v každé posloupnosti
+     * @return Počet neshod
+     */
+    int validateIncremental(int sequences, int steps) {
+        PatternEvaluator patterns = PatternEvaluator.forSize(size);
+        Random random = new Random(size);
+        MoveList moves = new MoveList(size);
+        int errors = 0;
+
+        for (int sequence = 0; sequence < sequences; sequence++) {
+            Board board = new Board(size);
+            board.getBits().attachAccumulator(patterns);
+            int color = BitBoard.BLACK;
+
+            for (int ply = random.nextInt(size * size / 2); ply > 0; ply--) {
+                MoveGenerator.generate(board.getBits(), color, moves);
+                if (moves.isEmpty()) {
+                    break;
+                }
+                int move = random.nextInt(moves.size());
+                int square = moves.getSquare(move);
+                board.setField(square % size, square / size, color == BitBoard.BLACK ? Color.BLACK : Color.WHITE);
+                int offset = moves.flipOffset(move);
+                for (int w = 0; w < moves.words; w++) {
+                    for (long mask = moves.flips[offset + w]; mask != 0; mask &= mask - 1) {
+                        board.changeField((w << 6) + Long.numberOfTrailingZeros(mask));
+                    }
+                }
+                color ^= 1;
+            }
+            BitBoard bits = board.getBits();
+            errors += checkAccumulator(bits.accumulator, bits.stones);
+            errors += (bits.hash == bits.zobrist.hash(bits.stones, bits.frozen)) ? 0 : 1;
+
+            for (int square = 0; square < size * size; square++) {
+                if (!board.getBits().isEmpty(square) && random.nextInt(4) == 0) {
+                    board.scheduleFreeze(square, 0, 1 + random.nextInt(Utility.MAXINITFREEZETIME), 1 + random.nextInt(Utility.MAXPERSISTFREEZETIME));
+                }
+            }
+
+            Position position = new Position(board, color);
+            for (int step = 0; step < steps; step++) {
+                position.generateMoves(moves);
+                if (position.getPly() > 0 && (random.nextInt(3) == 0 || (moves.isEmpty() && position.getPasses() > 0))) {
+                    position.unmakeMove();
+                }
+                else if (moves.isEmpty()) {
+                    position.makePass();
+                }
+                else {
+                    position.makeMove(moves, random.nextInt(moves.size()));
+                }
+                errors += checkAccumulator(position.accumulator, position.stones);
+                errors += (position.getHash() == position.computeHash()) ? 0 : 1;
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * Porovnání průběžně udržovaných indexů vzorů s indexy vypočtenými z masek kamenů
+     * @param accumulator Udržované indexy
+     * @param stones Masky kamenů obou barev
+     * @return Počet neshod, 0 nebo 1
+     */
+    private static int checkAccumulator(PatternAccumulator accumulator, long[][] stones) {
+        PatternAccumulator recomputed = new PatternAccumulator(accumulator.evaluator, stones[BitBoard.BLACK], stones[BitBoard.WHITE]);
+        return Arrays.equals(accumulator.indices, recomputed.indices) ? 0 : 1;
+    }
+
+    /**
+     * Znakový zápis pole tahu, například c4
+     * @param square Index pole nebo {@code Position.PASS}
+     * @return Zápis tahu
+     */
+    String getMoveString(int square) {
+        if (square == Position.PASS) {
+            return "pass";
+        }
+        return Utility.transformIntToChar(square % size) + Integer.toString(square / size + 1);
+    }
+
+    /**
+     * Kontrola počtů listů všech velikostí desky proti referenčním počtům
+     * Do hloubky {@code BOARDDEPTH} se počty kontrolují i proti počítání nad hrací deskou,
+     * pro každou velikost se navíc kontrolují průběžně udržované indexy vzorů
+     * @param pool Fond vláken pro hlubší hloubky
+     * @return Všechny počty a indexy souhlasí/nesouhlasí
+     */
+    static boolean validate(ForkJoinPool pool) {
+        boolean valid = true;
+
+        for (int i = 0; i < SIZES.length; i++) {
+            Perft perft = new Perft(SIZES[i]);
+            Position position = perft.createStart();
+
+            for (int depth = 1; depth <= REFERENCE[i].length; depth++) {
+                long nodes = perft.count(position, depth, pool);
+                boolean match = nodes == REFERENCE[i][depth - 1];
+                if (depth <= BOARDDEPTH) {
+                    Board board = new Board(SIZES[i]);
+                    match &= perft.countOnBoard(board, BitBoard.BLACK, depth) == nodes;
+                }
+                valid &= match;
+                System.out.println("Deska " + SIZES[i] + "x" + SIZES[i] + ", hloubka " + depth + ": " + nodes
+                        + (match ? " OK" : " CHYBA, ocekavano " + REFERENCE[i][depth - 1]));
+            }
+
+            int errors = perft.validateIncremental(SEQUENCES, SEQUENCESTEPS);
+            valid &= errors == 0;
+            System.out.println("Deska " + SIZES[i] + "x" + SIZES[i] + ", indexy vzoru a klice: " + (errors == 0 ? "OK" : "CHYBA, neshod " + errors));
+        }
+        return valid;
+    }
+
+    /**
+     * Spuštění počítání listů s výpisem počtu uzlů za sekundu nebo kontrola referenčních počtů
+     * @param args VELIKOST_DESKY HLOUBKA [-rozpis] [-vlakna POCET] nebo -kontrola
+     */
+    public static void main(String[] args) {
+        try {
+            int threads = Runtime.getRuntime().availableProcessors();
+            boolean divide = false;
+            ArrayList<String> values = new ArrayList<>();
+
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-rozpis":
+                        divide = true;
+                        break;
+                    case "-vlakna":
+                        threads = Integer.parseUnsignedInt(args[++i]);
+                        break;
+                    case "-kontrola":
+                        boolean valid = validate(new ForkJoinPool(Math.max(1, threads)));
+                        System.out.println(valid ? "Vsechny kontroly souhlasi" : "Nektere kontroly nesouhlasi");
+                        if (!valid) {
+                            System.exit(1);
+                        }
+                        return;
+                    default:
+                        values.add(args[i]);
+                }
+            }
+
+            if (values.size() != 2) {
+                System.out.println("Pouziti: Perft VELIKOST_DESKY HLOUBKA [-rozpis] [-vlakna POCET]");
+                System.out.println("         Perft -kontrola");
+                return;
+            }
+
+            int size = Utility.loadParseBoardSize(values.get(0));
+            int depth = Integer.parseUnsignedInt(values.get(1));
+            if (size < 6 || size > 12 || size % 2 != 0) {
+                System.out.println("Neplatna velikost desky: " + values.get(0));
+                return;
+            }
+
+            Perft perft = new Perft(size);
+            Position position = perft.createStart();
+            ForkJoinPool pool = (threads > 1) ? new ForkJoinPool(threads) : null;
+            long start = System.nanoTime();
+            long nodes = 0;
+
+            if (divide && depth > 0) {
+                long[] moves = perft.divide(position, depth, pool);
+                for (int i = 0; i < moves.length; i += 2) {
+                    System.out.println(perft.getMoveString((int) moves[i]) + ": " + moves[i + 1]);
+                    nodes += moves[i + 1];
+                }
+            }
+            else {
+                nodes = perft.count(position, depth, pool);
+            }
+
+            long nanos = Math.max(1, System.nanoTime() - start);
+            System.out.println("Deska " + size + "x" + size + ", hloubka " + depth + ": " + nodes + " listu, cas: "
+                    + (nanos / 1000000) + " ms, uzlu/s: " + (long) (nodes * 1e9 / nanos) + ", vlaken: " + Math.max(1, threads));
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            System.out.println("Neplatny ciselny argument");
+        }
+    }
+}
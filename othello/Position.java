@@ -0,0 +1,360 @@
+/**
+ * Třída pro pozici hry určenou k prohledávání tahů počítačem
+ * Pozice se vytváří z hrací desky {@code Board} a na rozdíl od ní umožňuje tahy provádět a zase vracet
+ * bez kopírování desky a bez alokace objektů
+ * Funkce:  1) Provedení tahu včetně otočení kamenů a přepnutí hráče na tahu (make)
+ *          2) Přesné vrácení posledního tahu (unmake)
+ *          3) Předání tahu soupeři, pokud hráč nemůže táhnout (pass)
+ *          4) Zachování pravidla zmrazených kamenů, které nelze otočit
+ *          5) Generování validních tahů hráče na tahu
+ *          6) Průběžné udržování Zobristova klíče pozice včetně hráče na tahu
+ *          7) Průběžné udržování indexů vzorů ohodnocení podle otočených kamenů
+ *          8) Zmrazování a rozmrazování kamenů naplánovaných podle pořadí tahu, klíč pozice pak obsahuje i pořadí tahu
+ * @author Lukáš Dibďák
+ * @see othello.Board
+ * @see othello.MoveGenerator
+ */
+
+package othello;
+
+class Position {
+    /**
+     * Identifikace tahu pass v zásobníku tahů
+     */
+    static final int PASS = -1;
+
+    final int size;
+    final int words;
+    final BoardTables tables;
+    final Zobrist zobrist;
+
+    /**
+     * Masky kamenů podle barvy a masky zmrazených kamenů, které nelze otočit
+     */
+    final long[][] stones;
+    final long[] frozen;
+    final int[] counts;
+
+    /**
+     * Indexy vzorů ohodnocení převzaté z desky nebo {@code null}
+     */
+    final PatternAccumulator accumulator;
+
+    /**
+     * Zmrazení naplánovaná podle pořadí tahu nebo {@code null}, pokud žádná změna v budoucích tazích nenastane
+     */
+    private final FreezeClock freezeClock;
+    private final long[] freezeEvents;
+    private final long[] thawEvents;
+
+    private long hash;
+    private int sideToMove;
+    private int passes;
+    private int ply;
+
+    /**
+     * Zásobníky pro vracení tahů, alokované jednou při vytvoření pozice
+     */
+    private final int[] moveStack;
+    private final int[] passStack;
+    private final long[] flipStack;
+    private final long[] hashStack;
+    private final long[] frozenStack;
+
+    /**
+     * Konstruktor pozice z hrací desky
+     * @param board Hrací deska
+     * @param sideToMove Barva hráče na tahu ({@code BitBoard.BLACK} nebo {@code BitBoard.WHITE})
+     */
+    Position(Board board, int sideToMove) {
+        BitBoard bits = board.getBits();
+
+        this.size = bits.size;
+        this.words = bits.words;
+        this.tables = bits.tables;
+        this.zobrist = bits.zobrist;
+        this.stones = new long[][] { bits.stones[BitBoard.BLACK].clone(), bits.stones[BitBoard.WHITE].clone() };
+        this.frozen = bits.frozen.clone();
+        this.counts = bits.counts.clone();
+        this.accumulator = (bits.accumulator == null) ? null : new PatternAccumulator(bits.accumulator);
+        this.sideToMove = sideToMove;
+        this.hash = (sideToMove == BitBoard.WHITE) ? bits.hash ^ zobrist.side : bits.hash;
+        this.passes = 0;
+        this.ply = 0;
+        this.freezeClock = (bits.freezeClock == null || !bits.freezeClock.hasFuture()) ? null : new FreezeClock(bits.freezeClock);
+        if (freezeClock != null) {
+            hash ^= FreezeClock.key(freezeClock.getClock());
+        }
+
+        int maxPly = 2 * size * size + 2;
+        this.moveStack = new int[maxPly];
+        this.passStack = new int[maxPly];
+        this.flipStack = new long[maxPly * words];
+        this.hashStack = new long[maxPly];
+        this.freezeEvents = (freezeClock == null) ? null : new long[words];
+        this.thawEvents = (freezeClock == null) ? null : new long[words];
+        this.frozenStack = (freezeClock == null) ? null : new long[maxPly * words];
+    }
+
+    /**
+     * Kopírovací konstruktor, kopie má prázdné zásobníky tahů
+     * @param position Pozice ke zkopírování
+     */
+    Position(Position position) {
+        this.size = position.size;
+        this.words = position.words;
+        this.tables = position.tables;
+        this.zobrist = position.zobrist;
+        this.stones = new long[][] { position.stones[BitBoard.BLACK].clone(), position.stones[BitBoard.WHITE].clone() };
+        this.frozen = position.frozen.clone();
+        this.counts = position.counts.clone();
+        this.accumulator = (position.accumulator == null) ? null : new PatternAccumulator(position.accumulator);
+        this.sideToMove = position.sideToMove;
+        this.hash = position.hash;
+        this.passes = position.passes;
+        this.ply = 0;
+        this.freezeClock = (position.freezeClock == null) ? null : new FreezeClock(position.freezeClock);
+        this.moveStack = new int[position.moveStack.length];
+        this.passStack = new int[position.passStack.length];
+        this.flipStack = new long[position.flipStack.length];
+        this.hashStack = new long[position.hashStack.length];
+        this.freezeEvents = (freezeClock == null) ? null : new long[words];
+        this.thawEvents = (freezeClock == null) ? null : new long[words];
+        this.frozenStack = (freezeClock == null) ? null : new long[position.frozenStack.length];
+    }
+
+    /**
+     * Vygeneruje validní tahy hráče na tahu
+     * @param moves Seznam, do kterého se tahy uloží
+     */
+    void generateMoves(MoveList moves) {
+        MoveGenerator.generate(tables, stones[sideToMove], stones[sideToMove ^ 1], moves);
+    }
+
+    /**
+     * Provedení tahu ze seznamu tahů
+     * Kameny v masce tahu, které jsou zmrazené, se neotočí
+     * @param moves Seznam tahů vygenerovaný pro tuto pozici
+     * @param move Pořadí tahu v seznamu
+     */
+    void makeMove(MoveList moves, int move) {
+        makeMove(moves.squares[move], moves.flips, moves.flipOffset(move));
+    }
+
+    /**
+     * Provedení tahu
+     * @param square Pole, na které se pokládá kámen
+     * @param flips Pole obsahující masku otáčených kamenů
+     * @param offset Index prvního slova masky v poli {@code flips}
+     */
+    void makeMove(int square, long[] flips, int offset) {
+        long[] own = stones[sideToMove];
+        long[] opponent = stones[sideToMove ^ 1];
+        int base = ply * words;
+        int flipped = 0;
+        long key = hash ^ zobrist.side ^ zobrist.stones[sideToMove][square];
+
+        for (int w = 0; w < words; w++) {
+            long mask = flips[offset + w] & ~frozen[w];
+            flipStack[base + w] = mask;
+            own[w] |= mask;
+            opponent[w] &= ~mask;
+            flipped += Long.bitCount(mask);
+            for (; mask != 0; mask &= mask - 1) {
+                key ^= zobrist.flips[(w << 6) + Long.numberOfTrailingZeros(mask)];
+            }
+        }
+        BitBoard.set(own, square);
+
+        hashStack[ply] = hash;
+        hash = key;
+
+        counts[sideToMove] += flipped + 1;
+        counts[sideToMove ^ 1] -= flipped;
+
+        if (accumulator != null) {
+            updateAccumulator(square, base, BitBoard.EMPTY, sideToMove ^ 1, sideToMove);
+        }
+
+        moveStack[ply] = square;
+        passStack[ply] = passes;
+        passes = 0;
+        sideToMove ^= 1;
+        if (freezeClock != null) {
+            advanceClock();
+        }
+        ply++;
+    }
+
+    /**
+     * Předání tahu soupeři bez položení kamene
+     */
+    void makePass() {
+        int base = ply * words;
+        for (int w = 0; w < words; w++) {
+            flipStack[base + w] = 0;
+        }
+
+        moveStack[ply] = PASS;
+        passStack[ply] = passes;
+        hashStack[ply] = hash;
+        hash ^= zobrist.side;
+        passes++;
+        sideToMove ^= 1;
+        if (freezeClock != null) {
+            advanceClock();
+        }
+        ply++;
+    }
+
+    /**
+     * Přesné vrácení posledního provedeného tahu nebo passu
+     */
+    void unmakeMove() {
+        ply--;
+        sideToMove ^= 1;
+        passes = passStack[ply];
+        hash = hashStack[ply];
+        if (freezeClock != null) {
+            retreatClock();
+        }
+
+        int square = moveStack[ply];
+        if (square == PASS) {
+            return;
+        }
+
+        long[] own = stones[sideToMove];
+        long[] opponent = stones[sideToMove ^ 1];
+        int base = ply * words;
+        int flipped = 0;
+
+        for (int w = 0; w < words; w++) {
+            long mask = flipStack[base + w];
+            own[w] &= ~mask;
+            opponent[w] |= mask;
+            flipped += Long.bitCount(mask);
+        }
+        BitBoard.clear(own, square);
+
+        counts[sideToMove] -= flipped + 1;
+        counts[sideToMove ^ 1] += flipped;
+
+        if (accumulator != null) {
+            updateAccumulator(square, base, sideToMove, sideToMove, sideToMove ^ 1);
+        }
+    }
+
+    /**
+     * Posun hodin zmrazení o jeden tah vpřed, zmrazení a rozmrazení kamenů nového tahu a úprava klíče pozice
+     * Původní maska zmrazených kamenů se uloží do zásobníku
+     */
+    private void advanceClock() {
+        int base = ply * words;
+        hash ^= FreezeClock.key(freezeClock.getClock());
+
+        boolean changed = freezeClock.advance(freezeEvents, thawEvents);
+        for (int w = 0; w < words; w++) {
+            frozenStack[base + w] = frozen[w];
+            if (changed) {
+                frozen[w] = (frozen[w] | freezeEvents[w]) & ~thawEvents[w];
+                for (long mask = frozen[w] ^ frozenStack[base + w]; mask != 0; mask &= mask - 1) {
+                    hash ^= zobrist.frozen[(w << 6) + Long.numberOfTrailingZeros(mask)];
+                }
+            }
+        }
+
+        hash ^= FreezeClock.key(freezeClock.getClock());
+    }
+
+    /**
+     * Posun hodin zmrazení o jeden tah vzad a obnovení masky zmrazených kamenů ze zásobníku
+     */
+    private void retreatClock() {
+        int base = ply * words;
+        freezeClock.retreat(freezeEvents, thawEvents);
+        for (int w = 0; w < words; w++) {
+            frozen[w] = frozenStack[base + w];
+        }
+    }
+
+    /**
+     * Úprava indexů vzorů pro položené pole a otočené kameny uložené v zásobníku
+     * @param square Pole tahu
+     * @param base Index masky otočených kamenů v zásobníku
+     * @param placed Původní barva pole tahu
+     * @param from Původní barva otočených kamenů
+     * @param to Nová barva otočených kamenů
+     */
+    private void updateAccumulator(int square, int base, int placed, int from, int to) {
+        accumulator.update(square, placed, placed == BitBoard.EMPTY ? to : BitBoard.EMPTY);
+        for (int w = 0; w < words; w++) {
+            for (long mask = flipStack[base + w]; mask != 0; mask &= mask - 1) {
+                accumulator.update((w << 6) + Long.numberOfTrailingZeros(mask), from, to);
+            }
+        }
+    }
+
+    /**
+     * Úplný výpočet Zobristova klíče z masek kamenů, slouží ke kontrole průběžně udržovaného klíče
+     * @return Klíč pozice včetně hráče na tahu a hodin zmrazení
+     */
+    long computeHash() {
+        long key = zobrist.hash(stones, frozen);
+        if (sideToMove == BitBoard.WHITE) {
+            key ^= zobrist.side;
+        }
+        if (freezeClock != null) {
+            key ^= FreezeClock.key(freezeClock.getClock());
+        }
+        return key;
+    }
+
+    /**
+     * Získání Zobristova klíče pozice včetně hráče na tahu
+     * @return Klíč pozice
+     */
+    long getHash() {
+        return hash;
+    }
+
+    /**
+     * Získání barvy hráče na tahu
+     * @return {@code BitBoard.BLACK} nebo {@code BitBoard.WHITE}
+     */
+    int getSideToMove() {
+        return sideToMove;
+    }
+
+    /**
+     * Počet po sobě jdoucích passů před aktuální pozicí
+     * @return Počet passů
+     */
+    int getPasses() {
+        return passes;
+    }
+
+    /**
+     * Počet tahů provedených od vytvoření pozice
+     * @return Počet tahů
+     */
+    int getPly() {
+        return ply;
+    }
+
+    /**
+     * Počet prázdných polí
+     * @return Počet prázdných polí
+     */
+    int emptyCount() {
+        return size * size - counts[BitBoard.BLACK] - counts[BitBoard.WHITE];
+    }
+
+    /**
+     * Rozdíl počtu kamenů hráče na tahu a jeho soupeře
+     * @return Rozdíl kamenů z pohledu hráče na tahu
+     */
+    int discDifference() {
+        return counts[sideToMove] - counts[sideToMove ^ 1];
+    }
+}
@@ -87,13 +87,8 @@ public class ReadLineManager {
                     this.boardSize = boardSize;
                 }
                 argument = arguments.get(2);
-                if (argument.equals("easy")) {
-                    gameType = TypeOfGame.EASY;
-                }
-                else if(argument.equals("hard")) {
-                    gameType = TypeOfGame.HARD;
-                }
-                else {
+                gameType = TypeOfGame.fromDifficulty(argument);
+                if (gameType == null) {
                     throw new BadTokenArgumentException();
                 }
             }
@@ -179,7 +174,11 @@ public class ReadLineManager {
                 case "FREEZE":
                 case "freeze":
                     if (tokenizer.hasMoreTokens()) {
-                        throw new BadTokenArgumentException();
+                        String mode = tokenizer.nextToken();
+                        if (FreezeMode.fromMode(mode) == null || tokenizer.hasMoreTokens()) {
+                            throw new BadTokenArgumentException();
+                        }
+                        arguments.add(mode);
                     }
                     return TypeOfInstruction.FREEZE;
                 case "LOAD":
@@ -1,17 +1,29 @@
 /**
  * Třída pro správu Save/Load operací
  * Funkce:  1) Operace nad souborovým systémem, manipulace se složkou a umístěním souborů
- *          2) Ukládání her
- *          3) Načítání her
+ *          2) Ukládání her na pozadí se slučováním opakovaných uložení a atomickým nahrazením souboru
+ *          3) Načítání her v binárním i starém textovém formátu jedním průchodem souboru načteného kanálem
  * @author Lukáš Dibďák
  * @see othello.Controller
  */
 
 package othello;
 
-import java.util.*;
 import othello.Utility.*;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 class SaveLoadManager {
     File pathToEnviroment = new File(System.getProperty("user.dir"));
@@ -19,110 +31,215 @@ class SaveLoadManager {
     File nameOfSave = null;
 
     /**
-     * Metoda pro uložení her do souboru
+     * Plánovací vlákno ukládání sdílené všemi správci, uložení se zapisují postupně v pořadí zadání
+     * Vlákno není démonické a po chvíli nečinnosti zaniká, rozpracované uložení tedy doběhne i při ukončení programu
+     */
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), runnable -> new Thread(runnable, "othello-save"));
+
+    /**
+     * Uložení čekající na zápis podle cílového souboru, opakované uložení stejné hry před zápisem
+     * pouze nahradí snímek hry a sdílí výsledek s předchozím požadavkem
+     */
+    private static final Map<File, PendingSave> PENDING = new HashMap<>();
+
+    /**
+     * Počet zadaných a dosud nedokončených zápisů
+     */
+    private static final AtomicInteger OUTSTANDING = new AtomicInteger();
+
+    static {
+        EXECUTOR.allowCoreThreadTimeOut(true);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> awaitSaves(Utility.SAVESHUTDOWNTIMEOUT), "othello-save-shutdown"));
+    }
+
+    /**
+     * Metoda pro uložení her do souboru v binárním formátu na pozadí
+     * Ve vlákně volajícího se pořídí pouze snímek hry (hlavička a tahy hry, nikoli celé hrací desky),
+     * zápis proběhne v plánovacím vlákně do dočasného souboru, který po zápisu na disk atomicky nahradí uloženou hru
      * @param nameOfGame Jméno hry pro uložení
      * @param players Množina hráčů hry
-     * @param logger Zásobník hracích desek pro {@code undoMove}
+     * @param board Aktuální hrací deska
+     * @param journal Záznam tahů hry
      * @param activePlayer Tah hráče
      * @param typeOfGame Obtížnost počítače (je-li druhý hráč počítač)
-     * @throws GameSavingFailureException Problém při ukládání hry, např. zapisování souborů
+     * @return Výsledek uložení, dokončí se souborem uložené hry nebo výjimkou {@code GameSavingFailureException}
+     * @see SavedGame
      */
-    void save(String nameOfGame, Player[] players, ArrayDeque<Board> logger, int activePlayer, TypeOfGame typeOfGame) throws GameSavingFailureException {
-        char playerTypeChar; String typeOfGameString = "null";
-        if (players[Utility.PLAYERTWO].getPlayerType() == PlayerType.HUMAN)
-            playerTypeChar = PlayerType.HUMAN.getKey();
-        else  {
-            playerTypeChar = PlayerType.COMPUTER.getKey();
-            typeOfGameString = typeOfGame.getDifficulty();
-        }
+    CompletableFuture<File> save(String nameOfGame, Player[] players, Board board, UndoJournal journal, int activePlayer, TypeOfGame typeOfGame) {
+        SavedGame savedGame = SavedGame.fromGame(players, board, journal, activePlayer, typeOfGame);
+        File file = getFile(nameOfGame, Utility.getBinaryFileExtensionString());
+        nameOfSave = file;
 
-        String[] undoMoves = new String[logger.size()];
-
-        int i; Iterator<Board> index;
-        StringBuilder temp = new StringBuilder();
-        for (index = logger.iterator(), i = 0; index.hasNext(); i++) {
-            temp.setLength(0);
-            for (Field field: index.next().getField()) {
-                try {
-                    switch (field.getColor()) {
-                        case BLACK:
-                        case FBLACK:
-                            temp.append(Color.BLACK.getKey());
-                            break;
-                        case WHITE:
-                        case FWHITE:
-                            temp.append(Color.WHITE.getKey());
-                    }
-                } catch (FieldIsEmptyException e) {
-                    temp.append(Color.NONE.getKey());
-                }
+        synchronized (PENDING) {
+            PendingSave pending = PENDING.get(file);
+            if (pending != null) {
+                pending.savedGame = savedGame;
+                return pending.result;
             }
-            undoMoves[i] = temp.toString();
-        }
 
-        nameOfSave = new File(nameOfFolder + System.getProperty("file.separator") + nameOfGame + Utility.getFileExtensionString());
-        if (!nameOfFolder.exists()) {
-            nameOfFolder.mkdir();
+            PendingSave created = new PendingSave(savedGame);
+            PENDING.put(file, created);
+            OUTSTANDING.incrementAndGet();
+            EXECUTOR.execute(() -> write(file, created));
+            return created.result;
         }
-        try {
-            nameOfSave.createNewFile();
-            try (FileWriter fout = new FileWriter(nameOfSave)) {
-                fout.write(playerTypeChar);
-                fout.write(System.lineSeparator());
+    }
 
-                fout.write(Integer.toString(Board.SIZE));
-                fout.write(System.lineSeparator());
+    /**
+     * Zápis čekajícího uložení, volá plánovací vlákno
+     * @param file Soubor uložené hry
+     * @param pending Čekající uložení
+     */
+    private static void write(File file, PendingSave pending) {
+        SavedGame savedGame;
+        synchronized (PENDING) {
+            PENDING.remove(file);
+            savedGame = pending.savedGame;
+        }
 
-                fout.write(typeOfGameString);
-                fout.write(System.lineSeparator());
+        try {
+            writeAtomically(file, savedGame);
+            pending.result.complete(file);
+        } catch (IOException | RuntimeException e) {
+            pending.result.completeExceptionally(new GameSavingFailureException(file.getName() + " (" + e + ")"));
+        } finally {
+            OUTSTANDING.decrementAndGet();
+        }
+    }
 
-                fout.write(Integer.toString(activePlayer));
-                fout.write(System.lineSeparator());
+    /**
+     * Zápis hry do dočasného souboru ve stejné složce, vynucení zápisu na disk a atomické přejmenování
+     * Při pádu programu během zápisu tak zůstane původní uložená hra nepoškozená
+     * Při přepsání existující hry převezme dočasný soubor její práva, nová hra dostane výchozí práva podle umask
+     * Jedinečné jméno dočasného souboru přidělí Files.createTempFile, soubor se pak vytvoří znovu bez jeho práv 0600
+     * @param file Soubor uložené hry
+     * @param savedGame Snímek hry
+     * @throws IOException Chyba zápisu
+     */
+    private static void writeAtomically(File file, SavedGame savedGame) throws IOException {
+        Path folder = file.getAbsoluteFile().getParentFile().toPath();
+        Files.createDirectories(folder);
+        Path temp = Files.createTempFile(folder, file.getName(), Utility.getTemporaryFileExtensionString());
 
-                for (String moveRecord: undoMoves) {
-                    fout.write(moveRecord);
-                    fout.write(System.lineSeparator());
-                }
+        try {
+            PosixFileAttributeView target = Files.getFileAttributeView(file.toPath(), PosixFileAttributeView.class);
+            if (target != null && file.isFile()) {
+                Files.setPosixFilePermissions(temp, target.readAttributes().permissions());
+            } else {
+                Files.delete(temp);
+                Files.createFile(temp);
+            }
 
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                DataOutputStream fout = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+                savedGame.write(fout);
                 fout.flush();
-                fout.close();
-            } catch (FileNotFoundException e) {
-                throw new GameSavingFailureException();
+                channel.force(true);
             }
-        } catch (IOException e) {
-            throw new GameSavingFailureException();
+            try {
+                Files.move(temp, file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Čekání na dokončení všech uložení zadaných před voláním
+     * @param timeoutMillis Nejdelší doba čekání v milisekundách
+     * @return Všechna uložení doběhla/čekání vypršelo nebo bylo přerušeno
+     */
+    static boolean awaitSaves(long timeoutMillis) {
+        try {
+            EXECUTOR.submit(() -> { }).get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException | RejectedExecutionException e) {
+            return false;
         }
     }
 
     /**
      * Metoda pro načtení hry ze souboru
+     * Přednost má binární formát, pokud hra v binárním formátu neexistuje, načte se starý textový formát
+     * Soubor se načte kanálem do vyrovnávací paměti (velké soubory se mapují do paměti) a zpracuje jedním průchodem
+     * Před načtením se počká na dokončení rozpracovaných uložení, načte se tak vždy naposledy uložený stav hry
      * @param nameOfGame Jméno hry k načtení
-     * @return Pole typu {@code String} obsahující všechny informace o načtené hře
+     * @return Uložená hra
      * @throws GameLoadingNameNotFoundException Zadaný název hry neexistuje
-     * @throws GameLoadingFailureException Problém při načítání hry, např. čtení souborů
+     * @throws GameLoadingFailureException Problém při načítání hry s popisem chyby, např. poškozený soubor
      */
-    ArrayList<String> load(String nameOfGame) throws GameLoadingNameNotFoundException, GameLoadingFailureException {
-        ArrayList<String> gameInfo = new ArrayList<>();
+    SavedGame load(String nameOfGame) throws GameLoadingNameNotFoundException, GameLoadingFailureException {
+        if (OUTSTANDING.get() > 0) {
+            awaitSaves(Utility.SAVESHUTDOWNTIMEOUT);
+        }
 
-        try (FileReader fin = new FileReader(nameOfFolder + System.getProperty("file.separator") + nameOfGame + Utility.getFileExtensionString());) {
-            try {
-                int data; StringBuilder temp = new StringBuilder();
-                while ((data = fin.read()) != -1) {
-                    if (Character.isWhitespace(data) && temp.length() != 0) {
-                        gameInfo.add(temp.toString());
-                        temp.setLength(0);
-                    }
-                    else temp.append((char) data);
+        File binary = getFile(nameOfGame, Utility.getBinaryFileExtensionString());
+        if (binary.isFile()) {
+            return SavedGame.read(readFile(binary));
+        }
+
+        File text = getFile(nameOfGame, Utility.getFileExtensionString());
+        if (!text.isFile()) {
+            throw new GameLoadingNameNotFoundException();
+        }
+        return SavedGame.readText(readFile(text));
+    }
+
+    /**
+     * Načtení celého souboru do vyrovnávací paměti
+     * Soubory větší než {@code Utility.SAVEMAPTHRESHOLD} se do paměti mapují a nekopírují se na haldu
+     * @param file Soubor
+     * @return Obsah souboru připravený ke čtení od začátku
+     * @throws GameLoadingFailureException Chyba čtení souboru
+     */
+    private ByteBuffer readFile(File file) throws GameLoadingFailureException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new GameLoadingFailureException("soubor " + file.getName() + " je prilis velky");
+            }
+            if (size > Utility.SAVEMAPTHRESHOLD) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new GameLoadingFailureException("soubor " + file.getName() + " se behem cteni zkratil");
                 }
-            } catch (IOException e) {
-                throw new GameLoadingFailureException();
             }
-        } catch (FileNotFoundException e) {
-            throw new GameLoadingNameNotFoundException();
+            buffer.flip();
+            return buffer;
         } catch (IOException e) {
-            throw new GameLoadingFailureException();
+            throw new GameLoadingFailureException("soubor " + file.getName() + " nelze precist (" + e.getMessage() + ")");
+        }
+    }
+
+    /**
+     * Uložení čekající na zápis, snímek hry se při opakovaném uložení nahrazuje novějším
+     */
+    private static final class PendingSave {
+        SavedGame savedGame;
+        final CompletableFuture<File> result = new CompletableFuture<>();
+
+        PendingSave(SavedGame savedGame) {
+            this.savedGame = savedGame;
         }
+    }
 
-        return gameInfo;
+    /**
+     * Soubor hry ve složce uložených her
+     * @param nameOfGame Jméno hry
+     * @param extension Přípona souboru
+     * @return Soubor hry
+     */
+    private File getFile(String nameOfGame, String extension) {
+        return new File(nameOfFolder + System.getProperty("file.separator") + nameOfGame + extension);
     }
 }
@@ -0,0 +1,876 @@
+/**
+ * Třída pro uloženou hru v binárním formátu
+ * Místo celé hrací desky pro každý tah se ukládá hlavička a posloupnost tahů a zmrazení, historie hry
+ * se při načítání rekonstruuje přehráním tahů, pravidelné klíčové snímky desky umožňují rychle
+ * získat hrací desku libovolného tahu bez přehrávání hry od začátku
+ * Formát verze 1 (čísla v pořadí big-endian):
+ *          - hlavička: magické číslo, verze, typ druhého hráče, velikost desky, hráč na tahu, obtížnost
+ *          - počet tahů a události tahů, tah zabírá jediný bajt s indexem pole, tah s kameny, které
+ *            se kvůli zmrazení neotočily, a zmrazení začínají značkou a obsahují seznam polí
+ *          - klíčové snímky po {@code KEYFRAME} tazích: pozice události a masky kamenů obou barev
+ *          - zbývající časy kamenů zmrazených podle času
+ * Funkce:  1) Sestavení záznamu z rozehrané hry a z hracích desek starého textového formátu
+ *          2) Zápis binárního formátu a čtení binárního i textového formátu z obsahu souboru jedním průchodem
+ *          3) Přehrání záznamu do nové hry včetně záznamu pro operaci undo a stavu zmrazení
+ *          4) Rekonstrukce hrací desky libovolného tahu z nejbližšího klíčového snímku
+ * @author Lukáš Dibďák
+ * @see othello.SaveLoadManager
+ * @see othello.Game
+ */
+
+package othello;
+
+import othello.Utility.*;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+class SavedGame {
+    static final int MAGIC = 0x4F544842;
+    static final int VERSION = 1;
+
+    /**
+     * Počet tahů mezi dvěma klíčovými snímky
+     */
+    static final int KEYFRAME = 16;
+
+    /**
+     * Značky událostí, indexy polí desky jsou nejvýše 143
+     */
+    private static final int BLOCKED = 0xFD;
+    private static final int FREEZEPLIES = 0xFE;
+    private static final int FREEZETIME = 0xFF;
+
+    private final PlayerType playerType;
+    private final int size;
+    private final int words;
+    private final TypeOfGame typeOfGame;
+    private final int activePlayer;
+
+    /**
+     * Události tahů a jejich počet
+     */
+    private final int plies;
+    private final byte[] events;
+
+    /**
+     * Klíčové snímky, snímek {@code k} odpovídá desce po {@code (k + 1) * keyframe} tazích
+     * a obsahuje masky černých a bílých kamenů za sebou
+     */
+    private final int keyframe;
+    private final int[] keyframeOffsets;
+    private final long[][] keyframes;
+
+    /**
+     * Kameny zmrazené podle času (pole, milisekundy do zmrazení, milisekundy do rozmrazení)
+     */
+    private final int[] timed;
+
+    /**
+     * Konstruktor
+     */
+    private SavedGame(PlayerType playerType, int size, TypeOfGame typeOfGame, int activePlayer, int plies, byte[] events,
+                      int keyframe, int[] keyframeOffsets, long[][] keyframes, int[] timed) {
+        this.playerType = playerType;
+        this.size = size;
+        this.words = BitBoard.wordsFor(size);
+        this.typeOfGame = typeOfGame;
+        this.activePlayer = activePlayer;
+        this.plies = plies;
+        this.events = events;
+        this.keyframe = keyframe;
+        this.keyframeOffsets = keyframeOffsets;
+        this.keyframes = keyframes;
+        this.timed = timed;
+    }
+
+    /**
+     * Sestavení záznamu z rozehrané hry
+     * Tahy se přehrají od počáteční desky podle záznamu pro operaci undo, u každého tahu se uloží kameny,
+     * které by tah otočil, ale kvůli zmrazení zůstaly
+     * @param players Množina hráčů hry
+     * @param board Aktuální hrací deska
+     * @param journal Záznam tahů hry
+     * @param activePlayer Tah hráče
+     * @param typeOfGame Obtížnost počítače (je-li druhý hráč počítač)
+     * @return Záznam hry
+     */
+    static SavedGame fromGame(Player[] players, Board board, UndoJournal journal, int activePlayer, TypeOfGame typeOfGame) {
+        Encoder encoder = new Encoder(board.getSize());
+        int[] changes = journal.getChanges();
+
+        for (int ply = 0; ply < journal.size(); ply++) {
+            int start = journal.getChangesStart(ply);
+            int end = journal.getChangesStart(ply + 1);
+            if (journal.getPlaced(ply) == UndoJournal.NONE) {
+                encoder.freeze(journal.getFreezeInit(ply), journal.getFreezePersist(ply), changes, start, end);
+            }
+            else {
+                encoder.move(journal.getPlaced(ply), changes, start, end);
+            }
+        }
+
+        BitBoard bits = board.getBits();
+        FreezeScheduler scheduler = board.getFreezeScheduler();
+        int[] timed = new int[3 * BitBoard.count(bits.pending)];
+        int count = 0;
+        for (int w = 0; w < bits.words; w++) {
+            for (long mask = bits.pending[w]; mask != 0; mask &= mask - 1) {
+                int square = (w << 6) + Long.numberOfTrailingZeros(mask);
+                if (scheduler.isScheduled(square)) {
+                    timed[count++] = square;
+                    timed[count++] = (int) scheduler.millisToFreeze(square);
+                    timed[count++] = (int) scheduler.millisToThaw(square);
+                }
+            }
+        }
+
+        PlayerType playerType = players[Utility.PLAYERTWO].getPlayerType();
+        return encoder.finish(playerType, playerType == PlayerType.COMPUTER ? typeOfGame : null, activePlayer,
+                Arrays.copyOf(timed, count));
+    }
+
+    /**
+     * Sestavení záznamu z posloupnosti hracích desek starého textového formátu
+     * Mezi dvěma po sobě jdoucími deskami se hledá nově položený kámen a otočené kameny,
+     * desky beze změny odpovídají zmrazení kamenů
+     * @param playerType Typ druhého hráče
+     * @param size Velikost hrací desky
+     * @param typeOfGame Obtížnost počítače
+     * @param activePlayer Tah hráče
+     * @param stones Masky černých a bílých kamenů desek od nejnovější po nejstarší, jak jsou uloženy v souboru
+     * @param count Počet desek
+     * @return Záznam hry
+     * @throws GameLoadingFailureException Desky na sebe nenavazují platným tahem
+     */
+    static SavedGame fromStones(PlayerType playerType, int size, TypeOfGame typeOfGame, int activePlayer, long[] stones, int count)
+            throws GameLoadingFailureException {
+        Encoder encoder = new Encoder(size);
+        int words = encoder.bits.words;
+        int[] changes = new int[size * size];
+
+        if (count == 0) {
+            throw new GameLoadingFailureException("soubor neobsahuje zadnou hraci desku");
+        }
+        int previous = (count - 1) * 2 * words;
+        for (int w = 0; w < words; w++) {
+            if (stones[previous + w] != encoder.bits.stones[BitBoard.BLACK][w] || stones[previous + words + w] != encoder.bits.stones[BitBoard.WHITE][w]) {
+                throw new GameLoadingFailureException("prvni hraci deska neni pocatecni pozici");
+            }
+        }
+
+        for (int board = count - 2; board >= 0; board--) {
+            int next = board * 2 * words;
+            int ply = count - 1 - board;
+            int placed = UndoJournal.NONE;
+            int changed = 0;
+
+            for (int w = 0; w < words; w++) {
+                long blackBefore = stones[previous + w], whiteBefore = stones[previous + words + w];
+                long blackAfter = stones[next + w], whiteAfter = stones[next + words + w];
+                long occupiedBefore = blackBefore | whiteBefore;
+
+                if ((occupiedBefore & ~(blackAfter | whiteAfter)) != 0) {
+                    throw new GameLoadingFailureException("v tahu " + ply + " zmizel kamen z desky");
+                }
+                for (long mask = (blackAfter | whiteAfter) & ~occupiedBefore; mask != 0; mask &= mask - 1) {
+                    if (placed != UndoJournal.NONE) {
+                        throw new GameLoadingFailureException("v tahu " + ply + " pribylo vice kamenu");
+                    }
+                    placed = (w << 6) + Long.numberOfTrailingZeros(mask);
+                }
+                for (long mask = (blackBefore & whiteAfter) | (whiteBefore & blackAfter); mask != 0; mask &= mask - 1) {
+                    changes[changed++] = (w << 6) + Long.numberOfTrailingZeros(mask);
+                }
+            }
+
+            if (placed == UndoJournal.NONE) {
+                if (changed != 0) {
+                    throw new GameLoadingFailureException("v tahu " + ply + " se otocily kameny bez polozeni kamene");
+                }
+                encoder.freeze(0, 0, changes, 0, 0);
+            }
+            else {
+                long own = stones[next + (encoder.mover() == BitBoard.BLACK ? 0 : words) + (placed >>> 6)];
+                if ((own & (1L << placed)) == 0 || !encoder.move(placed, changes, 0, changed)) {
+                    throw new GameLoadingFailureException("tah " + ply + " na pole " + squareName(placed, size) + " neni platny");
+                }
+            }
+            previous = next;
+        }
+
+        return encoder.finish(playerType, playerType == PlayerType.COMPUTER ? typeOfGame : null, activePlayer, new int[0]);
+    }
+
+    /**
+     * Zápis záznamu v binárním formátu
+     * @param out Výstup
+     * @throws IOException Chyba zápisu
+     */
+    void write(DataOutput out) throws IOException {
+        String difficulty = (typeOfGame == null) ? "" : typeOfGame.getDifficulty();
+
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(playerType.getKey());
+        out.writeByte(size);
+        out.writeByte(activePlayer);
+        out.writeByte(difficulty.length());
+        out.writeBytes(difficulty);
+
+        out.writeInt(plies);
+        out.writeInt(events.length);
+        out.write(events);
+
+        out.writeByte(keyframe);
+        out.writeShort(keyframes.length);
+        for (int k = 0; k < keyframes.length; k++) {
+            out.writeInt(keyframeOffsets[k]);
+            for (long word: keyframes[k]) {
+                out.writeLong(word);
+            }
+        }
+
+        out.writeShort(timed.length / 3);
+        for (int i = 0; i < timed.length; i += 3) {
+            out.writeByte(timed[i]);
+            out.writeInt(timed[i + 1]);
+            out.writeInt(timed[i + 2]);
+        }
+    }
+
+    /**
+     * Čtení záznamu v binárním formátu jedním průchodem obsahu souboru
+     * @param buffer Obsah souboru
+     * @return Záznam hry
+     * @throws GameLoadingFailureException Soubor není uloženou hrou podporované verze, je poškozený nebo zkrácený
+     */
+    static SavedGame read(ByteBuffer buffer) throws GameLoadingFailureException {
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new GameLoadingFailureException("soubor neni ulozenou hrou");
+            }
+            int version = buffer.get() & 0xFF;
+            if (version != VERSION) {
+                throw new GameLoadingFailureException("nepodporovana verze souboru " + version);
+            }
+
+            PlayerType playerType = Utility.loadParsePlayerType((char) (buffer.get() & 0xFF));
+            int size = buffer.get() & 0xFF;
+            int activePlayer = buffer.get() & 0xFF;
+            byte[] difficulty = new byte[buffer.get() & 0xFF];
+            buffer.get(difficulty);
+            checkHeader(size, activePlayer);
+            TypeOfGame typeOfGame = (playerType == PlayerType.COMPUTER) ? Utility.loadParseTypeOfGame(new String(difficulty, StandardCharsets.US_ASCII)) : null;
+
+            int plies = buffer.getInt();
+            int length = buffer.getInt();
+            if (plies < 0 || length < plies || length > buffer.remaining()) {
+                throw new GameLoadingFailureException("neplatna delka zaznamu tahu (" + plies + " tahu, " + length + " bajtu)");
+            }
+            byte[] events = new byte[length];
+            buffer.get(events);
+
+            int words = BitBoard.wordsFor(size);
+            int keyframe = buffer.get() & 0xFF;
+            int count = buffer.getShort() & 0xFFFF;
+            if (keyframe == 0 || count != plies / keyframe) {
+                throw new GameLoadingFailureException("neplatny pocet klicovych snimku " + count);
+            }
+            int[] keyframeOffsets = new int[count];
+            long[][] keyframes = new long[count][2 * words];
+            for (int k = 0; k < count; k++) {
+                keyframeOffsets[k] = buffer.getInt();
+                if (keyframeOffsets[k] < 0 || keyframeOffsets[k] > length) {
+                    throw new GameLoadingFailureException("klicovy snimek " + k + " odkazuje mimo zaznam tahu");
+                }
+                for (int w = 0; w < 2 * words; w++) {
+                    keyframes[k][w] = buffer.getLong();
+                }
+            }
+
+            int[] timed = new int[3 * (buffer.getShort() & 0xFFFF)];
+            for (int i = 0; i < timed.length; i += 3) {
+                timed[i] = buffer.get() & 0xFF;
+                timed[i + 1] = buffer.getInt();
+                timed[i + 2] = buffer.getInt();
+                if (timed[i] >= size * size) {
+                    throw new GameLoadingFailureException("zmrazeny kamen mimo hraci desku");
+                }
+            }
+
+            return new SavedGame(playerType, size, typeOfGame, activePlayer, plies, events, keyframe, keyframeOffsets, keyframes, timed);
+        } catch (BufferUnderflowException e) {
+            throw new GameLoadingFailureException("soubor je zkraceny (" + buffer.limit() + " bajtu)");
+        }
+    }
+
+    /**
+     * Čtení hry starého textového formátu jedním průchodem obsahu souboru
+     * Hlavička se čte přímo z bajtů souboru a hrací desky se převádí rovnou na masky kamenů,
+     * nevytváří se tedy řetězce ani hrací desky pro jednotlivé tahy
+     * @param buffer Obsah souboru
+     * @return Záznam hry sestavený z hracích desek
+     * @throws GameLoadingFailureException Soubor je poškozený nebo desky na sebe nenavazují platným tahem
+     */
+    static SavedGame readText(ByteBuffer buffer) throws GameLoadingFailureException {
+        TextTokens tokens = new TextTokens(buffer);
+
+        PlayerType playerType = Utility.loadParsePlayerType((char) buffer.get(tokens.next("typ hrace")));
+        int size = tokens.number("velikost desky");
+        tokens.next("obtiznost");
+        TypeOfGame typeOfGame = Utility.loadParseTypeOfGame(tokens.string());
+        int activePlayer = tokens.number("hrac na tahu");
+        checkHeader(size, activePlayer);
+
+        int squares = size * size;
+        int words = BitBoard.wordsFor(size);
+        long[] stones = new long[(tokens.remaining() / (squares + 1) + 1) * 2 * words];
+        int count = 0;
+
+        for (int start = tokens.next(null); start >= 0; start = tokens.next(null), count++) {
+            if (tokens.length() != squares) {
+                throw new GameLoadingFailureException("hraci deska " + (count + 1) + " nema " + squares + " poli");
+            }
+            int base = count * 2 * words;
+            for (int square = 0; square < squares; square++) {
+                char key = (char) buffer.get(start + square);
+                if (key == Color.BLACK.getKey()) {
+                    stones[base + (square >>> 6)] |= 1L << square;
+                }
+                else if (key == Color.WHITE.getKey()) {
+                    stones[base + words + (square >>> 6)] |= 1L << square;
+                }
+                else if (key != Color.NONE.getKey()) {
+                    throw new GameLoadingFailureException("hraci deska " + (count + 1) + " obsahuje neplatny znak '" + key + "'");
+                }
+            }
+        }
+
+        return fromStones(playerType, size, typeOfGame, activePlayer, stones, count);
+    }
+
+    /**
+     * Kontrola velikosti desky a hráče na tahu z hlavičky souboru
+     * @param size Velikost hrací desky
+     * @param activePlayer Tah hráče
+     * @throws GameLoadingFailureException Neplatná velikost desky nebo hráč na tahu
+     */
+    private static void checkHeader(int size, int activePlayer) throws GameLoadingFailureException {
+        if (size < 4 || size > BoardTables.MAXSIZE || (size & 1) != 0) {
+            throw new GameLoadingFailureException("neplatna velikost desky " + size);
+        }
+        if (activePlayer != Utility.PLAYERONE && activePlayer != Utility.PLAYERTWO) {
+            throw new GameLoadingFailureException("neplatny hrac na tahu " + activePlayer);
+        }
+    }
+
+    /**
+     * Název pole pro chybová hlášení, například a1
+     * @param square Index pole
+     * @param size Velikost hrací desky
+     * @return Název pole
+     */
+    private static String squareName(int square, int size) {
+        return Utility.transformIntToChar(square % size) + Integer.toString(square / size + 1);
+    }
+
+    /**
+     * Přehrání záznamu do nově vytvořené hry, hra tak získá záznam pro operaci undo i stav zmrazení
+     * Zmrazení podle pořadí tahu se naplánují znovu, kameny zmrazené podle času dostanou zbývající časy
+     * @param game Nová hra ve výchozí pozici
+     * @throws GameLoadingFailureException Záznam obsahuje neplatný tah
+     */
+    void replay(Game game) throws GameLoadingFailureException {
+        Board board = game.getBoard();
+        BitBoard bits = board.getBits();
+        Cursor cursor = new Cursor();
+        UndoJournal journal = game.getJournal();
+
+        for (int ply = 0; ply < plies; ply++) {
+            cursor.next();
+            switch (cursor.kind) {
+                case FREEZETIME:
+                    for (int i = 0; i < cursor.count; i++) {
+                        requireStone(bits, cursor.squares[i], cursor.ply);
+                        journal.change(cursor.squares[i]);
+                    }
+                    break;
+                case FREEZEPLIES:
+                    for (int i = 0; i < cursor.count; i++) {
+                        requireStone(bits, cursor.squares[i], cursor.ply);
+                        game.freezeStone(cursor.squares[i], cursor.init, cursor.persist, FreezeMode.PLIES);
+                    }
+                    break;
+                default:
+                    replayMove(game, bits, cursor);
+            }
+            game.makeCheckpoint();
+            game.turnHasBeenMade();
+            game.checkIfFrozen();
+        }
+
+        for (int i = 0; i < timed.length; i += 3) {
+            requireStone(bits, timed[i], plies);
+            BitBoard.set(bits.pending, timed[i]);
+            board.getFreezeScheduler().resume(timed[i], timed[i + 1], timed[i + 2]);
+        }
+    }
+
+    /**
+     * Přehrání tahu, kameny, které se při tahu neotočily, se po dobu tahu dočasně zmrazí
+     * @param game Hra
+     * @param bits Bitová deska hry
+     * @param cursor Událost tahu
+     * @throws GameLoadingFailureException Tah není validní
+     */
+    private void replayMove(Game game, BitBoard bits, Cursor cursor) throws GameLoadingFailureException {
+        MoveList moves = game.getAvailableMoves();
+        int move = moves.indexOf(cursor.square);
+        if (move < 0) {
+            throw new GameLoadingFailureException("tah " + cursor.ply + " na pole " + squareName(cursor.square, size) + " neni platny");
+        }
+
+        int[] blocked = cursor.squares;
+        int frozen = 0;
+        for (int i = 0; i < cursor.count; i++) {
+            if (!BitBoard.test(moves.flips, (moves.flipOffset(move) << 6) + blocked[i])) {
+                throw new GameLoadingFailureException("tah " + cursor.ply + " neotaci kamen na poli " + squareName(blocked[i], size));
+            }
+            if (!bits.isFrozen(blocked[i])) {
+                bits.setFrozen(blocked[i], true);
+                blocked[frozen++] = blocked[i];
+            }
+        }
+
+        try {
+            game.controlMoveIfValid(new Coords(cursor.square % size, cursor.square / size), moves);
+        } catch (MoveNotAvailableException e) {
+            throw new GameLoadingFailureException("tah " + cursor.ply + " na pole " + squareName(cursor.square, size) + " neni platny");
+        } finally {
+            for (int i = 0; i < frozen; i++) {
+                bits.setFrozen(blocked[i], false);
+            }
+        }
+    }
+
+    /**
+     * Kontrola, že na zmrazovaném poli leží kámen
+     * @param bits Bitová deska
+     * @param square Index pole
+     * @param ply Pořadí tahu pro chybové hlášení
+     * @throws GameLoadingFailureException Pole je prázdné
+     */
+    private void requireStone(BitBoard bits, int square, int ply) throws GameLoadingFailureException {
+        if (bits.isEmpty(square)) {
+            throw new GameLoadingFailureException("na zmrazovanem poli " + squareName(square, size) + " v tahu " + ply + " neni kamen");
+        }
+    }
+
+    /**
+     * Rekonstrukce hrací desky po daném počtu tahů z nejbližšího předchozího klíčového snímku
+     * Hrací deska obsahuje pouze kameny, stav zmrazení se nerekonstruuje
+     * @param ply Počet tahů
+     * @return Hrací deska
+     * @throws GameLoadingFailureException Záznam obsahuje neplatný tah
+     */
+    Board boardAt(int ply) throws GameLoadingFailureException {
+        int frame = Math.min(Math.min(ply, plies) / keyframe, keyframes.length);
+        Cursor cursor = new Cursor();
+        Board board;
+
+        if (frame == 0) {
+            board = new Board(size);
+        }
+        else {
+            board = new Board(size, "");
+            long[] keyframeStones = keyframes[frame - 1];
+            for (int w = 0; w < words; w++) {
+                for (long mask = keyframeStones[w]; mask != 0; mask &= mask - 1) {
+                    board.getBits().place((w << 6) + Long.numberOfTrailingZeros(mask), BitBoard.BLACK);
+                }
+                for (long mask = keyframeStones[words + w]; mask != 0; mask &= mask - 1) {
+                    board.getBits().place((w << 6) + Long.numberOfTrailingZeros(mask), BitBoard.WHITE);
+                }
+            }
+            cursor.offset = keyframeOffsets[frame - 1];
+            cursor.ply = frame * keyframe;
+        }
+
+        long[] flips = new long[words];
+        for (int at = frame * keyframe; at < Math.min(ply, plies); at++) {
+            cursor.next();
+            if (cursor.kind <= BLOCKED) {
+                applyMove(board.getBits(), at, cursor, flips);
+            }
+        }
+        return board;
+    }
+
+    /**
+     * Rekonstrukce všech hracích desek hry, obsahují pouze kameny
+     * @return Hrací desky od nejstarší po nejnovější
+     * @throws GameLoadingFailureException Záznam obsahuje neplatný tah
+     */
+    ArrayDeque<Board> boards() throws GameLoadingFailureException {
+        ArrayDeque<Board> boards = new ArrayDeque<>(plies + 1);
+        Board board = new Board(size);
+        Cursor cursor = new Cursor();
+        long[] flips = new long[words];
+
+        boards.addLast(board.copy());
+        for (int at = 0; at < plies; at++) {
+            cursor.next();
+            if (cursor.kind <= BLOCKED) {
+                applyMove(board.getBits(), at, cursor, flips);
+            }
+            boards.addLast(board.copy());
+        }
+        return boards;
+    }
+
+    /**
+     * Provedení tahu na bitové desce bez zmrazených kamenů
+     * @param bits Bitová deska
+     * @param ply Pořadí tahu, určuje barvu hráče na tahu
+     * @param cursor Událost tahu
+     * @param flips Pomocná maska otáčených kamenů
+     * @throws GameLoadingFailureException Tah není validní
+     */
+    private static void applyMove(BitBoard bits, int ply, Cursor cursor, long[] flips) throws GameLoadingFailureException {
+        int color = ((ply & 1) == 0) ? BitBoard.BLACK : BitBoard.WHITE;
+        if (!bits.isEmpty(cursor.square) || !MoveGenerator.flips(bits.tables, bits.stones[color], bits.stones[color ^ 1], cursor.square, flips, 0)) {
+            throw new GameLoadingFailureException("tah " + cursor.ply + " na pole " + squareName(cursor.square, bits.size) + " neni platny");
+        }
+        for (int i = 0; i < cursor.count; i++) {
+            BitBoard.clear(flips, cursor.squares[i]);
+        }
+
+        bits.place(cursor.square, color);
+        for (int w = 0; w < flips.length; w++) {
+            for (long mask = flips[w]; mask != 0; mask &= mask - 1) {
+                bits.flip((w << 6) + Long.numberOfTrailingZeros(mask));
+            }
+        }
+    }
+
+    PlayerType getPlayerType() {
+        return playerType;
+    }
+
+    int getSize() {
+        return size;
+    }
+
+    TypeOfGame getTypeOfGame() {
+        return typeOfGame;
+    }
+
+    int getActivePlayer() {
+        return activePlayer;
+    }
+
+    /**
+     * Počet tahů záznamu
+     * @return Počet tahů
+     */
+    int getPlies() {
+        return plies;
+    }
+
+    /**
+     * Čtení událostí záznamu po jedné
+     */
+    private final class Cursor {
+        int offset;
+        int ply;
+        int kind;
+        int square;
+        int init;
+        int persist;
+        int count;
+        final int[] squares = new int[size * size];
+
+        /**
+         * Přečtení další události
+         * @throws GameLoadingFailureException Událost přesahuje konec záznamu nebo obsahuje neplatné pole
+         */
+        void next() throws GameLoadingFailureException {
+            ply++;
+            kind = readByte();
+            count = 0;
+            switch (kind) {
+                case FREEZEPLIES:
+                    init = (readByte() << 8) | readByte();
+                    persist = (readByte() << 8) | readByte();
+                    readSquares();
+                    break;
+                case FREEZETIME:
+                    readSquares();
+                    break;
+                case BLOCKED:
+                    square = readSquare();
+                    readSquares();
+                    break;
+                default:
+                    if (kind >= size * size) {
+                        throw corrupted();
+                    }
+                    square = kind;
+            }
+        }
+
+        private void readSquares() throws GameLoadingFailureException {
+            count = readByte();
+            if (count > squares.length) {
+                throw corrupted();
+            }
+            for (int i = 0; i < count; i++) {
+                squares[i] = readSquare();
+            }
+        }
+
+        private int readSquare() throws GameLoadingFailureException {
+            int value = readByte();
+            if (value >= size * size) {
+                throw corrupted();
+            }
+            return value;
+        }
+
+        private int readByte() throws GameLoadingFailureException {
+            if (offset >= events.length) {
+                throw corrupted();
+            }
+            return events[offset++] & 0xFF;
+        }
+
+        private GameLoadingFailureException corrupted() {
+            return new GameLoadingFailureException("zaznam tahu " + ply + " je poskozeny (bajt " + offset + ")");
+        }
+    }
+
+    /**
+     * Čtení slov textového formátu oddělených bílými znaky přímo z obsahu souboru
+     */
+    private static final class TextTokens {
+        final ByteBuffer buffer;
+        int position;
+        int start;
+        int end;
+
+        TextTokens(ByteBuffer buffer) {
+            this.buffer = buffer;
+            this.position = buffer.position();
+        }
+
+        /**
+         * Přesun na další slovo
+         * @param name Název očekávané položky, {@code null} pokud se připouští konec souboru
+         * @return Pozice začátku slova v obsahu souboru, -1 na konci souboru
+         * @throws GameLoadingFailureException Očekávaná položka chybí
+         */
+        int next(String name) throws GameLoadingFailureException {
+            int limit = buffer.limit();
+            while (position < limit && Character.isWhitespace(buffer.get(position))) {
+                position++;
+            }
+            if (position == limit) {
+                if (name != null) {
+                    throw new GameLoadingFailureException("v souboru chybi " + name);
+                }
+                return -1;
+            }
+
+            start = position;
+            while (position < limit && !Character.isWhitespace(buffer.get(position))) {
+                position++;
+            }
+            end = position;
+            return start;
+        }
+
+        /**
+         * Přečtení dalšího slova jako nezáporného čísla
+         * @param name Název položky
+         * @return Hodnota
+         * @throws GameLoadingFailureException Položka chybí nebo není číslem
+         */
+        int number(String name) throws GameLoadingFailureException {
+            next(name);
+            int value = 0;
+            for (int i = start; i < end; i++) {
+                int digit = buffer.get(i) - '0';
+                if (digit < 0 || digit > 9 || value > Short.MAX_VALUE) {
+                    throw new GameLoadingFailureException("neplatna hodnota polozky " + name);
+                }
+                value = value * 10 + digit;
+            }
+            return value;
+        }
+
+        String string() {
+            byte[] bytes = new byte[end - start];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = buffer.get(start + i);
+            }
+            return new String(bytes, StandardCharsets.US_ASCII);
+        }
+
+        int length() {
+            return end - start;
+        }
+
+        int remaining() {
+            return buffer.limit() - position;
+        }
+    }
+
+    /**
+     * Sestavení událostí a klíčových snímků přehráváním tahů od počáteční desky
+     */
+    private static final class Encoder {
+        final int size;
+        final BitBoard bits;
+        final long[] natural;
+        final long[] actual;
+        byte[] events;
+        int length;
+        int plies;
+        int[] keyframeOffsets;
+        long[][] keyframes;
+        int frames;
+
+        Encoder(int size) {
+            this.size = size;
+            this.bits = new Board(size).getBits();
+            this.natural = new long[bits.words];
+            this.actual = new long[bits.words];
+            this.events = new byte[64];
+            this.keyframeOffsets = new int[4];
+            this.keyframes = new long[4][];
+        }
+
+        /**
+         * Barva hráče na tahu podle pořadí tahu
+         * @return {@code BitBoard.BLACK} nebo {@code BitBoard.WHITE}
+         */
+        int mover() {
+            return ((plies & 1) == 0) ? BitBoard.BLACK : BitBoard.WHITE;
+        }
+
+        /**
+         * Zápis tahu a jeho provedení na desce
+         * @param square Pole tahu
+         * @param changes Pole otočených kamenů
+         * @param start Index prvního otočeného kamene
+         * @param end Index za posledním otočeným kamenem
+         * @return Tah je validní a otočené kameny odpovídají tahu/neplatný tah
+         */
+        boolean move(int square, int[] changes, int start, int end) {
+            int color = mover();
+            if (!bits.isEmpty(square) || !MoveGenerator.flips(bits.tables, bits.stones[color], bits.stones[color ^ 1], square, natural, 0)) {
+                return false;
+            }
+
+            Arrays.fill(actual, 0);
+            for (int i = start; i < end; i++) {
+                if (!BitBoard.test(natural, changes[i])) {
+                    return false;
+                }
+                BitBoard.set(actual, changes[i]);
+            }
+
+            int blocked = 0;
+            for (int w = 0; w < natural.length; w++) {
+                natural[w] &= ~actual[w];
+                blocked += Long.bitCount(natural[w]);
+            }
+            if (blocked == 0) {
+                append(square);
+            }
+            else {
+                append(BLOCKED);
+                append(square);
+                appendSquares(natural, blocked);
+            }
+
+            bits.place(square, color);
+            for (int i = start; i < end; i++) {
+                bits.flip(changes[i]);
+            }
+            return endPly();
+        }
+
+        /**
+         * Zápis zmrazení kamenů
+         * @param init Za kolik tahů se kameny zmrazí, 0 u zmrazení podle času
+         * @param persist Kolik tahů bude zmrazení trvat
+         * @param squares Pole zmrazovaných kamenů
+         * @param start Index prvního kamene
+         * @param end Index za posledním kamenem
+         */
+        void freeze(int init, int persist, int[] squares, int start, int end) {
+            if (init > 0) {
+                append(FREEZEPLIES);
+                append(init >>> 8);
+                append(init);
+                append(persist >>> 8);
+                append(persist);
+            }
+            else {
+                append(FREEZETIME);
+            }
+            append(end - start);
+            for (int i = start; i < end; i++) {
+                append(squares[i]);
+            }
+            endPly();
+        }
+
+        /**
+         * Uzavření tahu, po každých {@code KEYFRAME} tazích se uloží klíčový snímek
+         * @return Vždy {@code true}
+         */
+        private boolean endPly() {
+            plies++;
+            if (plies % KEYFRAME == 0) {
+                if (frames == keyframes.length) {
+                    keyframeOffsets = Arrays.copyOf(keyframeOffsets, frames * 2);
+                    keyframes = Arrays.copyOf(keyframes, frames * 2);
+                }
+                long[] frame = Arrays.copyOf(bits.stones[BitBoard.BLACK], 2 * bits.words);
+                System.arraycopy(bits.stones[BitBoard.WHITE], 0, frame, bits.words, bits.words);
+                keyframeOffsets[frames] = length;
+                keyframes[frames++] = frame;
+            }
+            return true;
+        }
+
+        private void appendSquares(long[] mask, int count) {
+            append(count);
+            for (int w = 0; w < mask.length; w++) {
+                for (long bits = mask[w]; bits != 0; bits &= bits - 1) {
+                    append((w << 6) + Long.numberOfTrailingZeros(bits));
+                }
+            }
+        }
+
+        private void append(int value) {
+            if (length == events.length) {
+                events = Arrays.copyOf(events, length * 2);
+            }
+            events[length++] = (byte) value;
+        }
+
+        SavedGame finish(PlayerType playerType, TypeOfGame typeOfGame, int activePlayer, int[] timed) {
+            return new SavedGame(playerType, size, typeOfGame, activePlayer, plies, Arrays.copyOf(events, length),
+                    KEYFRAME, Arrays.copyOf(keyframeOffsets, frames), Arrays.copyOf(keyframes, frames), timed);
+        }
+    }
+}
@@ -0,0 +1,323 @@
+/**
+ * Třída pro prohledávání tahů počítače algoritmem alfa-beta
+ * Funkce:  1) Negamax s alfa-beta ořezáváním
+ *          2) Iterativní prohlubování
+ *          3) Prohledávání hlavní varianty (PVS) s nulovým oknem
+ *          4) Omezení prohledávání hloubkou nebo počtem uzlů
+ *          5) Statistiky prohledávání (uzly, dosažená hloubka, čas)
+ *          6) Využití sdílené transpoziční tabulky pro ořezávání a řazení tahů
+ *          7) Zastavení pomocného prohledávání sdíleným příznakem při paralelním prohledávání
+ *          8) Řazení tahů a statistika ořezání prvním tahem
+ * Konec hry se určuje stejně jako ve hře, tedy pokud hráč na tahu nemá žádný validní tah
+ * @author Lukáš Dibďák
+ * @see othello.Position
+ * @see othello.Game
+ * @see othello.TranspositionTable
+ * @see othello.ParallelSearch
+ * @see othello.Utility.Evaluator
+ * @see othello.MoveOrdering
+ */
+
+package othello;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+class SearchEngine {
+    /**
+     * Výsledek prohledávání jednoho tahu
+     */
+    static class Result {
+        int square;
+        int score;
+        int depth;
+        int threads = 1;
+        boolean solved;
+        boolean fromBook;
+        boolean monteCarlo;
+        OpeningBook book;
+        long nodes;
+        long nanos;
+        long cutoffs;
+        long firstMoveCutoffs;
+
+        /**
+         * Rychlost prohledávání
+         * @return Počet uzlů za sekundu
+         */
+        long nodesPerSecond() {
+            return nanos == 0 ? 0 : nodes * 1000000000L / nanos;
+        }
+
+        /**
+         * Podíl ořezání, která způsobil první prohledaný tah
+         * @return Podíl v procentech
+         */
+        int firstMoveCutoffRate() {
+            return cutoffs == 0 ? 0 : (int) (firstMoveCutoffs * 100 / cutoffs);
+        }
+    }
+
+    /**
+     * Hodnota výhry, ke které se přičítá rozdíl kamenů, aby byla vždy větší než hodnota statického ohodnocení
+     */
+    static final int WIN = 1000000;
+    static final int INFINITY = WIN * 2;
+
+    private final int size;
+    private final MoveList[] moveLists;
+    private final Utility.Evaluator evaluator;
+    private final MoveOrdering ordering;
+    private final TranspositionTable table;
+    private final AtomicBoolean stop;
+
+    private Position position;
+    private long nodes;
+    private long nodeLimit;
+    private boolean aborted;
+
+    /**
+     * Konstruktor, alokuje seznamy tahů pro všechny hloubky prohledávání
+     * @param size Velikost hrací desky
+     * @param table Transpoziční tabulka nebo {@code null} pro prohledávání bez ní
+     */
+    SearchEngine(int size, TranspositionTable table) {
+        this(size, table, null, new SquareEvaluator(size));
+    }
+
+    /**
+     * Konstruktor prohledávání s daným ohodnocením pozic, které může být zastaveno zvenčí
+     * @param size Velikost hrací desky
+     * @param table Transpoziční tabulka nebo {@code null} pro prohledávání bez ní
+     * @param stop Příznak zastavení sdílený vlákny paralelního prohledávání nebo {@code null}
+     * @param evaluator Statické ohodnocení pozic
+     */
+    SearchEngine(int size, TranspositionTable table, AtomicBoolean stop, Utility.Evaluator evaluator) {
+        this.size = size;
+        this.table = table;
+        this.stop = stop;
+        this.moveLists = new MoveList[size * size + 2];
+        for (int i = 0; i < moveLists.length; i++) {
+            moveLists[i] = new MoveList(size);
+        }
+        this.evaluator = evaluator;
+        this.ordering = new MoveOrdering(size);
+    }
+
+    /**
+     * Vyhledání nejlepšího tahu iterativním prohlubováním
+     * @param position Pozice, ve které je na tahu počítač, po prohledávání je ve stejném stavu
+     * @param maxDepth Největší hloubka prohledávání
+     * @param nodeLimit Největší počet uzlů, 0 znamená bez omezení
+     * @return Výsledek prohledávání, pole tahu je -1 pokud hráč na tahu nemá žádný tah
+     */
+    Result search(Position position, int maxDepth, long nodeLimit) {
+        if (table != null) {
+            table.newSearch();
+        }
+        return iterate(position, 1, maxDepth, nodeLimit);
+    }
+
+    /**
+     * Iterativní prohlubování od zadané hloubky bez zahájení nového prohledávání v transpoziční tabulce
+     * Pomocná vlákna paralelního prohledávání začínají v různých hloubkách, aby se jejich práce lišila
+     * @param position Pozice, ve které je na tahu počítač, po prohledávání je ve stejném stavu
+     * @param firstDepth Hloubka první iterace
+     * @param maxDepth Největší hloubka prohledávání
+     * @param nodeLimit Největší počet uzlů, 0 znamená bez omezení
+     * @return Výsledek prohledávání, pole tahu je -1 pokud hráč na tahu nemá žádný tah
+     */
+    Result iterate(Position position, int firstDepth, int maxDepth, long nodeLimit) {
+        long start = System.nanoTime();
+        Result result = new Result();
+        MoveList rootMoves = moveLists[0];
+
+        this.position = position;
+        this.nodes = 0;
+        this.nodeLimit = nodeLimit;
+        this.aborted = false;
+        ordering.clear();
+
+        position.generateMoves(rootMoves);
+        long data = (table == null) ? TranspositionTable.NOTFOUND : table.probe(position.getHash());
+        ordering.order(rootMoves, 0, position.getSideToMove(),
+                data == TranspositionTable.NOTFOUND ? -1 : TranspositionTable.moveOf(data));
+        result.square = rootMoves.isEmpty() ? -1 : rootMoves.getSquare(0);
+
+        for (int depth = Math.min(firstDepth, maxDepth); depth <= maxDepth && rootMoves.size() > 0; depth++) {
+            int alpha = -INFINITY;
+            int bestMove = 0;
+
+            for (int i = 0; i < rootMoves.size(); i++) {
+                position.makeMove(rootMoves, i);
+                int score;
+                if (i == 0) {
+                    score = -negamax(depth - 1, -INFINITY, -alpha, 1);
+                }
+                else {
+                    score = -negamax(depth - 1, -alpha - 1, -alpha, 1);
+                    if (score > alpha && !aborted) {
+                        score = -negamax(depth - 1, -INFINITY, -alpha, 1);
+                    }
+                }
+                position.unmakeMove();
+
+                if (aborted) {
+                    break;
+                }
+                if (score > alpha) {
+                    alpha = score;
+                    bestMove = i;
+                }
+            }
+
+            if (aborted) {
+                break;
+            }
+
+            result.square = rootMoves.getSquare(bestMove);
+            result.score = alpha;
+            result.depth = depth;
+            moveToFront(rootMoves, bestMove);
+            if (table != null) {
+                table.store(position.getHash(), depth, TranspositionTable.EXACT, alpha, result.square);
+            }
+
+            if (Math.abs(alpha) >= WIN) {
+                break;
+            }
+        }
+
+        result.nodes = nodes;
+        result.cutoffs = ordering.getCutoffs();
+        result.firstMoveCutoffs = ordering.getFirstMoveCutoffs();
+        result.nanos = System.nanoTime() - start;
+        return result;
+    }
+
+    /**
+     * Rekurzivní prohledávání negamax s alfa-beta ořezáváním a nulovým oknem pro další tahy
+     * @param depth Zbývající hloubka
+     * @param alpha Dolní mez
+     * @param beta Horní mez
+     * @param ply Vzdálenost od kořene
+     * @return Hodnota pozice z pohledu hráče na tahu
+     */
+    private int negamax(int depth, int alpha, int beta, int ply) {
+        nodes++;
+        if (nodeLimit > 0 && nodes >= nodeLimit) {
+            aborted = true;
+            return 0;
+        }
+        if (stop != null && (nodes & 0x3FF) == 0 && stop.get()) {
+            aborted = true;
+            return 0;
+        }
+
+        long key = position.getHash();
+        long data = TranspositionTable.NOTFOUND;
+        if (table != null && depth > 0) {
+            data = table.probe(key);
+            if (data != TranspositionTable.NOTFOUND && TranspositionTable.depthOf(data) >= depth) {
+                int score = TranspositionTable.scoreOf(data);
+                switch (TranspositionTable.boundOf(data)) {
+                    case TranspositionTable.EXACT:
+                        return score;
+                    case TranspositionTable.LOWER:
+                        if (score >= beta) {
+                            return score;
+                        }
+                        break;
+                    case TranspositionTable.UPPER:
+                        if (score <= alpha) {
+                            return score;
+                        }
+                }
+            }
+        }
+
+        MoveList moves = moveLists[ply];
+        position.generateMoves(moves);
+
+        if (moves.isEmpty()) {
+            return finalScore(position);
+        }
+        if (depth == 0) {
+            return evaluator.evaluate(position);
+        }
+
+        int side = position.getSideToMove();
+        ordering.order(moves, ply, side, data == TranspositionTable.NOTFOUND ? -1 : TranspositionTable.moveOf(data));
+
+        int originalAlpha = alpha;
+        int best = -INFINITY;
+        int bestSquare = -1;
+
+        for (int i = 0; i < moves.size(); i++) {
+            position.makeMove(moves, i);
+            int score;
+            if (i == 0) {
+                score = -negamax(depth - 1, -beta, -alpha, ply + 1);
+            }
+            else {
+                score = -negamax(depth - 1, -alpha - 1, -alpha, ply + 1);
+                if (score > alpha && score < beta && !aborted) {
+                    score = -negamax(depth - 1, -beta, -alpha, ply + 1);
+                }
+            }
+            position.unmakeMove();
+
+            if (aborted) {
+                return 0;
+            }
+            if (score > best) {
+                best = score;
+                bestSquare = moves.getSquare(i);
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        ordering.cutoff(ply, side, bestSquare, depth, i);
+                        break;
+                    }
+                }
+            }
+        }
+
+        if (table != null) {
+            int bound = (best <= originalAlpha) ? TranspositionTable.UPPER
+                    : (best >= beta) ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+            table.store(key, depth, bound, best, bestSquare);
+        }
+        return best;
+    }
+
+    /**
+     * Hodnota ukončené hry z pohledu hráče na tahu
+     * Prázdná pole se přičítají vítězi stejně jako v {@code Game.setFinalScore}
+     * @param position Pozice, ve které hráč na tahu nemá žádný tah
+     * @return Hodnota výhry, prohry nebo remízy
+     */
+    static int finalScore(Position position) {
+        int squares = position.size * position.size;
+        int own = position.counts[position.getSideToMove()];
+        int opponent = position.counts[position.getSideToMove() ^ 1];
+
+        if (own > opponent) {
+            return WIN + (squares - opponent) - opponent;
+        }
+        if (own < opponent) {
+            return -WIN - (squares - own) + own;
+        }
+        return 0;
+    }
+
+    /**
+     * Přesun tahu na začátek seznamu, aby se v další iteraci prohledával jako první
+     * @param moves Seznam tahů
+     * @param move Pořadí tahu v seznamu
+     */
+    private static void moveToFront(MoveList moves, int move) {
+        for (int i = move; i > 0; i--) {
+            moves.swap(i, i - 1);
+        }
+    }
+}
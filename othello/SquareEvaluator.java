@@ -0,0 +1,69 @@
+/**
+ * Třída pro statické ohodnocení pozice podle vah jednotlivých polí
+ * Rohy jsou nejcennější, pole sousedící s rohy jsou nevýhodná, okraje jsou cennější než vnitřek desky
+ * Funkce:  1) Vytvoření vah polí pro danou velikost desky
+ *          2) Ohodnocení pozice součtem vah kamenů
+ * @author Lukáš Dibďák
+ * @see othello.Utility.Evaluator
+ * @see othello.SearchEngine
+ */
+
+package othello;
+
+class SquareEvaluator implements Utility.Evaluator {
+    private final int[] squareWeights;
+
+    /**
+     * Konstruktor, vytvoří váhy polí pro danou velikost desky
+     * @param size Velikost hrací desky
+     */
+    SquareEvaluator(int size) {
+        this.squareWeights = createSquareWeights(BoardTables.forSize(size));
+    }
+
+    /**
+     * Vytvoření vah polí pro statické ohodnocení
+     * @param tables Tabulky desky
+     * @return Váhy polí
+     */
+    static int[] createSquareWeights(BoardTables tables) {
+        int size = tables.size;
+        int[] weights = new int[size * size];
+
+        for (int square = 0; square < weights.length; square++) {
+            weights[square] = BitBoard.test(tables.edges, square) ? 8 : 1;
+        }
+        for (int square = 0; square < weights.length; square++) {
+            if (!BitBoard.test(tables.corners, square)) {
+                continue;
+            }
+            weights[square] = 100;
+            for (int neighbor: tables.neighbors[square]) {
+                weights[neighbor] = BitBoard.test(tables.edges, neighbor) ? -20 : -50;
+            }
+        }
+        return weights;
+    }
+
+    /**
+     * Statické ohodnocení pozice z pohledu hráče na tahu podle vah polí
+     * @param position Pozice
+     * @return Hodnota pozice
+     */
+    @Override
+    public int evaluate(Position position) {
+        long[] own = position.stones[position.getSideToMove()];
+        long[] opponent = position.stones[position.getSideToMove() ^ 1];
+        int score = 0;
+
+        for (int w = 0; w < own.length; w++) {
+            for (long mask = own[w]; mask != 0; mask &= mask - 1) {
+                score += squareWeights[(w << 6) + Long.numberOfTrailingZeros(mask)];
+            }
+            for (long mask = opponent[w]; mask != 0; mask &= mask - 1) {
+                score -= squareWeights[(w << 6) + Long.numberOfTrailingZeros(mask)];
+            }
+        }
+        return score;
+    }
+}
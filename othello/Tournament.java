@@ -0,0 +1,322 @@
+/**
+ * Třída pro turnaj dvou obtížností počítače bez uživatelského rozhraní
+ * Hry se hrají paralelně ve fondu vláken, každé vlákno si bere další nehranou hru, dokud nejsou odehrány všechny
+ * Každá hra začíná zahájením o zadaném počtu náhodných půltahů, každé zahájení se hraje dvakrát
+ * s prohozenými barvami, aby žádná obtížnost neměla výhodu zahájení ani barvy
+ * Počítače v turnaji prohledávají jedním vláknem, paralelizují se celé hry
+ * Spuštění: Tournament OBTIZNOST1 OBTIZNOST2 HRY PULTAHY [VELIKOST_DESKY...]
+ * Funkce:  1) Generování náhodných zahájení
+ *          2) Paralelní odehrání her pro každou velikost desky
+ *          3) Statistika výher, remíz a proher
+ *          4) Odhad rozdílu Elo s 95% intervalem spolehlivosti
+ *          5) Průměrná doba tahu každé obtížnosti a počet her za sekundu
+ * @author Lukáš Dibďák
+ * @see othello.ComputerPlayer
+ * @see othello.Position
+ */
+
+package othello;
+
+import othello.Utility.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+class Tournament {
+    /**
+     * Velikosti desky, pro které se turnaj hraje, pokud nejsou zadány
+     */
+    private static final int[] SIZES = { 6, 8, 10, 12 };
+
+    /**
+     * Semínko generátoru zahájení, stejné semínko dává stejná zahájení
+     */
+    private static final long SEED = 0x4F7468656C6C6FL;
+
+    /**
+     * Nejvyšší počet pokusů o vytvoření jednoho zahájení
+     */
+    private static final int OPENINGATTEMPTS = 1000;
+
+    private final int size;
+    private final TypeOfGame[] types;
+    private final int games;
+    private final int plies;
+    private final int workers;
+    private final Position start;
+    private final Evaluator evaluator;
+
+    /**
+     * Výsledky z pohledu první obtížnosti a doby tahů podle obtížností
+     */
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicInteger wins = new AtomicInteger();
+    private final AtomicInteger draws = new AtomicInteger();
+    private final AtomicInteger losses = new AtomicInteger();
+    private final LongAdder[] moveNanos = { new LongAdder(), new LongAdder() };
+    private final LongAdder[] moves = { new LongAdder(), new LongAdder() };
+
+    /**
+     * Konstruktor, připraví základní postavení hrací desky
+     * @param size Velikost hrací desky
+     * @param first První obtížnost
+     * @param second Druhá obtížnost
+     * @param games Počet her
+     * @param plies Počet náhodných půltahů zahájení
+     * @param workers Počet paralelně hraných her
+     */
+    Tournament(int size, TypeOfGame first, TypeOfGame second, int games, int plies, int workers) {
+        this.size = size;
+        this.types = new TypeOfGame[] { first, second };
+        this.games = games;
+        this.plies = plies;
+        this.workers = Math.max(1, Math.min(workers, games));
+
+        Board board = new Board(size);
+        this.evaluator = ComputerPlayer.createEvaluator(board, size);
+        this.start = new Position(board, BitBoard.BLACK);
+    }
+
+    /**
+     * Odehrání všech her turnaje
+     * @return Doba turnaje v nanosekundách
+     */
+    long play() {
+        long begin = System.nanoTime();
+
+        List<Future<?>> tasks = new ArrayList<>(workers - 1);
+        for (int i = 0; i < workers - 1; i++) {
+            tasks.add(ParallelSearch.getExecutor().submit(this::work));
+        }
+        work();
+
+        for (Future<?> task: tasks) {
+            try {
+                task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        return System.nanoTime() - begin;
+    }
+
+    /**
+     * Smyčka jednoho vlákna, hraje další nehrané hry, dokud nejsou odehrány všechny
+     * Transpoziční tabulky se alokují jednou pro vlákno a pro každou hru se vyčistí
+     */
+    private void work() {
+        TranspositionTable[] tables = new TranspositionTable[2];
+        TranspositionTable[] endgameTables = new TranspositionTable[2];
+        for (int i = 0; i < 2; i++) {
+            if (types[i].isSearch()) {
+                tables[i] = new TranspositionTable(Utility.TOURNAMENTTABLESIZE);
+                endgameTables[i] = new TranspositionTable(Utility.TOURNAMENTTABLESIZE);
+            }
+        }
+
+        for (int game = next.getAndIncrement(); game < games; game = next.getAndIncrement()) {
+            ComputerPlayer[] players = new ComputerPlayer[2];
+            for (int i = 0; i < 2; i++) {
+                if (tables[i] != null) {
+                    tables[i].clear();
+                    endgameTables[i].clear();
+                }
+                players[i] = new ComputerPlayer(size, types[i], 1, tables[i], endgameTables[i], types[i].isSearch() ? evaluator : null);
+            }
+
+            int black = game & 1;
+            int result = playGame(createOpening(game >>> 1), players, black);
+            if (result == 0) {
+                draws.incrementAndGet();
+            }
+            else if ((result > 0) == (black == 0)) {
+                wins.incrementAndGet();
+            }
+            else {
+                losses.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Vytvoření zahájení náhodnými tahy ze základního postavení
+     * Zahájení, ve kterém hra skončí, se zahodí a vygeneruje se další
+     * @param opening Pořadí zahájení, určuje semínko generátoru
+     * @return Pozice po zahájení
+     * @throws IllegalStateException Zahájení se nepodařilo vytvořit ani po {@code OPENINGATTEMPTS} pokusech
+     */
+    private Position createOpening(int opening) {
+        MoveList list = new MoveList(size);
+        long random = SEED + opening * 0x9E3779B97F4A7C15L;
+
+        for (int attempt = 0; attempt < OPENINGATTEMPTS; attempt++) {
+            Position position = new Position(start);
+            int ply = 0;
+
+            for (; ply < plies; ply++) {
+                position.generateMoves(list);
+                if (list.isEmpty()) {
+                    break;
+                }
+                random = next(random);
+                position.makeMove(list, (int) ((random >>> 33) % list.size()));
+            }
+            position.generateMoves(list);
+            if (ply == plies && !list.isEmpty()) {
+                return new Position(position);
+            }
+            random = next(random);
+        }
+        throw new IllegalStateException("Zahajeni s " + plies + " pultahy nelze na desce " + size + "x" + size
+                + " vytvorit ani po " + OPENINGATTEMPTS + " pokusech");
+    }
+
+    /**
+     * Odehrání jedné hry do konce, hra končí, když hráč na tahu nemůže táhnout
+     * @param position Pozice po zahájení
+     * @param players Počítače obou obtížností
+     * @param black Pořadí obtížnosti, která hraje černými kameny
+     * @return Rozdíl kamenů černého a bílého hráče
+     */
+    private int playGame(Position position, ComputerPlayer[] players, int black) {
+        MoveList list = new MoveList(size);
+
+        while (true) {
+            position.generateMoves(list);
+            if (list.isEmpty()) {
+                return position.counts[BitBoard.BLACK] - position.counts[BitBoard.WHITE];
+            }
+
+            int player = (position.getSideToMove() == BitBoard.BLACK) ? black : black ^ 1;
+            long begin = System.nanoTime();
+            int move = players[player].chooseMove(position, list);
+            moveNanos[player].add(System.nanoTime() - begin);
+            moves[player].increment();
+
+            position.makeMove(list, move);
+        }
+    }
+
+    /**
+     * Sestavení výpisu výsledků turnaje
+     * @param nanos Doba turnaje v nanosekundách
+     * @return Výpis výsledků
+     */
+    String getResultString(long nanos) {
+        int played = wins.get() + draws.get() + losses.get();
+        double score = (wins.get() + 0.5 * draws.get()) / played;
+        double variance = (wins.get() * (1 - score) * (1 - score) + draws.get() * (0.5 - score) * (0.5 - score)
+                + losses.get() * score * score) / played;
+        double margin = 1.96 * Math.sqrt(variance / played);
+
+        String elo;
+        if (score <= 0 || score >= 1) {
+            elo = "nelze urcit, vsechny hry skoncily stejne";
+        }
+        else {
+            long lower = Math.round(elo(Math.max(score - margin, 1.0 / (2 * played))));
+            long upper = Math.round(elo(Math.min(score + margin, 1 - 1.0 / (2 * played))));
+            elo = String.format("%+d (95%% interval %+d az %+d)", Math.round(elo(score)), lower, upper);
+        }
+
+        return "Deska " + size + "x" + size + ": " + types[0].getDifficulty() + " proti " + types[1].getDifficulty() + ", her: " + played + System.lineSeparator()
+                + "  vyhry: " + wins.get() + ", remizy: " + draws.get() + ", prohry: " + losses.get()
+                + String.format(", skore: %.1f %%", 100 * score) + System.lineSeparator()
+                + "  rozdil Elo: " + elo + System.lineSeparator()
+                + "  prumerny tah " + types[0].getDifficulty() + ": " + getLatencyString(0) + ", " + types[1].getDifficulty() + ": " + getLatencyString(1) + System.lineSeparator()
+                + String.format("  her/s: %.2f, vlaken: %d, cas: %d ms", played * 1e9 / Math.max(1, nanos), workers, nanos / 1000000);
+    }
+
+    /**
+     * Průměrná doba tahu obtížnosti
+     * @param player Pořadí obtížnosti
+     * @return Doba tahu v milisekundách
+     */
+    private String getLatencyString(int player) {
+        long count = moves[player].sum();
+        return String.format("%.3f ms", (count == 0) ? 0.0 : moveNanos[player].sum() / 1e6 / count);
+    }
+
+    /**
+     * Rozdíl Elo odpovídající očekávanému skóre
+     * @param score Podíl bodů v rozsahu 0 až 1 (bez krajních hodnot)
+     * @return Rozdíl Elo
+     */
+    static double elo(double score) {
+        return -400 * Math.log10(1 / score - 1);
+    }
+
+    /**
+     * Generátor xorshift64
+     * @param state Předchozí stav
+     * @return Další stav
+     */
+    private static long next(long state) {
+        state ^= state << 13;
+        state ^= state >>> 7;
+        state ^= state << 17;
+        return state;
+    }
+
+    /**
+     * Spuštění turnaje, velikosti desky se hrají postupně a hry každé velikosti paralelně všemi procesory
+     * @param args OBTIZNOST1 OBTIZNOST2 HRY PULTAHY [VELIKOST_DESKY...]
+     */
+    public static void main(String[] args) {
+        if (args.length < 4) {
+            System.out.println("Pouziti: Tournament OBTIZNOST1 OBTIZNOST2 HRY PULTAHY [VELIKOST_DESKY...]");
+            return;
+        }
+
+        TypeOfGame first = TypeOfGame.fromDifficulty(args[0]);
+        TypeOfGame second = TypeOfGame.fromDifficulty(args[1]);
+        if (first == null || second == null) {
+            System.out.println("Neznama obtiznost: " + (first == null ? args[0] : args[1]));
+            return;
+        }
+
+        try {
+            int games = Integer.parseUnsignedInt(args[2]);
+            int plies = Integer.parseUnsignedInt(args[3]);
+            int[] sizes = SIZES;
+            if (args.length > 4) {
+                sizes = new int[args.length - 4];
+                for (int i = 0; i < sizes.length; i++) {
+                    sizes[i] = Utility.loadParseBoardSize(args[i + 4]);
+                    if (sizes[i] < 6 || sizes[i] > 12 || sizes[i] % 2 != 0) {
+                        System.out.println("Neplatna velikost desky: " + args[i + 4]);
+                        return;
+                    }
+                }
+            }
+            for (int size: sizes) {
+                if (plies >= size * size - 4) {
+                    System.out.println("Pocet pultahu zahajeni " + plies + " neni mensi nez pocet volnych poli desky " + size + "x" + size);
+                    return;
+                }
+            }
+            if (games == 0) {
+                return;
+            }
+
+            int workers = Math.min(Utility.SEARCHTHREADS, Runtime.getRuntime().availableProcessors());
+            for (int size: sizes) {
+                Tournament tournament = new Tournament(size, first, second, games, plies, workers);
+                System.out.println(tournament.getResultString(tournament.play()));
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Neplatny ciselny argument: " + e.getMessage());
+        } catch (IllegalStateException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+}
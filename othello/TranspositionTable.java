@@ -0,0 +1,182 @@
+/**
+ * Třída pro transpoziční tabulku prohledávání tahů
+ * Tabulka uchovává výsledky již prohledaných pozic podle jejich Zobristova klíče
+ * Záznam tvoří dvě slova typu long v jednom primitivním poli:
+ *          - klíč pozice XOR data záznamu
+ *          - data záznamu (hodnota, nejlepší tah, hloubka, typ meze, stáří)
+ * Při čtení se ověřuje, že XOR obou slov dává klíč pozice, záznam rozepsaný jiným vláknem
+ * se tedy pozná a zahodí, tabulku lze bez zámků sdílet mezi více vlákny prohledávání
+ * Funkce:  1) Alokace tabulky podle paměťového rozpočtu
+ *          2) Ukládání a vyhledávání záznamů
+ *          3) Nahrazování záznamů podle hloubky a stáří
+ *          4) Vyčištění tabulky pro novou hru
+ * @author Lukáš Dibďák
+ * @see othello.SearchEngine
+ * @see othello.Zobrist
+ */
+
+package othello;
+
+import java.util.Arrays;
+
+class TranspositionTable {
+    /**
+     * Typy mezí uložené hodnoty
+     */
+    static final int EXACT = 1;
+    static final int LOWER = 2;
+    static final int UPPER = 3;
+
+    /**
+     * Návratová hodnota při nenalezení záznamu
+     */
+    static final long NOTFOUND = 0;
+
+    private static final int MOVESHIFT = 32;
+    private static final int DEPTHSHIFT = 41;
+    private static final int BOUNDSHIFT = 49;
+    private static final int AGESHIFT = 51;
+
+    private final long[] table;
+    private final int mask;
+    private volatile int age;
+
+    /**
+     * Konstruktor tabulky, počet záznamů je největší mocnina dvou, která se vejde do rozpočtu
+     * @param megabytes Paměťový rozpočet tabulky v MB
+     */
+    TranspositionTable(int megabytes) {
+        long entries = Math.max(2, ((long) megabytes << 20) / 16);
+        int capacity = Integer.highestOneBit((int) Math.min(entries, 1 << 28));
+
+        this.table = new long[capacity * 2];
+        this.mask = capacity - 1;
+        this.age = 0;
+    }
+
+    /**
+     * Počet záznamů tabulky
+     * @return Počet záznamů
+     */
+    int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Vyčištění tabulky, volá se při vytvoření nebo načtení hry
+     */
+    void clear() {
+        Arrays.fill(table, 0);
+        age = 0;
+    }
+
+    /**
+     * Začátek prohledávání dalšího tahu, záznamy z předchozích tahů se stávají staršími
+     * a jsou přednostně nahrazovány
+     */
+    void newSearch() {
+        age = (age + 1) & 0xFF;
+    }
+
+    /**
+     * Vyhledání záznamu pozice
+     * Záznamy jsou uloženy ve dvojicích, prohledávají se oba záznamy dvojice
+     * @param key Klíč pozice
+     * @return Data záznamu nebo {@code NOTFOUND}
+     */
+    long probe(long key) {
+        int index = (int) key & mask & ~1;
+
+        for (int i = index; i <= index + 1; i++) {
+            long data = table[2 * i + 1];
+            if (data != NOTFOUND && (table[2 * i] ^ data) == key) {
+                return data;
+            }
+        }
+        return NOTFOUND;
+    }
+
+    /**
+     * Uložení záznamu pozice
+     * V dvojici se nahrazuje záznam téže pozice, jinak záznam s menší hloubkou, přičemž
+     * záznamy z předchozích tahů se považují za mělčí
+     * @param key Klíč pozice
+     * @param depth Hloubka prohledávání
+     * @param bound Typ meze ({@code EXACT}, {@code LOWER}, {@code UPPER})
+     * @param score Hodnota pozice
+     * @param move Nejlepší tah (index pole) nebo -1
+     */
+    void store(long key, int depth, int bound, int score, int move) {
+        int index = (int) key & mask & ~1;
+        int currentAge = age;
+        int replace = index;
+        int worst = Integer.MAX_VALUE;
+
+        for (int i = index; i <= index + 1; i++) {
+            long data = table[2 * i + 1];
+            if (data == NOTFOUND || (table[2 * i] ^ data) == key) {
+                replace = i;
+                break;
+            }
+            int value = depthOf(data) - (((currentAge - ageOf(data)) & 0xFF) << 2);
+            if (value < worst) {
+                worst = value;
+                replace = i;
+            }
+        }
+
+        long data = (score & 0xFFFFFFFFL)
+                | ((long) (move + 1) << MOVESHIFT)
+                | ((long) Math.min(depth, 0xFF) << DEPTHSHIFT)
+                | ((long) bound << BOUNDSHIFT)
+                | ((long) currentAge << AGESHIFT);
+
+        table[2 * replace] = key ^ data;
+        table[2 * replace + 1] = data;
+    }
+
+    /**
+     * Hodnota pozice uložená v datech záznamu
+     * @param data Data záznamu
+     * @return Hodnota
+     */
+    static int scoreOf(long data) {
+        return (int) data;
+    }
+
+    /**
+     * Nejlepší tah uložený v datech záznamu
+     * @param data Data záznamu
+     * @return Index pole nebo -1
+     */
+    static int moveOf(long data) {
+        return (int) ((data >>> MOVESHIFT) & 0x1FF) - 1;
+    }
+
+    /**
+     * Hloubka uložená v datech záznamu
+     * @param data Data záznamu
+     * @return Hloubka
+     */
+    static int depthOf(long data) {
+        return (int) ((data >>> DEPTHSHIFT) & 0xFF);
+    }
+
+    /**
+     * Typ meze uložený v datech záznamu
+     * @param data Data záznamu
+     * @return {@code EXACT}, {@code LOWER} nebo {@code UPPER}
+     */
+    static int boundOf(long data) {
+        return (int) ((data >>> BOUNDSHIFT) & 0x3);
+    }
+
+    /**
+     * Stáří uložené v datech záznamu
+     * @param data Data záznamu
+     * @return Pořadí prohledávání, ve kterém byl záznam uložen
+     */
+    static int ageOf(long data) {
+        return (int) ((data >>> AGESHIFT) & 0xFF);
+    }
+}
@@ -0,0 +1,182 @@
+/**
+ * Třída pro záznam historie hry pro operaci undo
+ * Místo kopií celé hrací desky se pro každý tah (ply) ukládají pouze změny:
+ *          - pole, na které byl položen kámen (nebo {@code NONE} u zmrazení kamenů)
+ *          - pole otočených kamenů, u zmrazení pole kamenů, které čekají na zmrazení
+ *          - u zmrazení podle pořadí tahu počet tahů do zmrazení a délka zmrazení
+ * Funkce:  1) Zaznamenávání změn rozpracovaného tahu
+ *          2) Uzavírání tahů (checkpointy)
+ *          3) Vracení tahů aplikací inverzních změn
+ * Paměťová náročnost odpovídá celkovému počtu otočených kamenů, nikoliv počtu tahů krát velikosti desky
+ * @author Lukáš Dibďák
+ * @see othello.Game
+ */
+
+package othello;
+
+import java.util.Arrays;
+
+class UndoJournal {
+    /**
+     * Identifikace tahu bez položeného kamene (zmrazení kamenů)
+     */
+    static final int NONE = -1;
+
+    private int[] placed;
+    private int[] freezeInit;
+    private int[] freezePersist;
+    private int[] starts;
+    private int[] changes;
+    private int plies;
+    private int changeCount;
+
+    /**
+     * Konstruktor prázdného záznamu
+     */
+    UndoJournal() {
+        placed = new int[64];
+        freezeInit = new int[64];
+        freezePersist = new int[64];
+        starts = new int[65];
+        changes = new int[256];
+        plies = 0;
+        changeCount = 0;
+        placed[0] = NONE;
+    }
+
+    /**
+     * Počet uzavřených tahů v záznamu
+     * @return Počet tahů
+     */
+    int size() {
+        return plies;
+    }
+
+    /**
+     * Zaznamenání položeného kamene v rozpracovaném tahu
+     * @param square Index pole
+     */
+    void place(int square) {
+        placed[plies] = square;
+    }
+
+    /**
+     * Zaznamenání zmrazení podle pořadí tahu v rozpracovaném tahu
+     * @param initPlies Za kolik tahů se kameny zmrazí
+     * @param persistPlies Kolik tahů bude zmrazení trvat
+     */
+    void freeze(int initPlies, int persistPlies) {
+        freezeInit[plies] = initPlies;
+        freezePersist[plies] = persistPlies;
+    }
+
+    /**
+     * Zaznamenání změny pole v rozpracovaném tahu (otočený kámen nebo kámen čekající na zmrazení)
+     * @param square Index pole
+     */
+    void change(int square) {
+        if (changeCount == changes.length) {
+            changes = Arrays.copyOf(changes, changes.length * 2);
+        }
+        changes[changeCount++] = square;
+    }
+
+    /**
+     * Uzavření rozpracovaného tahu
+     */
+    void commit() {
+        plies++;
+        if (plies == placed.length) {
+            placed = Arrays.copyOf(placed, placed.length * 2);
+            freezeInit = Arrays.copyOf(freezeInit, freezeInit.length * 2);
+            freezePersist = Arrays.copyOf(freezePersist, freezePersist.length * 2);
+            starts = Arrays.copyOf(starts, starts.length * 2);
+        }
+        starts[plies] = changeCount;
+        placed[plies] = NONE;
+        freezeInit[plies] = 0;
+        freezePersist[plies] = 0;
+    }
+
+    /**
+     * Získání pole, na které byl v tahu položen kámen
+     * @param ply Pořadí tahu
+     * @return Index pole nebo {@code NONE} u zmrazení kamenů
+     */
+    int getPlaced(int ply) {
+        return placed[ply];
+    }
+
+    /**
+     * Získání počtu tahů do zmrazení u zmrazení podle pořadí tahu
+     * @param ply Pořadí tahu
+     * @return Počet tahů nebo 0 u zmrazení podle času a u tahů s položeným kamenem
+     */
+    int getFreezeInit(int ply) {
+        return freezeInit[ply];
+    }
+
+    /**
+     * Získání délky zmrazení u zmrazení podle pořadí tahu
+     * @param ply Pořadí tahu
+     * @return Počet tahů nebo 0 u zmrazení podle času a u tahů s položeným kamenem
+     */
+    int getFreezePersist(int ply) {
+        return freezePersist[ply];
+    }
+
+    /**
+     * Získání změněných polí tahu, pole leží v {@code getChanges()} na indexech
+     * {@code getChangesStart(ply)} až {@code getChangesStart(ply + 1) - 1}
+     * @param ply Pořadí tahu
+     * @return Index prvního změněného pole
+     */
+    int getChangesStart(int ply) {
+        return starts[ply];
+    }
+
+    /**
+     * Získání všech zaznamenaných změněných polí
+     * @return Pole indexů polí
+     */
+    int[] getChanges() {
+        return changes;
+    }
+
+    /**
+     * Aplikuje na hrací desku inverzní změny daného tahu, záznam se nemění
+     * @param board Hrací deska ve stavu po daném tahu
+     * @param ply Pořadí tahu
+     */
+    void revert(Board board, int ply) {
+        if (placed[ply] == NONE) {
+            for (int i = starts[ply]; i < starts[ply + 1]; i++) {
+                board.cancelFreeze(changes[i]);
+            }
+        }
+        else {
+            board.removeField(placed[ply]);
+            for (int i = starts[ply]; i < starts[ply + 1]; i++) {
+                board.restoreField(changes[i]);
+            }
+        }
+    }
+
+    /**
+     * Vrácení posledního uzavřeného tahu na hrací desce a jeho odstranění ze záznamu
+     * @param board Aktuální hrací deska
+     * @throws NoMoreMovesToUndoException V záznamu již není žádný tah
+     */
+    void undo(Board board) throws NoMoreMovesToUndoException {
+        if (plies == 0) {
+            throw new NoMoreMovesToUndoException();
+        }
+        revert(board, plies - 1);
+
+        plies--;
+        changeCount = starts[plies];
+        placed[plies] = NONE;
+        freezeInit[plies] = 0;
+        freezePersist[plies] = 0;
+    }
+}
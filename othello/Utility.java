@@ -16,6 +16,7 @@
 package othello;
 
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class Utility {
     /**
@@ -31,6 +32,42 @@ public class Utility {
     static int MAXINITFREEZETIME = 10;
     static int MAXPERSISTFREEZETIME = 15;
 
+    /**
+     * Konstanta pro paměťový rozpočet transpoziční tabulky počítače v MB
+     */
+    static int TRANSPOSITIONTABLESIZE = 64;
+
+    /**
+     * Konstanta pro největší počet vláken prohledávání obtížností, které využívají všechny procesory
+     */
+    static int SEARCHTHREADS = 64;
+
+    /**
+     * Konstanta pro paměťový rozpočet transpoziční tabulky řešení konce hry v MB
+     */
+    static int ENDGAMETABLESIZE = 16;
+
+    /**
+     * Konstanta pro největší počet uzlů řešení konce hry, po jeho překročení počítač použije prohledávání
+     */
+    static long ENDGAMENODES = 1000000;
+
+    /**
+     * Konstanta pro paměťový rozpočet každé transpoziční tabulky počítače v turnaji v MB,
+     * turnaj jich alokuje až čtyři pro každé vlákno
+     */
+    static int TOURNAMENTTABLESIZE = 4;
+
+    /**
+     * Konstanta pro velikost souboru uložené hry v bajtech, od které se soubor při načítání mapuje do paměti
+     */
+    static int SAVEMAPTHRESHOLD = 1 << 20;
+
+    /**
+     * Konstanta pro nejdelší dobu v milisekundách, po kterou se při ukončení programu čeká na dokončení ukládání her
+     */
+    static int SAVESHUTDOWNTIMEOUT = 5000;
+
     /**
      * Řetězcová interpretace jmen hráčů
      */
@@ -102,50 +139,39 @@ public class Utility {
     }
 
     /**
-     * Inline třída pro zpracování algoritmů počítače a jeho tahů
+     * Rozhraní pro statické ohodnocení pozice počítačem
+     * Implementace musí být bezstavové, aby je mohlo sdílet více vláken prohledávání
+     * @see othello.SquareEvaluator
+     * @see othello.PatternEvaluator
      */
-    static class Algorithm {
+    interface Evaluator {
         /**
-         * Setřídí kameny, které se musí otočit do jednoho zásobníku podle souřadnice tahu
-         * @param allAvailableMoves Zásobník všech dostupných stavů
-         * @return Setřízený zásobník
+         * Ohodnocení pozice z pohledu hráče na tahu
+         * @param position Pozice
+         * @return Hodnota pozice, kladná pro výhodu hráče na tahu
          */
-        static TreeMap<Coords, ArrayList<Coords>> sortStonesByCoords(ArrayList<TreeMap<Coords, ArrayList<Coords>>> allAvailableMoves) {
-            TreeMap<Coords, ArrayList<Coords>> temp = new TreeMap<>();
-
-            for (TreeMap<Coords, ArrayList<Coords>> map: allAvailableMoves) {
-                for (Map.Entry<Coords, ArrayList<Coords>> mapSet: map.entrySet()) {
-                    if (temp.containsKey(mapSet.getKey())) {
-                        ArrayList<Coords> tempCoords = temp.get(mapSet.getKey());
-                        for (Coords x: mapSet.getValue()) {
-                            tempCoords.add(x);
-                        }
-                    } else {
-                        temp.put(mapSet.getKey(), mapSet.getValue());
-                    }
-                }
-            }
-
-            return temp;
-        }
+        int evaluate(Position position);
+    }
 
+    /**
+     * Inline třída pro zpracování algoritmů počítače a jeho tahů
+     * Tahy jsou v seznamu {@code MoveList} seřazeny podle souřadnic, při shodě se volí první z nich
+     */
+    static class Algorithm {
         /**
-         * Jednoduchý algoritmus pro tah počítače
-         * @param allAvailableMoves Zásobník všech dostupných stavů
-         * @return Pole hrací desky, kam počítač táhnul
+         * Jednoduchý algoritmus pro tah počítače, volí tah otáčející nejméně kamenů
+         * @param allAvailableMoves Seznam všech dostupných tahů
+         * @return Pořadí zvoleného tahu v seznamu
          */
-        static TreeMap<Coords, ArrayList<Coords>> getEasyAlgorithm(ArrayList<TreeMap<Coords, ArrayList<Coords>>> allAvailableMoves) {
-            TreeMap<Coords, ArrayList<Coords>> temp = sortStonesByCoords(allAvailableMoves);
-            TreeMap<Coords, ArrayList<Coords>> returnval = new TreeMap<>();
-
-            int minSize = temp.firstEntry().getValue().size();
-            returnval.put(temp.firstEntry().getKey(), temp.firstEntry().getValue());
-
-            for(Map.Entry<Coords, ArrayList<Coords>> tempSet: temp.entrySet()) {
-                if (minSize > tempSet.getValue().size()) {
-                    returnval.clear();
-                    returnval.put(tempSet.getKey(), tempSet.getValue());
-                    minSize = tempSet.getValue().size();
+        static int getEasyAlgorithm(MoveList allAvailableMoves) {
+            int returnval = 0;
+            int minSize = allAvailableMoves.flipCount(0);
+
+            for (int i = 1; i < allAvailableMoves.size(); i++) {
+                int size = allAvailableMoves.flipCount(i);
+                if (minSize > size) {
+                    returnval = i;
+                    minSize = size;
                 }
             }
 
@@ -153,22 +179,19 @@ public class Utility {
         }
 
         /**
-         * Složitější algoritmus pro tah počítače
-         * @param allAvailableMoves Zásobník všech dostupných stavů
-         * @return Pole hrací desky, kam počítač táhnul
+         * Složitější algoritmus pro tah počítače, volí tah otáčející nejvíce kamenů
+         * @param allAvailableMoves Seznam všech dostupných tahů
+         * @return Pořadí zvoleného tahu v seznamu
          */
-        static TreeMap<Coords, ArrayList<Coords>> getHardAlgorithm(ArrayList<TreeMap<Coords, ArrayList<Coords>>> allAvailableMoves) {
-            TreeMap<Coords, ArrayList<Coords>> temp = sortStonesByCoords(allAvailableMoves);
-            TreeMap<Coords, ArrayList<Coords>> returnval = new TreeMap<>();
-
-            int maxSize = temp.firstEntry().getValue().size();
-            returnval.put(temp.firstEntry().getKey(), temp.firstEntry().getValue());
-
-            for(Map.Entry<Coords, ArrayList<Coords>> tempSet: temp.entrySet()) {
-                if (maxSize < tempSet.getValue().size()) {
-                    returnval.clear();
-                    returnval.put(tempSet.getKey(), tempSet.getValue());
-                    maxSize = tempSet.getValue().size();
+        static int getHardAlgorithm(MoveList allAvailableMoves) {
+            int returnval = 0;
+            int maxSize = allAvailableMoves.flipCount(0);
+
+            for (int i = 1; i < allAvailableMoves.size(); i++) {
+                int size = allAvailableMoves.flipCount(i);
+                if (maxSize < size) {
+                    returnval = i;
+                    maxSize = size;
                 }
             }
 
@@ -265,21 +288,49 @@ public class Utility {
 
     /**
      * Enum - Obtížnost hry
-     * - EASY - jednoduchá obtížnost tahů počítače
-     * - HARD - složitá obtížnost tahů počítače
+     * - EASY   - jednoduchá obtížnost tahů počítače
+     * - HARD   - složitá obtížnost tahů počítače
+     * - EXPERT - prohledávání alfa-beta omezené hloubkou
+     * - MASTER - prohledávání alfa-beta omezené počtem uzlů
      */
     public enum TypeOfGame {
         EASY("easy"),
-        HARD("hard");
+        HARD("hard"),
+        EXPERT("expert", 6, 0, 1, 12, 0),
+        MASTER("master", 64, 2000000, 0, 14, 0),
+        MONTECARLO("montecarlo", 0, 0, 0, 0, 2000);
 
         private String difficulty;
+        private int depth;
+        private long nodes;
+        private int threads;
+        private int endgameEmpties;
+        private long millis;
 
         /**
-         * Konstruktor
+         * Konstruktor pro obtížnost bez prohledávání tahů
          * @param difficulty Řetězcová interpretace složitosti hry
          */
         TypeOfGame(String difficulty) {
+            this(difficulty, 0, 0, 1, 0, 0);
+        }
+
+        /**
+         * Konstruktor pro obtížnost s prohledáváním tahů nebo s hledáním tahu metodou Monte Carlo
+         * @param difficulty Řetězcová interpretace složitosti hry
+         * @param depth Největší hloubka prohledávání
+         * @param nodes Největší počet prohledaných uzlů, 0 znamená bez omezení
+         * @param threads Počet vláken prohledávání, 0 znamená počet dostupných procesorů
+         * @param endgameEmpties Počet prázdných polí, od kterého se konec hry řeší přesně
+         * @param millis Časový limit tahu v milisekundách pro metodu Monte Carlo
+         */
+        TypeOfGame(String difficulty, int depth, long nodes, int threads, int endgameEmpties, long millis) {
             this.difficulty = difficulty;
+            this.depth = depth;
+            this.nodes = nodes;
+            this.threads = threads;
+            this.endgameEmpties = endgameEmpties;
+            this.millis = millis;
         }
 
         /**
@@ -289,6 +340,68 @@ public class Utility {
         String getDifficulty() {
             return difficulty;
         }
+
+        /**
+         * Vrací největší hloubku prohledávání
+         * @return Hloubka prohledávání, 0 pro obtížnosti bez prohledávání
+         */
+        int getDepth() {
+            return depth;
+        }
+
+        /**
+         * Vrací největší počet prohledaných uzlů
+         * @return Počet uzlů, 0 znamená bez omezení
+         */
+        long getNodes() {
+            return nodes;
+        }
+
+        /**
+         * Vrací počet vláken prohledávání
+         * @return Počet vláken, nejméně 1
+         */
+        int getThreads() {
+            return threads > 0 ? threads : Math.max(1, Math.min(SEARCHTHREADS, Runtime.getRuntime().availableProcessors()));
+        }
+
+        /**
+         * Vrací počet prázdných polí, od kterého počítač řeší konec hry přesně
+         * @return Počet prázdných polí, 0 pro obtížnosti bez přesného řešení
+         */
+        int getEndgameEmpties() {
+            return endgameEmpties;
+        }
+
+        /**
+         * Vrací časový limit tahu pro metodu Monte Carlo
+         * @return Časový limit v milisekundách
+         */
+        long getMillis() {
+            return millis;
+        }
+
+        /**
+         * Zjišťuje, zdali obtížnost využívá prohledávání tahů
+         * @return Prohledávání/jednokrokový algoritmus
+         */
+        boolean isSearch() {
+            return depth > 0;
+        }
+
+        /**
+         * Vyhledání obtížnosti podle řetězcové interpretace
+         * @param difficulty Řetězcová interpretace složitosti hry
+         * @return Obtížnost nebo {@code null}, pokud žádná neodpovídá
+         */
+        static TypeOfGame fromDifficulty(String difficulty) {
+            for (TypeOfGame typeOfGame: values()) {
+                if (typeOfGame.difficulty.equals(difficulty)) {
+                    return typeOfGame;
+                }
+            }
+            return null;
+        }
     }
 
     /**
@@ -335,6 +448,52 @@ public class Utility {
         }
     }
 
+    /**
+     * Enum - režim zmrazení kamenů
+     * - TIME  - zmrazení a rozmrazení po uplynutí času v sekundách
+     * - PLIES - zmrazení a rozmrazení po odehrání počtu tahů, stav zmrazení je součástí pozice
+     *           a počítač s ním může počítat při prohledávání
+     */
+    public enum FreezeMode {
+        TIME("cas", "sekund"),
+        PLIES("tahy", "tahu");
+
+        private String mode;
+        private String unit;
+
+        /**
+         * Konstruktor
+         * @param mode Řetězcová interpretace režimu zmrazení
+         * @param unit Jednotka doby zmrazení pro výpis
+         */
+        FreezeMode(String mode, String unit) {
+            this.mode = mode;
+            this.unit = unit;
+        }
+
+        /**
+         * Vrací jednotku doby zmrazení
+         * @return Jednotka doby zmrazení
+         */
+        String getUnit() {
+            return unit;
+        }
+
+        /**
+         * Vyhledání režimu zmrazení podle řetězcové interpretace
+         * @param mode Řetězcová interpretace režimu zmrazení
+         * @return Režim zmrazení nebo {@code null}, pokud žádný neodpovídá
+         */
+        static FreezeMode fromMode(String mode) {
+            for (FreezeMode freezeMode: values()) {
+                if (freezeMode.mode.equalsIgnoreCase(mode)) {
+                    return freezeMode;
+                }
+            }
+            return null;
+        }
+    }
+
     /**
      * Metoda pro transformaci vodorovné souřadnice desky z char na int
      * @param x Znakový identifikátor vodorovné osy hrací desky
@@ -364,24 +523,85 @@ public class Utility {
     static String getSuccessfulLoadGameString() { return "Hra byla uspesne nactena."; }
 
     /**
-     * Získání znakové interpretace formátu uložených/načtených her
+     * Získání znakové interpretace formátu uložených/načtených her starého textového formátu
      * @return Řetězec znaků
      */
     static String getFileExtensionString() { return ".txt"; }
 
+    /**
+     * Získání znakové interpretace formátu uložených/načtených her binárního formátu
+     * @return Řetězec znaků
+     */
+    static String getBinaryFileExtensionString() { return ".bin"; }
+
+    /**
+     * Získání znakové interpretace formátu dočasných souborů rozpracovaného uložení hry
+     * @return Řetězec znaků
+     */
+    static String getTemporaryFileExtensionString() { return ".tmp"; }
+
     /**
      * Získání znakové interpretace jména složky pro uložení/načtení hry
      * @return Řetězec znaků
      */
     static String getSaveFolderLocationString() { return "save"; }
 
+    /**
+     * Získání znakové interpretace jména složky s knihami zahájení
+     * @return Řetězec znaků
+     */
+    static String getBookFolderLocationString() { return "book"; }
+
+    /**
+     * Získání znakové interpretace jména souboru knihy zahájení
+     * @param size Velikost hrací desky
+     * @return Řetězec znaků
+     */
+    static String getBookFileString(int size) { return "book" + size + ".bin"; }
+
+    /**
+     * Získání znakové interpretace jména souboru vah ohodnocení vzory
+     * @param size Velikost hrací desky
+     * @return Řetězec znaků
+     */
+    static String getWeightsFileString(int size) { return "weights" + size + ".bin"; }
+
     /**
      * Získání znakové interpretace úspěšného zmrazení kamenů
      * @param numbers Pole typu {@code Integer}. Kolik kamenů, za jak dlouho, na jak dlouho
+     * @param freezeMode Režim zmrazení, určuje jednotku doby zmrazení
      * @return Řetězec znaků
      */
-    static String getSuccessfulFreezeStoneString(int[] numbers, int numberOfStones) {
-        return "Za dobu: " + numbers[0] + " sekund bude zmrazen pocet kamenu: " + numberOfStones + " na dobu: " + numbers[1] + " sekund";
+    static String getSuccessfulFreezeStoneString(int[] numbers, int numberOfStones, FreezeMode freezeMode) {
+        return "Za dobu: " + numbers[0] + " " + freezeMode.getUnit() + " bude zmrazen pocet kamenu: " + numberOfStones
+                + " na dobu: " + numbers[1] + " " + freezeMode.getUnit();
+    }
+
+    /**
+     * Získání znakové interpretace statistik prohledávání tahu počítače
+     * @param result Výsledek prohledávání
+     * @return Řetězec znaků
+     */
+    static String getSearchInfoString(SearchEngine.Result result) {
+        String book = (result.book == null) ? "" : ", kniha: " + result.book.getHitRate() + " % ("
+                + result.book.getHits() + "/" + result.book.getProbes() + ")";
+
+        if (result.monteCarlo) {
+            return "Monte Carlo: simulaci: " + result.nodes + ", hloubka stromu: " + result.depth + ", vyhry: "
+                    + result.score + " %, cas: " + (result.nanos / 1000000) + " ms, simulaci/s: "
+                    + result.nodesPerSecond() + ", vlaken: " + result.threads;
+        }
+        if (result.fromBook) {
+            return "Tah z knihy zahajeni" + book;
+        }
+        if (result.solved) {
+            return "Reseni konce hry: prazdnych poli: " + result.depth + ", rozdil kamenu: " + result.score
+                    + ", uzlu: " + result.nodes + ", cas: " + (result.nanos / 1000000) + " ms (cil "
+                    + EndgameSolver.targetMillis(result.depth) + " ms)" + book;
+        }
+        return "Hloubka: " + result.depth + ", uzlu: " + result.nodes + ", cas: " + (result.nanos / 1000000)
+                + " ms, uzlu/s: " + result.nodesPerSecond() + ", vlaken: " + result.threads
+                + ", orezani prvnim tahem: " + result.firstMoveCutoffRate() + " %" + book;
     }
 
     /**
@@ -443,7 +663,8 @@ public class Utility {
      * @return Obtížnost hry
      */
     static TypeOfGame loadParseTypeOfGame(String temp) {
-        return (temp.equals(TypeOfGame.EASY.getDifficulty())) ? TypeOfGame.EASY : TypeOfGame.HARD;
+        TypeOfGame typeOfGame = TypeOfGame.fromDifficulty(temp);
+        return (typeOfGame == null) ? TypeOfGame.HARD : typeOfGame;
     }
 
     /**
@@ -455,43 +676,36 @@ public class Utility {
         return Integer.parseUnsignedInt(temp);
     }
 
-    /**
-     * Metoda sloužící k parsování řetězců hracích desek na tyto hrací desky
-     * @param boardsInString Zásobník řetězců reprezentující hrací desky
-     * @param boardSize Velikost desky
-     * @return Zásobník hracích desek
-     */
-    static ArrayDeque<Board> loadParseBoards(ArrayList<String> boardsInString, int boardSize) {
-        ArrayDeque<Board> boards = new ArrayDeque<>();
-
-        while (!boardsInString.isEmpty()) {
-            String temp = boardsInString.remove(0);
-            Board tempBoard = new Board(boardSize, temp);
-            boards.addFirst(tempBoard);
-        }
-
-        return boards;
-    }
-
     /**
      * Metoda pro generování čísel pro metodu {@code freezeStones}
+     * Náhodný počet kamenů se vybere rovnoměrně náhodně přímo z masky volných kamenů jedním průchodem
+     * (výběr bez opakování), cena tedy nezávisí na počtu dosavadních zmrazení
      * @param randomNumbers Pole odkazů, kam se uloží výsledky
-     * @param notFrozenStones Počet kamenů hráče, které ještě nejsou zamrznuty a lze je tedy nechat zamrznout
+     * @param available Maska kamenů hráče, které ještě nejsou zamrznuty a lze je tedy nechat zamrznout
+     * @param selected Maska, do které se uloží vybrané kameny
+     * @return Počet vybraných kamenů
      */
-    static void generateRandomNumbers(int[] randomNumbers, int notFrozenStones, ArrayList<Integer> numberOfFrozenStones) {
-        Random random = new Random();
+    static int generateRandomNumbers(int[] randomNumbers, long[] available, long[] selected) {
+        Random random = ThreadLocalRandom.current();
 
         randomNumbers[0] = random.nextInt(Utility.MAXINITFREEZETIME - Utility.MINGENERATETIME) + Utility.MINGENERATETIME;
         randomNumbers[1] = random.nextInt(Utility.MAXPERSISTFREEZETIME - Utility.MINGENERATETIME) + Utility.MINGENERATETIME;
 
-        int numberOfStones = random.nextInt(notFrozenStones);
+        int remaining = BitBoard.count(available);
+        int numberOfStones = (remaining == 0) ? 0 : random.nextInt(remaining);
+        int needed = numberOfStones;
 
-        for (int i = 0; i < numberOfStones; i++) {
-            int randomNumber = random.nextInt(notFrozenStones);
-            if (!numberOfFrozenStones.contains(randomNumber)) {
-                numberOfFrozenStones.add(randomNumber);
+        for (int w = 0; w < available.length; w++) {
+            selected[w] = 0;
+            for (long mask = available[w]; mask != 0 && needed > 0; mask &= mask - 1) {
+                if (random.nextInt(remaining) < needed) {
+                    selected[w] |= mask & -mask;
+                    needed--;
+                }
+                remaining--;
             }
         }
+        return numberOfStones;
     }
 
     /**
@@ -500,28 +714,23 @@ public class Utility {
      * @return Řetězec znaků odpovídající hodnotám hrací desky
      */
     static String visualizeBoard(Board board) {
-        StringBuilder temp = new StringBuilder();
-        for (Field field: board.getField()) {
-            try {
-                switch (field.getColor()) {
-                    case WHITE:
-                        temp.append(Color.WHITE.getKey());
-                        break;
-                    case BLACK:
-                        temp.append(Color.BLACK.getKey());
-                        break;
-                    case FWHITE:
-                        temp.append(Color.FWHITE.getKey());
-                        break;
-                    case FBLACK:
-                        temp.append(Color.FBLACK.getKey());
-                        break;
-                }
-            } catch (FieldIsEmptyException e) {
-                temp.append(Color.NONE.getKey());
+        BitBoard bits = board.getBits();
+        char[] temp = new char[bits.size * bits.size];
+
+        for (int square = 0; square < temp.length; square++) {
+            boolean frozen = BitBoard.test(bits.frozenColor, square);
+            switch (bits.colorAt(square)) {
+                case BitBoard.WHITE:
+                    temp[square] = frozen ? Color.FWHITE.getKey() : Color.WHITE.getKey();
+                    break;
+                case BitBoard.BLACK:
+                    temp[square] = frozen ? Color.FBLACK.getKey() : Color.BLACK.getKey();
+                    break;
+                default:
+                    temp[square] = Color.NONE.getKey();
             }
         }
-        return temp.toString();
+        return new String(temp);
     }
 
     /**
@@ -587,7 +796,9 @@ public class Utility {
         System.out.println("                   tyto hodnoty: [6], [8], [10], [12]");
         System.out.println("- OBTÍŽNOST HRY - pokud je jako TYP_HRACE zvolen počítač,");
         System.out.println("                  pak lze zvolit obtížnost hry jako");
-        System.out.println("                  jednoduchou [easy] nebo složitou [hard]");
+        System.out.println("                  jednoduchou [easy], složitou [hard]");
+        System.out.println("                  nebo prohledávající [expert], [master]");
+        System.out.println("                  nebo simulující hry metodou Monte Carlo [montecarlo]");
         System.out.println("- Ukázka instrukce: NEW C 12 EASY");
         System.out.println("-----------------------------------------------------------------");
         System.out.println("2. načtení uložené hry");
@@ -614,11 +825,14 @@ public class Utility {
         System.out.println("- Ukázka instrukce: UNDO");
         System.out.println("-----------------------------------------------------------------");
         System.out.println("6. zamrznutí kamenů");
-        System.out.println("FREEZE");
-        System.out.println("- Instrukce bez argumentů");
+        System.out.println("FREEZE [REZIM]");
         System.out.println("- Instrukce nechá zamrznout náhodný počet kamenů hráče");
         System.out.println("  za na náhodně dlouhou dobu po náhodně dlouhou dobu");
-        System.out.println("- Ukázka instrukce: FREEZE");
+        System.out.println("- REZIM - doba se měří v sekundách [cas] (výchozí)");
+        System.out.println("          nebo v odehraných tazích [tahy], pak je");
+        System.out.println("          zmrazení deterministické a počítač s ním");
+        System.out.println("          počítá při prohledávání");
+        System.out.println("- Ukázka instrukce: FREEZE tahy");
         System.out.println("-----------------------------------------------------------------");
     }
 }
@@ -0,0 +1,112 @@
+/**
+ * Třída pro Zobristovy klíče pozic hry
+ * Každé kombinaci pole a barvy kamene, každému zmrazenému poli a hráči na tahu je přiřazeno
+ * pseudonáhodné 64bitové číslo, klíč pozice je XOR čísel všech jejích složek a lze jej tedy
+ * při každé změně desky přepočítat v konstantním čase
+ * Klíče se generují deterministicky z pevného semínka, jsou tedy stejné při každém spuštění
+ * programu a lze je ukládat do souborů
+ * Funkce:  1) Líné vytvoření sdílených klíčů pro každou velikost desky
+ *          2) Výpočet klíče celé bitové desky
+ * @author Lukáš Dibďák
+ * @see othello.BitBoard
+ * @see othello.Position
+ */
+
+package othello;
+
+final class Zobrist {
+    private static final long SEED = 0x4F7468656C6C6F4CL;
+    private static final Zobrist[] CACHE = new Zobrist[BoardTables.MAXSIZE + 1];
+
+    final int size;
+
+    /**
+     * Klíče kamenů podle barvy a pole, klíče pro otočení kamene (XOR obou barev),
+     * klíče zmrazených polí a klíč bílého hráče na tahu
+     */
+    final long[][] stones;
+    final long[] flips;
+    final long[] frozen;
+    final long side;
+
+    /**
+     * Získání klíčů pro danou velikost desky
+     * @param size Velikost hrací desky
+     * @return Sdílené klíče
+     */
+    static Zobrist forSize(int size) {
+        if (size > BoardTables.MAXSIZE) {
+            return new Zobrist(size);
+        }
+
+        Zobrist zobrist = CACHE[size];
+        if (zobrist == null) {
+            synchronized (CACHE) {
+                zobrist = CACHE[size];
+                if (zobrist == null) {
+                    zobrist = new Zobrist(size);
+                    CACHE[size] = zobrist;
+                }
+            }
+        }
+        return zobrist;
+    }
+
+    /**
+     * Konstruktor, vygeneruje klíče pro danou velikost desky
+     * @param size Velikost hrací desky
+     */
+    private Zobrist(int size) {
+        this.size = size;
+
+        int squares = size * size;
+        long state = SEED ^ size;
+
+        stones = new long[2][squares];
+        flips = new long[squares];
+        frozen = new long[squares];
+
+        for (int square = 0; square < squares; square++) {
+            stones[BitBoard.BLACK][square] = state = next(state);
+            stones[BitBoard.WHITE][square] = state = next(state);
+            frozen[square] = state = next(state);
+            flips[square] = stones[BitBoard.BLACK][square] ^ stones[BitBoard.WHITE][square];
+        }
+        side = next(state);
+    }
+
+    /**
+     * Generátor SplitMix64, z aktuálního stavu vrací další pseudonáhodné číslo
+     * @param state Předchozí stav
+     * @return Další číslo
+     */
+    private static long next(long state) {
+        long z = state + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Výpočet klíče celé bitové desky bez hráče na tahu
+     * Klíč se jinak udržuje průběžně, úplný výpočet slouží k jeho kontrole
+     * @param stones Masky kamenů podle barvy
+     * @param frozenMask Maska zmrazených kamenů
+     * @return Klíč desky
+     */
+    long hash(long[][] stones, long[] frozenMask) {
+        long hash = 0;
+        for (int square = 0; square < size * size; square++) {
+            if (BitBoard.test(stones[BitBoard.BLACK], square)) {
+                hash ^= this.stones[BitBoard.BLACK][square];
+            }
+            else if (BitBoard.test(stones[BitBoard.WHITE], square)) {
+                hash ^= this.stones[BitBoard.WHITE][square];
+            }
+            if (BitBoard.test(frozenMask, square)) {
+                hash ^= frozen[square];
+            }
+        }
+        return hash;
+    }
+}